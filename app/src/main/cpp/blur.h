@@ -0,0 +1,258 @@
+#ifndef EDGEDETECTOR_BLUR_H
+#define EDGEDETECTOR_BLUR_H
+
+#include <algorithm>
+#include <cstdint>
+#include <cstring>
+#include <vector>
+
+/**
+ * Pre-edge smoothing shared by both native builds. Mirrors the Java
+ * com.flam.edgedetector.Blur kernels operation for operation (integer only,
+ * replicated border), so each mode gives identical pixels in both backends.
+ * Mode values match BlurMode.id on the Java side.
+ */
+namespace edgeblur {
+
+enum Mode {
+    NONE = 0,
+    GAUSSIAN = 1,  // Separable 5x5, sigma 1.5, 12-bit fixed point weights
+    BINOMIAL = 2,  // Separable 5x5 [1 4 6 4 1] / 16
+    BOX3 = 3       // Three 3-wide running-sum box passes
+};
+
+/** Context the mode reads on each side of an output pixel */
+inline int reach(int mode) {
+    switch (mode) {
+        case GAUSSIAN:
+        case BINOMIAL:
+            return 2;
+        case BOX3:
+            return 3;
+        default:
+            return 0;
+    }
+}
+
+inline bool isValid(int mode) {
+    return mode >= NONE && mode <= BOX3;
+}
+
+// Namespace-scope constexpr has internal linkage, so the kernels can take
+// their address or bind them to references without an out-of-line
+// definition in any translation unit
+constexpr int kGaussian[5] = {492, 958, 1196, 958, 492};
+// Border pixels only; the interior uses shifts and adds
+constexpr int kBinomial[5] = {1, 4, 6, 4, 1};
+constexpr int kBoxRadius = 1;
+constexpr int kBoxPasses = 3;
+constexpr int kBoxReciprocal = (65536 + (2 * kBoxRadius + 1) / 2) / (2 * kBoxRadius + 1);
+
+class Blur {
+public:
+    /**
+     * Smooth a width x height region. src and dst may be the same region.
+     */
+    void apply(int mode, const uint8_t *src, int srcStride, int width, int height,
+               uint8_t *dst, int dstStride) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        switch (mode) {
+            case GAUSSIAN:
+                separable5(kGaussian, 4, 20, src, srcStride, width, height, dst, dstStride);
+                break;
+            case BINOMIAL:
+                binomial5(src, srcStride, width, height, dst, dstStride);
+                break;
+            case BOX3:
+                box(src, srcStride, width, height, dst, dstStride);
+                break;
+            default:
+                if (src != dst) {
+                    for (int y = 0; y < height; y++) {
+                        memcpy(dst + (size_t) y * dstStride, src + (size_t) y * srcStride, width);
+                    }
+                }
+                break;
+        }
+    }
+
+private:
+    std::vector<int32_t> rows_;
+    std::vector<uint8_t> rowA_, rowB_, planeA_, planeB_;
+    std::vector<int32_t> columnSums_;
+
+    static inline int clampIndex(int i, int last) {
+        return i < 0 ? 0 : (i > last ? last : i);
+    }
+
+    // Weighted 5-tap sum at x with the row's end pixels replicated
+    static inline int clamped5(const int *w, const uint8_t *s, int last, int x) {
+        return w[0] * s[clampIndex(x - 2, last)] + w[1] * s[clampIndex(x - 1, last)]
+               + w[2] * s[x]
+               + w[3] * s[clampIndex(x + 1, last)] + w[4] * s[clampIndex(x + 2, last)];
+    }
+
+    void separable5(const int *w, int midShift, int outShift,
+                    const uint8_t *src, int srcStride, int width, int height,
+                    uint8_t *dst, int dstStride) {
+        rows_.resize((size_t) width * height);
+        const int midRound = midShift > 0 ? 1 << (midShift - 1) : 0;
+        const int outRound = 1 << (outShift - 1);
+        const int w0 = w[0], w1 = w[1], w2 = w[2], w3 = w[3], w4 = w[4];
+        const int last = width - 1;
+
+        // Clamped reads only within two pixels of either end
+        const int head = std::min(2, width);
+        const int interiorEnd = std::max(head, width - 2);
+        for (int y = 0; y < height; y++) {
+            const uint8_t *s = src + (size_t) y * srcStride;
+            int32_t *o = rows_.data() + (size_t) y * width;
+            int x = 0;
+            for (; x < head; x++) {
+                o[x] = (clamped5(w, s, last, x) + midRound) >> midShift;
+            }
+            for (; x < interiorEnd; x++) {
+                int sum = w0 * s[x - 2] + w1 * s[x - 1] + w2 * s[x] + w3 * s[x + 1] + w4 * s[x + 2];
+                o[x] = (sum + midRound) >> midShift;
+            }
+            for (; x < width; x++) {
+                o[x] = (clamped5(w, s, last, x) + midRound) >> midShift;
+            }
+        }
+
+        const int lastRow = height - 1;
+        for (int y = 0; y < height; y++) {
+            const int32_t *r0 = rows_.data() + (size_t) clampIndex(y - 2, lastRow) * width;
+            const int32_t *r1 = rows_.data() + (size_t) clampIndex(y - 1, lastRow) * width;
+            const int32_t *r2 = rows_.data() + (size_t) y * width;
+            const int32_t *r3 = rows_.data() + (size_t) clampIndex(y + 1, lastRow) * width;
+            const int32_t *r4 = rows_.data() + (size_t) clampIndex(y + 2, lastRow) * width;
+            uint8_t *d = dst + (size_t) y * dstStride;
+            for (int x = 0; x < width; x++) {
+                int sum = w0 * r0[x] + w1 * r1[x] + w2 * r2[x] + w3 * r3[x] + w4 * r4[x];
+                d[x] = (uint8_t) ((sum + outRound) >> outShift);
+            }
+        }
+    }
+
+    // [1 4 6 4 1] both ways, shifts and adds only; no intermediate rounding
+    void binomial5(const uint8_t *src, int srcStride, int width, int height,
+                   uint8_t *dst, int dstStride) {
+        rows_.resize((size_t) width * height);
+        const int last = width - 1;
+
+        const int head = std::min(2, width);
+        const int interiorEnd = std::max(head, width - 2);
+        for (int y = 0; y < height; y++) {
+            const uint8_t *s = src + (size_t) y * srcStride;
+            int32_t *o = rows_.data() + (size_t) y * width;
+            int x = 0;
+            for (; x < head; x++) {
+                o[x] = clamped5(kBinomial, s, last, x);
+            }
+            for (; x < interiorEnd; x++) {
+                int c = s[x];
+                o[x] = s[x - 2] + s[x + 2] + ((s[x - 1] + s[x + 1]) << 2) + (c << 2) + (c << 1);
+            }
+            for (; x < width; x++) {
+                o[x] = clamped5(kBinomial, s, last, x);
+            }
+        }
+
+        const int lastRow = height - 1;
+        for (int y = 0; y < height; y++) {
+            const int32_t *r0 = rows_.data() + (size_t) clampIndex(y - 2, lastRow) * width;
+            const int32_t *r1 = rows_.data() + (size_t) clampIndex(y - 1, lastRow) * width;
+            const int32_t *r2 = rows_.data() + (size_t) y * width;
+            const int32_t *r3 = rows_.data() + (size_t) clampIndex(y + 1, lastRow) * width;
+            const int32_t *r4 = rows_.data() + (size_t) clampIndex(y + 2, lastRow) * width;
+            uint8_t *d = dst + (size_t) y * dstStride;
+            for (int x = 0; x < width; x++) {
+                int c = r2[x];
+                int sum = r0[x] + r4[x] + ((r1[x] + r3[x]) << 2) + (c << 2) + (c << 1);
+                d[x] = (uint8_t) ((sum + 128) >> 8);
+            }
+        }
+    }
+
+    static void boxRow(const uint8_t *in, uint8_t *out, int width) {
+        const int last = width - 1;
+        int sum = 0;
+        for (int k = -kBoxRadius; k <= kBoxRadius; k++) {
+            sum += in[clampIndex(k, last)];
+        }
+        // Unclamped while both the entering and leaving pixel are inside
+        const int interiorStart = std::min(kBoxRadius, width);
+        const int interiorEnd = std::max(interiorStart, width - kBoxRadius - 1);
+        int x = 0;
+        for (; x < interiorStart; x++) {
+            out[x] = (uint8_t) ((sum * kBoxReciprocal + 32768) >> 16);
+            sum += in[clampIndex(x + kBoxRadius + 1, last)] - in[clampIndex(x - kBoxRadius, last)];
+        }
+        for (; x < interiorEnd; x++) {
+            out[x] = (uint8_t) ((sum * kBoxReciprocal + 32768) >> 16);
+            sum += in[x + kBoxRadius + 1] - in[x - kBoxRadius];
+        }
+        for (; x < width; x++) {
+            out[x] = (uint8_t) ((sum * kBoxReciprocal + 32768) >> 16);
+            sum += in[clampIndex(x + kBoxRadius + 1, last)] - in[clampIndex(x - kBoxRadius, last)];
+        }
+    }
+
+    void boxColumns(const uint8_t *in, uint8_t *out, int width, int height) {
+        const int lastRow = height - 1;
+        columnSums_.assign(width, 0);
+        int32_t *sums = columnSums_.data();
+        for (int k = -kBoxRadius; k <= kBoxRadius; k++) {
+            const uint8_t *row = in + (size_t) clampIndex(k, lastRow) * width;
+            for (int x = 0; x < width; x++) {
+                sums[x] += row[x];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            uint8_t *o = out + (size_t) y * width;
+            const uint8_t *add = in + (size_t) clampIndex(y + kBoxRadius + 1, lastRow) * width;
+            const uint8_t *sub = in + (size_t) clampIndex(y - kBoxRadius, lastRow) * width;
+            for (int x = 0; x < width; x++) {
+                int sum = sums[x];
+                o[x] = (uint8_t) ((sum * kBoxReciprocal + 32768) >> 16);
+                sums[x] = sum + add[x] - sub[x];
+            }
+        }
+    }
+
+    void box(const uint8_t *src, int srcStride, int width, int height, uint8_t *dst, int dstStride) {
+        const size_t size = (size_t) width * height;
+        planeA_.resize(size);
+        planeB_.resize(size);
+        rowA_.resize(width);
+        rowB_.resize(width);
+
+        for (int y = 0; y < height; y++) {
+            memcpy(rowA_.data(), src + (size_t) y * srcStride, width);
+            uint8_t *in = rowA_.data();
+            uint8_t *out = rowB_.data();
+            for (int pass = 0; pass < kBoxPasses; pass++) {
+                boxRow(in, out, width);
+                std::swap(in, out);
+            }
+            memcpy(planeA_.data() + (size_t) y * width, in, width);
+        }
+
+        uint8_t *in = planeA_.data();
+        uint8_t *out = planeB_.data();
+        for (int pass = 0; pass < kBoxPasses; pass++) {
+            boxColumns(in, out, width, height);
+            std::swap(in, out);
+        }
+        for (int y = 0; y < height; y++) {
+            memcpy(dst + (size_t) y * dstStride, in + (size_t) y * width, width);
+        }
+    }
+};
+
+} // namespace edgeblur
+
+#endif // EDGEDETECTOR_BLUR_H
@@ -0,0 +1,72 @@
+#ifndef EDGEDETECTOR_LUMA_HISTOGRAM_H
+#define EDGEDETECTOR_LUMA_HISTOGRAM_H
+
+#include <jni.h>
+#include <cstdint>
+
+/**
+ * Sparse luma histogram for adaptive thresholds. Samples the same pixels as
+ * AdaptiveThreshold.sample on the Java side (every step-th pixel of every
+ * step-th row, starting at step / 2) and adds them to a Java int[256].
+ *
+ * Rows are added as the grayscale conversion produces them, so sampling
+ * reads pixels still in cache instead of making a second pass over the
+ * frame; flush() then updates the Java array in one JNI round trip.
+ */
+namespace lumahist {
+
+class Sampler {
+public:
+    Sampler(JNIEnv *env, jintArray histogram, int step)
+            : histogram(histogram), step(step),
+              enabled(histogram != nullptr && step >= 1 && env->GetArrayLength(histogram) >= 256) {}
+
+    /** True if the given row is sampled */
+    bool samples(int y) const {
+        return enabled && y >= step / 2 && (y - step / 2) % step == 0;
+    }
+
+    /** Add the sampled pixels of gray row y; rows that are not sampled are ignored */
+    void addRow(int y, const uint8_t *row, int width) {
+        if (!samples(y)) {
+            return;
+        }
+        for (int x = step / 2; x < width; x += step) {
+            counts[row[x]]++;
+        }
+    }
+
+    /** Add the sampled pixels of rows [y0, y1) of a gray image */
+    void addRows(const uint8_t *gray, int stride, int width, int y0, int y1) {
+        if (!enabled) {
+            return;
+        }
+        int first = step / 2;
+        int y = y0 <= first ? first : first + (y0 - first + step - 1) / step * step;
+        for (; y < y1; y += step) {
+            addRow(y, gray + (size_t) y * stride, width);
+        }
+    }
+
+    void flush(JNIEnv *env) {
+        if (!enabled) {
+            return;
+        }
+        jint total[256];
+        env->GetIntArrayRegion(histogram, 0, 256, total);
+        for (int i = 0; i < 256; i++) {
+            total[i] += counts[i];
+        }
+        env->SetIntArrayRegion(histogram, 0, 256, total);
+    }
+
+private:
+    jintArray histogram;
+    int step;
+    bool enabled;
+    jint counts[256] = {0};
+};
+
+} // namespace lumahist
+
+#endif // EDGEDETECTOR_LUMA_HISTOGRAM_H
@@ -2,15 +2,32 @@
 #include <string>
 #include <android/log.h>
 #include <cstring>
+#include <algorithm>
+#include <vector>
+
+#include "blur.h"
+#include "luma_histogram.h"
 
 #define LOG_TAG "NativeProcessor"
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
 
+// Blur scratch buffers, kept per calling thread
+static thread_local edgeblur::Blur frameBlur;
+
+static inline unsigned char grayAt(const jbyte *rgba, size_t i) {
+    unsigned char r = rgba[i];
+    unsigned char g = rgba[i + 1];
+    unsigned char b = rgba[i + 2];
+    return (unsigned char)(0.299f * r + 0.587f * g + 0.114f * b);
+}
+
 extern "C" {
 
 /**
- * Simple grayscale conversion without OpenCV for testing
+ * Simple grayscale conversion without OpenCV for testing: gray, the selected
+ * blur, then inverted. There is no Canny, so the thresholds are unused, but
+ * the luma histogram is still filled.
  */
 JNIEXPORT jbyteArray JNICALL
 Java_com_flam_edgedetector_NativeProcessor_processFrame(
@@ -18,12 +35,21 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
         jclass clazz,
         jbyteArray frameData,
         jint width,
-        jint height) {
+        jint height,
+        jint blurMode,
+        jint lowThreshold,
+        jint highThreshold,
+        jintArray histogram,
+        jint sampleStep) {
 
     if (frameData == nullptr) {
         LOGE("Frame data is null");
         return nullptr;
     }
+    if (!edgeblur::isValid(blurMode)) {
+        LOGE("Unknown blur mode %d", blurMode);
+        return nullptr;
+    }
 
     jsize dataLength = env->GetArrayLength(frameData);
     jbyte *frameBytes = env->GetByteArrayElements(frameData, nullptr);
@@ -42,18 +68,24 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
 
     // Simple grayscale conversion (since OpenCV might not be available)
     unsigned char* output = new unsigned char[dataLength];
-    
-    for (int i = 0; i < dataLength; i += 4) {
-        unsigned char r = frameBytes[i];
-        unsigned char g = frameBytes[i + 1];
-        unsigned char b = frameBytes[i + 2];
-        
-        // Grayscale conversion
-        unsigned char gray = (unsigned char)(0.299f * r + 0.587f * g + 0.114f * b);
-        
+    size_t pixels = (size_t) width * height;
+    std::vector<unsigned char> gray(pixels);
+    lumahist::Sampler sampler(env, histogram, sampleStep);
+    for (int y = 0; y < height; y++) {
+        unsigned char *row = gray.data() + (size_t) y * width;
+        for (int x = 0; x < width; x++) {
+            row[x] = grayAt(frameBytes, ((size_t) y * width + x) * 4);
+        }
+        sampler.addRow(y, row, width);
+    }
+    sampler.flush(env);
+    frameBlur.apply(blurMode, gray.data(), width, width, height, gray.data(), width);
+
+    for (size_t p = 0; p < pixels; p++) {
         // Simple edge detection approximation: Invert grayscale
-        unsigned char edge = 255 - gray;
-        
+        unsigned char edge = 255 - gray[p];
+
+        size_t i = p * 4;
         output[i] = edge;
         output[i + 1] = edge;
         output[i + 2] = edge;
@@ -69,6 +101,112 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
     return outputArray;
 }
 
+/**
+ * Process regions of interest with the simple filter. Only pixels inside the
+ * regions and the blur's reach around them are read; output is a full-frame
+ * composite or the concatenated crops.
+ */
+JNIEXPORT jbyteArray JNICALL
+Java_com_flam_edgedetector_NativeProcessor_processFrameRois(
+        JNIEnv *env,
+        jclass clazz,
+        jbyteArray frameData,
+        jint width,
+        jint height,
+        jintArray rois,
+        jboolean crops,
+        jint blurMode) {
+
+    if (frameData == nullptr || rois == nullptr) {
+        LOGE("Frame data or ROIs are null");
+        return nullptr;
+    }
+    if (!edgeblur::isValid(blurMode)) {
+        LOGE("Unknown blur mode %d", blurMode);
+        return nullptr;
+    }
+
+    jsize roiValues = env->GetArrayLength(rois);
+    if (roiValues % 4 != 0) {
+        LOGE("ROI array length must be a multiple of 4");
+        return nullptr;
+    }
+
+    // Clamp regions to the frame: {x0, y0, x1, y1} per region
+    std::vector<int> regions(roiValues);
+    size_t outputLength = crops ? 0 : (size_t) width * height * 4;
+    jint *roiData = env->GetIntArrayElements(rois, nullptr);
+    for (jsize i = 0; i < roiValues; i += 4) {
+        int x0 = std::max(0, (int) roiData[i]);
+        int y0 = std::max(0, (int) roiData[i + 1]);
+        int x1 = std::min((int) width, (int) (roiData[i] + roiData[i + 2]));
+        int y1 = std::min((int) height, (int) (roiData[i + 1] + roiData[i + 3]));
+        if (x1 < x0) x1 = x0;
+        if (y1 < y0) y1 = y0;
+        regions[i] = x0;
+        regions[i + 1] = y0;
+        regions[i + 2] = x1;
+        regions[i + 3] = y1;
+        if (crops) {
+            outputLength += (size_t) (x1 - x0) * (y1 - y0) * 4;
+        }
+    }
+    env->ReleaseIntArrayElements(rois, roiData, JNI_ABORT);
+
+    jbyte *frameBytes = env->GetByteArrayElements(frameData, nullptr);
+    if (frameBytes == nullptr) {
+        LOGE("Failed to get frame bytes");
+        return nullptr;
+    }
+
+    const int reach = edgeblur::reach(blurMode);
+    std::vector<unsigned char> output(outputLength, 0);
+    std::vector<unsigned char> gray;
+    size_t cropOffset = 0;
+    for (jsize i = 0; i < roiValues; i += 4) {
+        int x0 = regions[i], y0 = regions[i + 1], x1 = regions[i + 2], y1 = regions[i + 3];
+
+        // Blur the region plus its context so the interior matches a full frame
+        int cx0 = std::max(0, x0 - reach);
+        int cy0 = std::max(0, y0 - reach);
+        int cx1 = std::min((int) width, x1 + reach);
+        int cy1 = std::min((int) height, y1 + reach);
+        int cw = cx1 - cx0;
+        int ch = cy1 - cy0;
+        gray.resize((size_t) cw * ch);
+        for (int y = cy0; y < cy1; y++) {
+            for (int x = cx0; x < cx1; x++) {
+                gray[(size_t) (y - cy0) * cw + (x - cx0)] = grayAt(frameBytes, ((size_t) y * width + x) * 4);
+            }
+        }
+        frameBlur.apply(blurMode, gray.data(), cw, cw, ch, gray.data(), cw);
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                size_t src = ((size_t) y * width + x) * 4;
+                size_t dst = crops
+                        ? cropOffset + ((size_t) (y - y0) * (x1 - x0) + (x - x0)) * 4
+                        : src;
+                unsigned char edge = 255 - gray[(size_t) (y - cy0) * cw + (x - cx0)];
+                output[dst] = edge;
+                output[dst + 1] = edge;
+                output[dst + 2] = edge;
+                output[dst + 3] = 255;
+            }
+        }
+        if (crops) {
+            cropOffset += (size_t) (x1 - x0) * (y1 - y0) * 4;
+        }
+    }
+    env->ReleaseByteArrayElements(frameData, frameBytes, JNI_ABORT);
+
+    jbyteArray outputArray = env->NewByteArray((jsize) outputLength);
+    if (outputArray != nullptr) {
+        env->SetByteArrayRegion(outputArray, 0, (jsize) outputLength, (jbyte*)output.data());
+    }
+    return outputArray;
+}
+
 /**
  * Convert to grayscale
  */
@@ -1,7 +1,12 @@
 #include <jni.h>
+#include <algorithm>
 #include <string>
+#include <vector>
 #include <android/log.h>
 
+#include "blur.h"
+#include "luma_histogram.h"
+
 #ifdef OPENCV_ENABLED
 #include <opencv2/opencv.hpp>
 #endif
@@ -10,10 +15,19 @@
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
 
+// Blur scratch buffers, kept per calling thread
+static thread_local edgeblur::Blur frameBlur;
+
+// Rows per grayscale conversion band; small enough that a 1080p band of
+// RGBA and gray stays in cache for the histogram sampling that follows
+static const int GRAY_BAND_ROWS = 8;
+
 extern "C" {
 
 /**
- * Process frame using OpenCV Canny edge detection
+ * Process frame using OpenCV Canny edge detection, after the selected blur.
+ * When a histogram is given, sampled luma is added to it for the adaptive
+ * thresholds of the next frame.
  */
 extern "C" JNIEXPORT jbyteArray JNICALL
 Java_com_flam_edgedetector_NativeProcessor_processFrame(
@@ -21,12 +35,21 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
         jclass clazz,
         jbyteArray frameData,
         jint width,
-        jint height) {
+        jint height,
+        jint blurMode,
+        jint lowThreshold,
+        jint highThreshold,
+        jintArray histogram,
+        jint sampleStep) {
 
     if (frameData == nullptr) {
         LOGE("Frame data is null");
         return nullptr;
     }
+    if (!edgeblur::isValid(blurMode)) {
+        LOGE("Unknown blur mode %d", blurMode);
+        return nullptr;
+    }
 
 #ifdef OPENCV_ENABLED
     try {
@@ -43,17 +66,25 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
         // Create OpenCV Mat from RGBA data
         cv::Mat rgbaMat(height, width, CV_8UC4, (unsigned char *)frameBytes);
 
-        // Convert to grayscale
-        cv::Mat grayMat;
-        cv::cvtColor(rgbaMat, grayMat, cv::COLOR_RGBA2GRAY);
+        // Convert to grayscale in bands of rows, sampling the histogram from
+        // each band while it is still in cache
+        cv::Mat grayMat(height, width, CV_8UC1);
+        lumahist::Sampler sampler(env, histogram, sampleStep);
+        for (int y0 = 0; y0 < height; y0 += GRAY_BAND_ROWS) {
+            int y1 = std::min(y0 + GRAY_BAND_ROWS, height);
+            cv::Mat band = grayMat.rowRange(y0, y1);
+            cv::cvtColor(rgbaMat.rowRange(y0, y1), band, cv::COLOR_RGBA2GRAY);
+            sampler.addRows(grayMat.data, (int) grayMat.step, width, y0, y1);
+        }
+        sampler.flush(env);
 
-        // Apply Gaussian blur to reduce noise
-        cv::Mat blurredMat;
-        cv::GaussianBlur(grayMat, blurredMat, cv::Size(5, 5), 1.5);
+        // Reduce noise with the shared kernels so both backends smooth alike
+        frameBlur.apply(blurMode, grayMat.data, (int) grayMat.step, width, height,
+                        grayMat.data, (int) grayMat.step);
 
         // Apply Canny edge detection
         cv::Mat edgesMat;
-        cv::Canny(blurredMat, edgesMat, 50, 150);
+        cv::Canny(grayMat, edgesMat, lowThreshold, highThreshold);
 
         // Convert edges back to RGBA (edges will be white on black background)
         cv::Mat outputMat;
@@ -101,6 +132,122 @@ Java_com_flam_edgedetector_NativeProcessor_processFrame(
 #endif
 }
 
+/**
+ * Process regions of interest: each region is expanded by the context the
+ * blur and Canny need, processed on its own and its interior written
+ * to a full-frame composite or to a packed crop
+ */
+extern "C" JNIEXPORT jbyteArray JNICALL
+Java_com_flam_edgedetector_NativeProcessor_processFrameRois(
+        JNIEnv *env,
+        jclass clazz,
+        jbyteArray frameData,
+        jint width,
+        jint height,
+        jintArray rois,
+        jboolean crops,
+        jint blurMode) {
+
+    if (frameData == nullptr || rois == nullptr) {
+        LOGE("Frame data or ROIs are null");
+        return nullptr;
+    }
+    if (!edgeblur::isValid(blurMode)) {
+        LOGE("Unknown blur mode %d", blurMode);
+        return nullptr;
+    }
+
+    jsize roiValues = env->GetArrayLength(rois);
+    if (roiValues % 4 != 0) {
+        LOGE("ROI array length must be a multiple of 4");
+        return nullptr;
+    }
+
+#ifdef OPENCV_ENABLED
+    // Blur reach, then the 3x3 Sobel (1 px) and non-maximum suppression
+    // (1 px) inside Canny. Hysteresis follows edges across any distance, so
+    // a weak edge connected to a strong one only outside the context can
+    // still differ from a full-frame run.
+    const int border = edgeblur::reach(blurMode) + 2;
+    const cv::Rect frameRect(0, 0, width, height);
+
+    jint *roiData = env->GetIntArrayElements(rois, nullptr);
+    std::vector<cv::Rect> regions;
+    size_t outputLength = crops ? 0 : (size_t) width * height * 4;
+    for (jsize i = 0; i < roiValues; i += 4) {
+        cv::Rect region = cv::Rect(roiData[i], roiData[i + 1], roiData[i + 2], roiData[i + 3]) & frameRect;
+        regions.push_back(region);
+        if (crops) {
+            outputLength += (size_t) region.area() * 4;
+        }
+    }
+    env->ReleaseIntArrayElements(rois, roiData, JNI_ABORT);
+
+    jbyte *frameBytes = env->GetByteArrayElements(frameData, nullptr);
+    if (frameBytes == nullptr) {
+        LOGE("Failed to get frame bytes");
+        return nullptr;
+    }
+
+    try {
+        cv::Mat rgbaMat(height, width, CV_8UC4, (unsigned char *)frameBytes);
+        std::vector<unsigned char> output(outputLength, 0);
+        size_t cropOffset = 0;
+
+        for (const cv::Rect &region : regions) {
+            if (region.area() == 0) {
+                continue;
+            }
+            cv::Rect context(region.x - border, region.y - border,
+                             region.width + 2 * border, region.height + 2 * border);
+            context &= frameRect;
+
+            cv::Mat grayMat;
+            cv::cvtColor(rgbaMat(context), grayMat, cv::COLOR_RGBA2GRAY);
+            frameBlur.apply(blurMode, grayMat.data, (int) grayMat.step, grayMat.cols, grayMat.rows,
+                            grayMat.data, (int) grayMat.step);
+            cv::Mat edgesMat;
+            cv::Canny(grayMat, edgesMat, 50, 150);
+
+            cv::Rect interior(region.x - context.x, region.y - context.y, region.width, region.height);
+            cv::Mat edgesRgba;
+            cv::cvtColor(edgesMat(interior), edgesRgba, cv::COLOR_GRAY2RGBA);
+
+            if (crops) {
+                cv::Mat dst(region.height, region.width, CV_8UC4, output.data() + cropOffset);
+                edgesRgba.copyTo(dst);
+                cropOffset += (size_t) region.area() * 4;
+            } else {
+                cv::Mat dst(height, width, CV_8UC4, output.data());
+                edgesRgba.copyTo(dst(region));
+            }
+        }
+
+        env->ReleaseByteArrayElements(frameData, frameBytes, JNI_ABORT);
+
+        jbyteArray outputArray = env->NewByteArray((jsize) outputLength);
+        if (outputArray == nullptr) {
+            LOGE("Failed to create output array");
+            return nullptr;
+        }
+        env->SetByteArrayRegion(outputArray, 0, (jsize) outputLength, (jbyte *)output.data());
+        return outputArray;
+
+    } catch (cv::Exception &e) {
+        env->ReleaseByteArrayElements(frameData, frameBytes, JNI_ABORT);
+        LOGE("OpenCV exception: %s", e.what());
+        return nullptr;
+    } catch (...) {
+        env->ReleaseByteArrayElements(frameData, frameBytes, JNI_ABORT);
+        LOGE("Unknown exception during ROI processing");
+        return nullptr;
+    }
+#else
+    LOGE("OpenCV not configured - ROI processing unavailable");
+    return nullptr;
+#endif
+}
+
 /**
  * Convert frame to grayscale
  */
@@ -10,52 +10,148 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.Log;
+import android.util.Range;
 import android.util.Size;
+import android.view.Surface;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Camera handler using Camera2 API for capturing frames
  */
 public class CameraHandler {
     private static final String TAG = "CameraHandler";
-    private static final int IMAGE_WIDTH = 640;
-    private static final int IMAGE_HEIGHT = 480;
+    // Upper bound on how long stopCamera waits for a pending open to resolve
+    private static final long CLOSE_TIMEOUT_MS = 2500;
 
     private final Context context;
     private final FrameCallback frameCallback;
     
+    // Camera state below is only touched on the background thread
     private CameraDevice cameraDevice;
     private CameraCaptureSession captureSession;
     private ImageReader imageReader;
+    private volatile ImageReader snapshotReader;
+    private SnapshotCallback pendingSnapshotCallback;
+    // Set while manager.openCamera has not yet called back
+    private boolean openInFlight = false;
+    // Close requested while an open was in flight, run once it resolves
+    private Runnable closeAfterOpen;
+    private final Runnable openTask = this::openCamera;
     private Handler backgroundHandler;
     private HandlerThread backgroundThread;
+    private Runnable cameraOpenedListener;
+    private StreamConfigNegotiator.Budget budget = StreamConfigNegotiator.Budget.DEFAULT;
+    private volatile StreamConfigNegotiator.Result streamConfig;
+    private final YuvConverter yuvConverter = new YuvConverter();
+    private final RoiFrameBuffer rgbaFrame = new RoiFrameBuffer();
+    private final List<Roi> clampedRegions = new ArrayList<>();
+    private volatile List<Roi> conversionRegions;
 
     public interface FrameCallback {
         void onFrameAvailable(byte[] frameData, int width, int height);
     }
 
+    /**
+     * Receives a full-resolution YUV_420_888 still. The callback owns the image
+     * and must close it once done; no further snapshot can be delivered until
+     * then. Both methods are called on the camera background thread.
+     */
+    public interface SnapshotCallback {
+        void onSnapshotAvailable(Image image);
+
+        void onSnapshotFailed();
+    }
+
     public CameraHandler(Context context, FrameCallback callback) {
         this.context = context;
         this.frameCallback = callback;
     }
 
+    /**
+     * Set a listener invoked on the camera thread once the device is open
+     */
+    public void setCameraOpenedListener(Runnable listener) {
+        this.cameraOpenedListener = listener;
+    }
+
+    /**
+     * Set the processing budget used to negotiate the stream configuration.
+     * Takes effect the next time the camera is started.
+     */
+    public void setProcessingBudget(StreamConfigNegotiator.Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Limit YUV to RGBA conversion to these regions (which should already
+     * include any border the processing needs). Null converts the full frame.
+     */
+    public void setConversionRegions(List<Roi> regions) {
+        this.conversionRegions = regions;
+    }
+
+    /**
+     * Get the negotiated stream configuration, null before the camera is opened.
+     * Devices without YUV output sizes get the 640x480 fallback.
+     */
+    public StreamConfigNegotiator.Result getStreamConfig() {
+        return streamConfig;
+    }
+
+    /**
+     * Start the camera. Opening happens on the camera background thread so the
+     * caller (usually the UI thread) is not blocked by characteristics queries
+     * and ImageReader allocation.
+     */
     public void startCamera() {
         startBackgroundThread();
-        openCamera();
+        backgroundHandler.post(openTask);
     }
 
+    /**
+     * Stop the camera. Closing runs on the camera background thread, after any
+     * open already in progress has resolved, so the device and readers are
+     * never opened behind the close. Blocks until closed or the timeout passes.
+     */
     public void stopCamera() {
-        closeCamera();
+        Handler handler = backgroundHandler;
+        if (handler != null) {
+            handler.removeCallbacks(openTask);
+            CountDownLatch closed = new CountDownLatch(1);
+            handler.post(() -> {
+                Runnable close = () -> {
+                    closeCamera();
+                    closed.countDown();
+                };
+                if (openInFlight) {
+                    closeAfterOpen = close;
+                } else {
+                    close.run();
+                }
+            });
+            try {
+                if (!closed.await(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Timed out waiting for the camera to close");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.e(TAG, "Interrupted while closing camera", e);
+            }
+        }
         stopBackgroundThread();
     }
 
@@ -96,9 +192,13 @@ public class CameraHandler {
                 return;
             }
 
+            StreamCapabilities capabilities = readCapabilities(manager.getCameraCharacteristics(cameraId));
+            streamConfig = StreamConfigNegotiator.negotiate(capabilities, budget);
+            Log.d(TAG, "Negotiated stream configuration: " + streamConfig);
+
             // Set up ImageReader
-            imageReader = ImageReader.newInstance(IMAGE_WIDTH, IMAGE_HEIGHT, 
-                    ImageFormat.YUV_420_888, 2);
+            imageReader = ImageReader.newInstance(streamConfig.width, streamConfig.height,
+                    ImageFormat.YUV_420_888, streamConfig.maxImages);
             imageReader.setOnImageAvailableListener(reader -> {
                 Image image = null;
                 try {
@@ -118,23 +218,33 @@ public class CameraHandler {
                 }
             }, backgroundHandler);
 
+            setUpSnapshotReader(capabilities);
+
             if (ActivityCompat.checkSelfPermission(context, Manifest.permission.CAMERA) 
                     != PackageManager.PERMISSION_GRANTED) {
                 Log.e(TAG, "Camera permission not granted");
                 return;
             }
 
+            openInFlight = true;
             manager.openCamera(cameraId, new CameraDevice.StateCallback() {
                 @Override
                 public void onOpened(@NonNull CameraDevice camera) {
                     cameraDevice = camera;
-                    createCaptureSession();
+                    if (openResolved()) {
+                        return;
+                    }
+                    if (cameraOpenedListener != null) {
+                        cameraOpenedListener.run();
+                    }
+                    createCaptureSession(snapshotReader != null);
                 }
 
                 @Override
                 public void onDisconnected(@NonNull CameraDevice camera) {
                     camera.close();
                     cameraDevice = null;
+                    openResolved();
                 }
 
                 @Override
@@ -142,14 +252,151 @@ public class CameraHandler {
                     camera.close();
                     cameraDevice = null;
                     Log.e(TAG, "Camera error: " + error);
+                    openResolved();
                 }
             }, backgroundHandler);
 
-        } catch (CameraAccessException e) {
+        } catch (CameraAccessException | SecurityException e) {
+            openInFlight = false;
             Log.e(TAG, "Camera access exception", e);
         }
     }
 
+    /**
+     * Mark the pending open as resolved and run a close requested meanwhile
+     *
+     * @return true if the camera was closed
+     */
+    private boolean openResolved() {
+        openInFlight = false;
+        Runnable close = closeAfterOpen;
+        closeAfterOpen = null;
+        if (close == null) {
+            return false;
+        }
+        close.run();
+        return true;
+    }
+
+    /**
+     * Read YUV output sizes, minimum frame durations and AE FPS ranges
+     *
+     * @return the capabilities, or null if the device reports no stream configuration map
+     */
+    private StreamCapabilities readCapabilities(CameraCharacteristics characteristics) {
+        StreamConfigurationMap map = characteristics.get(
+                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            Log.w(TAG, "No stream configuration map - using fallback size");
+            return null;
+        }
+
+        List<StreamCapabilities.OutputSize> sizes = new ArrayList<>();
+        Size[] outputSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (outputSizes != null) {
+            for (Size size : outputSizes) {
+                long minDuration = map.getOutputMinFrameDuration(ImageFormat.YUV_420_888, size);
+                sizes.add(new StreamCapabilities.OutputSize(
+                        size.getWidth(), size.getHeight(), minDuration));
+            }
+        }
+
+        List<StreamCapabilities.FpsRange> ranges = new ArrayList<>();
+        Range<Integer>[] fpsRanges = characteristics.get(
+                CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        if (fpsRanges != null) {
+            for (Range<Integer> range : fpsRanges) {
+                ranges.add(new StreamCapabilities.FpsRange(range.getLower(), range.getUpper()));
+            }
+        }
+
+        StreamCapabilities capabilities = new StreamCapabilities(sizes, ranges);
+        // Dump the table so it can be recorded for off-device negotiation checks
+        Log.d(TAG, "Stream capabilities:\n" + capabilities.toTable());
+        return capabilities;
+    }
+
+    /**
+     * Create the full-resolution still reader at the largest YUV output size.
+     * A single buffer is enough since a snapshot is held until processed.
+     */
+    private void setUpSnapshotReader(StreamCapabilities capabilities) {
+        StreamCapabilities.OutputSize largest = null;
+        if (capabilities != null) {
+            for (StreamCapabilities.OutputSize size : capabilities.getOutputSizes()) {
+                if (largest == null || size.pixels() > largest.pixels()) {
+                    largest = size;
+                }
+            }
+        }
+        if (largest == null) {
+            Log.w(TAG, "No YUV output sizes - snapshots unavailable");
+            return;
+        }
+
+        snapshotReader = ImageReader.newInstance(largest.width, largest.height,
+                ImageFormat.YUV_420_888, 1);
+        snapshotReader.setOnImageAvailableListener(reader -> {
+            Image image = null;
+            try {
+                image = reader.acquireNextImage();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Snapshot buffer still in use", e);
+            }
+            if (image == null) {
+                return;
+            }
+            SnapshotCallback callback = pendingSnapshotCallback;
+            pendingSnapshotCallback = null;
+            if (callback != null) {
+                callback.onSnapshotAvailable(image);
+            } else {
+                image.close();
+            }
+        }, backgroundHandler);
+        Log.d(TAG, "Snapshot reader: " + largest);
+    }
+
+    /**
+     * Capture one full-resolution YUV still. The preview keeps streaming while
+     * the still is captured.
+     *
+     * @return false if snapshots are unavailable or one is already pending
+     */
+    public boolean captureSnapshot(SnapshotCallback callback) {
+        Handler handler = backgroundHandler;
+        if (handler == null) {
+            return false;
+        }
+        handler.post(() -> {
+            if (cameraDevice == null || captureSession == null || snapshotReader == null
+                    || pendingSnapshotCallback != null) {
+                Log.w(TAG, "Snapshot not available right now");
+                callback.onSnapshotFailed();
+                return;
+            }
+            try {
+                CaptureRequest.Builder builder = cameraDevice.createCaptureRequest(
+                        CameraDevice.TEMPLATE_STILL_CAPTURE);
+                builder.addTarget(snapshotReader.getSurface());
+                builder.addTarget(imageReader.getSurface());
+                builder.set(CaptureRequest.CONTROL_AF_MODE,
+                        CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                pendingSnapshotCallback = callback;
+                captureSession.capture(builder.build(), null, backgroundHandler);
+            } catch (CameraAccessException | IllegalStateException e) {
+                pendingSnapshotCallback = null;
+                Log.e(TAG, "Error capturing snapshot", e);
+                callback.onSnapshotFailed();
+            }
+        });
+        return snapshotReader != null;
+    }
+
+    public boolean isSnapshotAvailable() {
+        return snapshotReader != null;
+    }
+
     private String getCameraId(CameraManager manager) {
         try {
             for (String cameraId : manager.getCameraIdList()) {
@@ -165,7 +412,7 @@ public class CameraHandler {
         return null;
     }
 
-    private void createCaptureSession() {
+    private void createCaptureSession(boolean withSnapshot) {
         if (cameraDevice == null) {
             Log.e(TAG, "Cannot create capture session - camera device is null");
             return;
@@ -178,8 +425,11 @@ public class CameraHandler {
         
         try {
             Log.d(TAG, "Creating capture session...");
+            List<Surface> outputs = withSnapshot
+                    ? Arrays.asList(imageReader.getSurface(), snapshotReader.getSurface())
+                    : Arrays.asList(imageReader.getSurface());
             cameraDevice.createCaptureSession(
-                    Arrays.asList(imageReader.getSurface()),
+                    outputs,
                     new CameraCaptureSession.StateCallback() {
                         @Override
                         public void onConfigured(@NonNull CameraCaptureSession session) {
@@ -190,12 +440,22 @@ public class CameraHandler {
                             Log.d(TAG, "Capture session configured successfully");
                             captureSession = session;
                             
-                            // Add a small delay to ensure everything is ready
-                            backgroundHandler.postDelayed(() -> startCapture(), 100);
+                            // Session is usable once configured; no extra delay
+                            // before the first repeating request
+                            startCapture();
                         }
 
                         @Override
                         public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                            if (withSnapshot && cameraDevice != null) {
+                                // Some devices cannot stream preview and full-size
+                                // YUV together; keep the preview working
+                                Log.w(TAG, "Session with snapshot output failed, retrying without it");
+                                snapshotReader.close();
+                                snapshotReader = null;
+                                createCaptureSession(false);
+                                return;
+                            }
                             Log.e(TAG, "Capture session configuration failed");
                         }
                     },
@@ -242,6 +502,10 @@ public class CameraHandler {
             builder.addTarget(imageReader.getSurface());
             builder.set(CaptureRequest.CONTROL_AF_MODE, 
                     CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            if (streamConfig != null && streamConfig.fpsRange != null) {
+                builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
+                        new Range<>(streamConfig.fpsRange.lower, streamConfig.fpsRange.upper));
+            }
             
             CaptureRequest request = builder.build();
             captureSession.setRepeatingRequest(request, null, backgroundHandler);
@@ -268,10 +532,20 @@ public class CameraHandler {
             imageReader.close();
             imageReader = null;
         }
+        if (snapshotReader != null) {
+            snapshotReader.close();
+            snapshotReader = null;
+        }
+        if (pendingSnapshotCallback != null) {
+            pendingSnapshotCallback.onSnapshotFailed();
+            pendingSnapshotCallback = null;
+        }
     }
 
     /**
-     * Convert YUV_420_888 image to RGBA byte array
+     * Convert YUV_420_888 image to RGBA byte array. When conversion regions
+     * are set only those pixels are converted and the rest stay zero. The
+     * array is reused for the next frame.
      */
     private byte[] convertYUVtoRGBA(Image image) {
         try {
@@ -279,22 +553,31 @@ public class CameraHandler {
             int height = image.getHeight();
             
             Image.Plane[] planes = image.getPlanes();
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int ySize = yBuffer.remaining();
-            int uSize = uBuffer.remaining();
-            int vSize = vBuffer.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-            
-            yBuffer.get(nv21, 0, ySize);
-            vBuffer.get(nv21, ySize, vSize);
-            uBuffer.get(nv21, ySize + vSize, uSize);
+            byte[] rgbaData;
 
-            byte[] rgbaData = new byte[width * height * 4];
-            convertYUV420ToRGBA8888(nv21, rgbaData, width, height);
+            List<Roi> regions = conversionRegions;
+            if (regions == null) {
+                rgbaData = rgbaFrame.full(width, height);
+                yuvConverter.toRgba(planes[0].getBuffer(), planes[0].getRowStride(),
+                        planes[1].getBuffer(), planes[2].getBuffer(),
+                        planes[1].getRowStride(), planes[1].getPixelStride(),
+                        width, height, rgbaData, null);
+            } else {
+                clampedRegions.clear();
+                for (Roi region : regions) {
+                    Roi r = region.clamp(width, height);
+                    if (r != null) {
+                        clampedRegions.add(r);
+                    }
+                }
+                rgbaData = rgbaFrame.regions(width, height, clampedRegions);
+                for (Roi region : clampedRegions) {
+                    yuvConverter.toRgba(planes[0].getBuffer(), planes[0].getRowStride(),
+                            planes[1].getBuffer(), planes[2].getBuffer(),
+                            planes[1].getRowStride(), planes[1].getPixelStride(),
+                            width, height, rgbaData, region);
+                }
+            }
             
             return rgbaData;
         } catch (Exception e) {
@@ -302,35 +585,4 @@ public class CameraHandler {
             return null;
         }
     }
-
-    /**
-     * YUV420 to RGBA conversion
-     */
-    private void convertYUV420ToRGBA8888(byte[] yuv420, byte[] rgba, int width, int height) {
-        final int frameSize = width * height;
-        
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
-                int y = (0xff & yuv420[j * width + i]);
-                int v = (0xff & yuv420[frameSize + (j >> 1) * width + (i & ~1)]);
-                int u = (0xff & yuv420[frameSize + (j >> 1) * width + (i & ~1) + 1]);
-                
-                y = y < 16 ? 16 : y;
-                
-                int r = Math.round(1.164f * (y - 16) + 1.596f * (v - 128));
-                int g = Math.round(1.164f * (y - 16) - 0.813f * (v - 128) - 0.391f * (u - 128));
-                int b = Math.round(1.164f * (y - 16) + 2.018f * (u - 128));
-                
-                r = r < 0 ? 0 : (r > 255 ? 255 : r);
-                g = g < 0 ? 0 : (g > 255 ? 255 : g);
-                b = b < 0 ? 0 : (b > 255 ? 255 : b);
-                
-                int index = (j * width + i) * 4;
-                rgba[index] = (byte) r;
-                rgba[index + 1] = (byte) g;
-                rgba[index + 2] = (byte) b;
-                rgba[index + 3] = (byte) 255; // Alpha
-            }
-        }
-    }
 }
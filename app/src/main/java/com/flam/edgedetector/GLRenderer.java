@@ -37,6 +37,22 @@ public class GLRenderer implements GLSurfaceView.Renderer {
             "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
             "}\n";
 
+    // Contour overlay shaders - positions are already in clip space
+    private static final String LINE_VERTEX_SHADER =
+            "attribute vec4 aPosition;\n" +
+            "void main() {\n" +
+            "    gl_Position = aPosition;\n" +
+            "}\n";
+
+    private static final String LINE_FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform vec4 uColor;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = uColor;\n" +
+            "}\n";
+
+    private static final float[] OVERLAY_COLOR = {0.0f, 1.0f, 0.3f, 1.0f};
+
     // Vertex coordinates (full screen quad)
     private static final float[] VERTEX_COORDS = {
             -1.0f, -1.0f,  // Bottom left
@@ -62,10 +78,17 @@ public class GLRenderer implements GLSurfaceView.Renderer {
     private int aPositionHandle;
     private int aTexCoordHandle;
     private int uTextureHandle;
+
+    private int lineProgram;
+    private int lineAPositionHandle;
+    private int lineUColorHandle;
+    private FloatBuffer overlayBuffer;
     
     private byte[] currentFrameData;
     private int frameWidth;
     private int frameHeight;
+    private float[] overlayVertices = new float[0];
+    private int overlayFloatCount;
     private final Object frameLock = new Object();
 
     public GLRenderer(Context context) {
@@ -105,6 +128,14 @@ public class GLRenderer implements GLSurfaceView.Renderer {
         aTexCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
         uTextureHandle = GLES20.glGetUniformLocation(program, "uTexture");
 
+        lineProgram = createProgram(LINE_VERTEX_SHADER, LINE_FRAGMENT_SHADER);
+        if (lineProgram == 0) {
+            Log.e(TAG, "Failed to create overlay shader program");
+        } else {
+            lineAPositionHandle = GLES20.glGetAttribLocation(lineProgram, "aPosition");
+            lineUColorHandle = GLES20.glGetUniformLocation(lineProgram, "uColor");
+        }
+
         // Generate texture
         int[] textures = new int[1];
         GLES20.glGenTextures(1, textures, 0);
@@ -129,6 +160,7 @@ public class GLRenderer implements GLSurfaceView.Renderer {
     public void onDrawFrame(GL10 gl) {
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
+        int overlayCount;
         synchronized (frameLock) {
             if (currentFrameData != null && frameWidth > 0 && frameHeight > 0) {
                 // Update texture with new frame data
@@ -138,6 +170,17 @@ public class GLRenderer implements GLSurfaceView.Renderer {
                         frameWidth, frameHeight, 0, GLES20.GL_RGBA,
                         GLES20.GL_UNSIGNED_BYTE, buffer);
             }
+            overlayCount = overlayFloatCount;
+            if (overlayCount > 0) {
+                if (overlayBuffer == null || overlayBuffer.capacity() < overlayCount) {
+                    overlayBuffer = ByteBuffer.allocateDirect(overlayCount * 4)
+                            .order(ByteOrder.nativeOrder())
+                            .asFloatBuffer();
+                }
+                overlayBuffer.clear();
+                overlayBuffer.put(overlayVertices, 0, overlayCount);
+                overlayBuffer.position(0);
+            }
         }
 
         // Use shader program
@@ -163,15 +206,73 @@ public class GLRenderer implements GLSurfaceView.Renderer {
         GLES20.glDisableVertexAttribArray(aPositionHandle);
         GLES20.glDisableVertexAttribArray(aTexCoordHandle);
 
+        if (overlayCount > 0 && lineProgram != 0) {
+            drawOverlay(overlayCount / 2);
+        }
+
         checkGLError("onDrawFrame");
     }
 
+    private void drawOverlay(int vertexCount) {
+        GLES20.glUseProgram(lineProgram);
+        GLES20.glUniform4fv(lineUColorHandle, 1, OVERLAY_COLOR, 0);
+        GLES20.glEnableVertexAttribArray(lineAPositionHandle);
+        GLES20.glVertexAttribPointer(lineAPositionHandle, 2, GLES20.GL_FLOAT, false, 0, overlayBuffer);
+        GLES20.glLineWidth(2.0f);
+        GLES20.glDrawArrays(GLES20.GL_LINES, 0, vertexCount);
+        GLES20.glDisableVertexAttribArray(lineAPositionHandle);
+    }
+
+    /**
+     * Set the contour overlay drawn on top of the frame. Each polyline is
+     * drawn as line segments in the same rotated orientation as the texture.
+     *
+     * @param polylines Polylines in frame pixel coordinates, or null to clear
+     * @param width Frame width
+     * @param height Frame height
+     */
+    public void updateOverlay(ContourVectorizer.Polylines polylines, int width, int height) {
+        synchronized (frameLock) {
+            overlayFloatCount = 0;
+            if (polylines == null || width <= 0 || height <= 0) {
+                return;
+            }
+            int segments = polylines.getVertexCount() - polylines.getPolylineCount();
+            if (segments <= 0) {
+                return;
+            }
+            if (overlayVertices.length < segments * 4) {
+                overlayVertices = new float[segments * 4];
+            }
+            // Same 90 degree rotation as TEXTURE_COORDS: frame x runs down the
+            // screen and frame y runs right to left
+            float sx = 2.0f / width;
+            float sy = 2.0f / height;
+            int n = 0;
+            for (int p = 0; p < polylines.getPolylineCount(); p++) {
+                int end = polylines.start(p + 1);
+                for (int v = polylines.start(p) + 1; v < end; v++) {
+                    overlayVertices[n++] = 1.0f - (polylines.y(v - 1) + 0.5f) * sy;
+                    overlayVertices[n++] = 1.0f - (polylines.x(v - 1) + 0.5f) * sx;
+                    overlayVertices[n++] = 1.0f - (polylines.y(v) + 0.5f) * sy;
+                    overlayVertices[n++] = 1.0f - (polylines.x(v) + 0.5f) * sx;
+                }
+            }
+            overlayFloatCount = n;
+        }
+    }
+
     /**
-     * Update texture with new frame data
+     * Update texture with new frame data. The data is copied, so the caller
+     * may reuse the array for its next frame.
      */
     public void updateTexture(byte[] frameData, int width, int height) {
+        int size = width * height * 4;
         synchronized (frameLock) {
-            currentFrameData = frameData;
+            if (currentFrameData == null || currentFrameData.length != size) {
+                currentFrameData = new byte[size];
+            }
+            System.arraycopy(frameData, 0, currentFrameData, 0, size);
             frameWidth = width;
             frameHeight = height;
         }
@@ -2,6 +2,7 @@ package com.flam.edgedetector;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
+import android.media.Image;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
 import android.util.Log;
@@ -15,9 +16,39 @@ import androidx.core.content.ContextCompat;
 
 import com.google.android.material.button.MaterialButton;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
     private static final int CAMERA_PERMISSION_REQUEST = 100;
+    // Launch extra with regions of interest as "x,y,w,h;x,y,w,h"
+    public static final String EXTRA_ROI = "roi";
+    // Launch extra with the pre-edge blur: none, gaussian, binomial or box3
+    public static final String EXTRA_BLUR = "blur";
+    // Launch extra with the edge thresholds: median (default), otsu or fixed
+    public static final String EXTRA_THRESHOLD = "threshold";
+    private static final int WARMUP_WIDTH = 64;
+    private static final int WARMUP_HEIGHT = 48;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int SNAPSHOT_TILE_SIZE = 256;
+    private static final long SNAPSHOT_MEMORY_LIMIT = 4L * 1024 * 1024;
+    // Longest onPause waits for cancelled tiles to stop reading the still
+    private static final long SNAPSHOT_CANCEL_TIMEOUT_MS = 300;
+    private static final float CONTOUR_TOLERANCE = 1.5f;
+    private static final int CONTOUR_MIN_VERTICES = 8;
 
     private GLSurfaceView glSurfaceView;
     private GLRenderer glRenderer;
@@ -25,14 +56,64 @@ public class MainActivity extends AppCompatActivity {
     private TextView fpsTextView;
     private TextView statusTextView;
     private MaterialButton toggleButton;
+    private MaterialButton snapshotButton;
+    private MaterialButton vectorButton;
 
     private boolean isProcessingEnabled = false;
     private long lastFrameTime = 0;
     private float currentFps = 0.0f;
 
+    private final StartupTracker startupTracker = new StartupTracker();
+    private ExecutorService startupExecutor;
+    private volatile boolean engineReady = false;
+
+    private TiledSnapshotProcessor snapshotProcessor;
+    private ExecutorService snapshotExecutor;
+    private final AtomicReference<SnapshotJob> snapshotJob = new AtomicReference<>();
+    private volatile boolean snapshotInProgress = false;
+    private int previewFrameCounter = 0;
+
+    private final ContourVectorizer contourVectorizer = new ContourVectorizer();
+    private final ByteArrayOutputStream contourStream = new ByteArrayOutputStream();
+    private volatile boolean isVectorizationEnabled = false;
+    private volatile int lastVertexCount = -1;
+
+    private volatile List<Roi> regionsOfInterest = Collections.emptyList();
+    private volatile BlurMode blurMode = BlurMode.GAUSSIAN;
+    private volatile RoiEdgeProcessor roiEdgeProcessor =
+            new RoiEdgeProcessor(EdgeKernels.DEFAULT_SOBEL_THRESHOLD, blurMode);
+    // Used by the warm-up, then only by the frame callback
+    private final Blur frameBlur = new Blur();
+    // Null for the fixed 50/150 (native) and 100 (Java) thresholds
+    private volatile AdaptiveThreshold adaptiveThreshold = new AdaptiveThreshold(AdaptiveThreshold.Method.MEDIAN);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        startupTracker.markActivityCreated();
+
+        String blurName = getIntent().getStringExtra(EXTRA_BLUR);
+        if (blurName != null) {
+            try {
+                blurMode = BlurMode.fromName(blurName);
+                roiEdgeProcessor = new RoiEdgeProcessor(EdgeKernels.DEFAULT_SOBEL_THRESHOLD, blurMode);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Ignoring invalid blur extra: " + blurName);
+            }
+        }
+        String thresholdName = getIntent().getStringExtra(EXTRA_THRESHOLD);
+        if ("fixed".equalsIgnoreCase(thresholdName)) {
+            adaptiveThreshold = null;
+        } else if ("otsu".equalsIgnoreCase(thresholdName)) {
+            adaptiveThreshold = new AdaptiveThreshold(AdaptiveThreshold.Method.OTSU);
+        } else if (thresholdName != null && !"median".equalsIgnoreCase(thresholdName)) {
+            Log.w(TAG, "Ignoring invalid threshold extra: " + thresholdName);
+        }
+
+        // Load native libraries and warm up the kernels off the main thread,
+        // concurrently with camera open and GL context creation
+        startEngineInitialization();
+
         setContentView(R.layout.activity_main);
 
         // Initialize views
@@ -40,14 +121,20 @@ public class MainActivity extends AppCompatActivity {
         fpsTextView = findViewById(R.id.fpsTextView);
         statusTextView = findViewById(R.id.statusTextView);
         toggleButton = findViewById(R.id.toggleButton);
+        snapshotButton = findViewById(R.id.snapshotButton);
+        vectorButton = findViewById(R.id.vectorButton);
 
-        // Check if native libraries are loaded
-        if (!NativeProcessor.isLoaded()) {
-            Log.w(TAG, "Native library not available - using Java fallback");
-            toggleButton.setEnabled(true);
-        } else {
-            Log.d(TAG, "Native libraries loaded successfully!");
-            toggleButton.setEnabled(true);
+        // Processing can be enabled right away; raw frames are shown until
+        // the edge engine finishes warming up
+        toggleButton.setEnabled(true);
+
+        String roiSpec = getIntent().getStringExtra(EXTRA_ROI);
+        if (roiSpec != null) {
+            try {
+                setRegionsOfInterest(Roi.parseList(roiSpec));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Ignoring invalid ROI extra: " + e.getMessage());
+            }
         }
 
         // Set up OpenGL ES 2.0
@@ -62,11 +149,23 @@ public class MainActivity extends AppCompatActivity {
             toggleProcessing();
         });
         
+        // Leave one core for the live preview while a snapshot is processed
+        int snapshotThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        snapshotProcessor = new TiledSnapshotProcessor(SNAPSHOT_TILE_SIZE, snapshotThreads,
+                SNAPSHOT_MEMORY_LIMIT, EdgeKernels.DEFAULT_SOBEL_THRESHOLD);
+        snapshotExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Snapshot"));
+        snapshotButton.setOnClickListener(v -> takeSnapshot());
+
+        vectorButton.setOnClickListener(v -> {
+            isVectorizationEnabled = !isVectorizationEnabled;
+            vectorButton.setText(isVectorizationEnabled ? R.string.vectors_on : R.string.vectors_off);
+        });
+
         // Initialize button text
         Log.d(TAG, "Initializing button text, isProcessingEnabled: " + isProcessingEnabled);
         updateButtonText();
 
-        // Request camera permission
+        // Request camera permission. The camera itself is started in onResume.
         if (checkCameraPermission()) {
             initializeCamera();
         } else {
@@ -76,6 +175,49 @@ public class MainActivity extends AppCompatActivity {
         updateStatusText();
     }
 
+    /**
+     * Load native libraries and run a few small frames through the edge
+     * kernels on a background thread so the first real frame does not pay for
+     * library loading, JIT and first-use allocation.
+     */
+    private void startEngineInitialization() {
+        startupExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "EngineInit");
+            t.setPriority(Thread.NORM_PRIORITY);
+            return t;
+        });
+        startupExecutor.execute(() -> {
+            boolean nativeLoaded = NativeProcessor.loadLibraries();
+            if (!nativeLoaded) {
+                Log.w(TAG, "Native library not available - using Java fallback");
+            }
+
+            byte[] warmupFrame = new byte[WARMUP_WIDTH * WARMUP_HEIGHT * 4];
+            for (int i = 0; i < warmupFrame.length; i++) {
+                warmupFrame[i] = (byte) (i * 31);
+            }
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                processFrameJava(warmupFrame, WARMUP_WIDTH, WARMUP_HEIGHT);
+            }
+            if (nativeLoaded) {
+                try {
+                    processFrameNative(warmupFrame, WARMUP_WIDTH, WARMUP_HEIGHT);
+                } catch (UnsatisfiedLinkError e) {
+                    Log.w(TAG, "Native warm-up failed: " + e.getMessage());
+                }
+            }
+            if (adaptiveThreshold != null) {
+                // Start the camera frames from the defaults, not the warm-up pattern
+                adaptiveThreshold.reset();
+            }
+
+            engineReady = true;
+            startupTracker.markEngineReady(nativeLoaded);
+            runOnUiThread(this::updateConversionRegions);
+        });
+        startupExecutor.shutdown();
+    }
+
     private boolean checkCameraPermission() {
         return ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
                 == PackageManager.PERMISSION_GRANTED;
@@ -93,6 +235,7 @@ public class MainActivity extends AppCompatActivity {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == CAMERA_PERMISSION_REQUEST) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                // onResume follows the permission result and starts the camera
                 initializeCamera();
             } else {
                 Toast.makeText(this, R.string.camera_permission_required,
@@ -109,7 +252,8 @@ public class MainActivity extends AppCompatActivity {
                 processFrame(frameData, width, height);
             }
         });
-        cameraHandler.startCamera();
+        cameraHandler.setCameraOpenedListener(startupTracker::markCameraOpened);
+        updateConversionRegions();
     }
 
     private void processFrame(byte[] frameData, int width, int height) {
@@ -119,6 +263,12 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
 
+            // Preview runs at reduced priority while a snapshot is processed:
+            // drop every other frame to free the CPU for the tile workers
+            if (snapshotInProgress && (++previewFrameCounter & 1) == 0) {
+                return;
+            }
+
             long currentTime = System.currentTimeMillis();
             if (lastFrameTime > 0) {
                 float deltaTime = (currentTime - lastFrameTime) / 1000.0f;
@@ -130,13 +280,17 @@ public class MainActivity extends AppCompatActivity {
             lastFrameTime = currentTime;
 
             byte[] processedData;
-            if (isProcessingEnabled) {
+            boolean edgeFrame = false;
+            if (isProcessingEnabled && engineReady) {
                 long startTime = System.nanoTime();
                 
-                // Try native processing first, fall back to Java if unavailable
-                if (NativeProcessor.isLoaded()) {
+                List<Roi> rois = regionsOfInterest;
+                if (!rois.isEmpty()) {
+                    processedData = processRegions(frameData, width, height, rois);
+                } else if (NativeProcessor.isLoaded()) {
+                    // Try native processing first, fall back to Java if unavailable
                     try {
-                        processedData = NativeProcessor.processFrame(frameData, width, height);
+                        processedData = processFrameNative(frameData, width, height);
                         if (processedData == null) {
                             Log.w(TAG, "Native processing returned null, using Java fallback");
                             processedData = processFrameJava(frameData, width, height);
@@ -156,23 +310,246 @@ public class MainActivity extends AppCompatActivity {
                 if (System.currentTimeMillis() % 1000 < 50) {
                     Log.d(TAG, "Frame processing time: " + processingTime + " ms");
                 }
+                edgeFrame = true;
             } else {
-                // Use raw frame
+                // Use raw frame (also while the edge engine is still warming up)
                 processedData = frameData;
             }
 
+            if (edgeFrame && isVectorizationEnabled && processedData != null) {
+                vectorizeEdges(processedData, width, height);
+            } else if (lastVertexCount >= 0) {
+                lastVertexCount = -1;
+                if (glRenderer != null) {
+                    glRenderer.updateOverlay(null, width, height);
+                }
+            }
+
             // Update OpenGL texture
             if (glRenderer != null && processedData != null) {
                 glRenderer.updateTexture(processedData, width, height);
                 glSurfaceView.requestRender();
+                startupTracker.markFirstFrame();
+                // Only frames that actually went through edge detection count
+                if (edgeFrame) {
+                    startupTracker.markFirstEdgeFrame();
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "Error processing frame", e);
         }
     }
 
+    /**
+     * Restrict processing to regions of interest. An empty list processes the
+     * whole frame again.
+     */
+    public void setRegionsOfInterest(List<Roi> rois) {
+        regionsOfInterest = Collections.unmodifiableList(new ArrayList<>(rois));
+        Log.d(TAG, "Regions of interest: " + regionsOfInterest);
+        updateConversionRegions();
+    }
+
+    /**
+     * While edge detection runs on regions of interest, only those regions
+     * plus the filter border need to be converted from YUV
+     */
+    private void updateConversionRegions() {
+        if (cameraHandler == null) {
+            return;
+        }
+        List<Roi> rois = regionsOfInterest;
+        if (!isProcessingEnabled || !engineReady || rois.isEmpty()) {
+            cameraHandler.setConversionRegions(null);
+            return;
+        }
+        List<Roi> regions = new ArrayList<>(rois.size());
+        for (Roi roi : rois) {
+            regions.add(roi.grow(Roi.EDGE_BORDER));
+        }
+        cameraHandler.setConversionRegions(regions);
+    }
+
+    /**
+     * Edge detection on regions of interest composited into a full frame
+     */
+    private byte[] processRegions(byte[] frameData, int width, int height, List<Roi> rois) {
+        if (NativeProcessor.isLoaded()) {
+            try {
+                byte[] processed = NativeProcessor.processFrameRois(frameData, width, height,
+                        Roi.toArray(rois), false, blurMode.id);
+                if (processed != null) {
+                    return processed;
+                }
+                Log.w(TAG, "Native ROI processing returned null, using Java fallback");
+            } catch (UnsatisfiedLinkError e) {
+                Log.w(TAG, "Native ROI processing failed, using Java fallback: " + e.getMessage());
+            }
+        }
+        return roiEdgeProcessor.processComposite(frameData, width, height, rois);
+    }
+
+    /**
+     * Trace the edge map into simplified polylines, encode them and hand them
+     * to the renderer as a line overlay
+     */
+    private void vectorizeEdges(byte[] edgeRgba, int width, int height) {
+        long startTime = System.nanoTime();
+        ContourVectorizer.Polylines polylines = contourVectorizer.vectorize(edgeRgba, 0, 4,
+                width * 4, width, height, CONTOUR_TOLERANCE, CONTOUR_MIN_VERTICES);
+        ContourCodec.encode(polylines, width, height, contourStream);
+        float vectorTime = (System.nanoTime() - startTime) / 1_000_000.0f;
+
+        lastVertexCount = polylines.getVertexCount();
+        if (glRenderer != null) {
+            glRenderer.updateOverlay(polylines, width, height);
+        }
+        if (System.currentTimeMillis() % 1000 < 50) {
+            Log.d(TAG, "Contours: " + polylines.getPolylineCount() + " polylines, "
+                    + polylines.getVertexCount() + " vertices, " + contourStream.size()
+                    + " bytes, " + vectorTime + " ms");
+        }
+    }
+
+    /**
+     * Capture a full-resolution still and write its packed edge map to app
+     * storage using bounded-memory tiled processing
+     */
+    private void takeSnapshot() {
+        if (cameraHandler == null || snapshotInProgress) {
+            return;
+        }
+        snapshotInProgress = true;
+        boolean requested = cameraHandler.captureSnapshot(new CameraHandler.SnapshotCallback() {
+            @Override
+            public void onSnapshotAvailable(Image image) {
+                SnapshotJob job = new SnapshotJob(image);
+                snapshotJob.set(job);
+                try {
+                    job.future = snapshotExecutor.submit(job);
+                } catch (RejectedExecutionException e) {
+                    snapshotJob.compareAndSet(job, null);
+                    job.abandon();
+                }
+            }
+
+            @Override
+            public void onSnapshotFailed() {
+                snapshotInProgress = false;
+                runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                        R.string.snapshot_unavailable, Toast.LENGTH_SHORT).show());
+            }
+        });
+        if (!requested) {
+            snapshotInProgress = false;
+            Toast.makeText(this, R.string.snapshot_unavailable, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(this, R.string.snapshot_started, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * One submitted snapshot. Whichever of {@link #run} and {@link #abandon}
+     * claims the image first is responsible for closing it, so a job
+     * cancelled before it starts still releases its still.
+     */
+    private final class SnapshotJob implements Runnable {
+        final Image image;
+        final TiledSnapshotProcessor.Cancellation cancellation = new TiledSnapshotProcessor.Cancellation();
+        final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        volatile Future<?> future;
+
+        SnapshotJob(Image image) {
+            this.image = image;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                processSnapshot(image, cancellation);
+            } finally {
+                snapshotJob.compareAndSet(this, null);
+                released.countDown();
+            }
+        }
+
+        /**
+         * @return true if the job had not started and its image is now closed
+         */
+        boolean abandon() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            image.close();
+            snapshotInProgress = false;
+            released.countDown();
+            return true;
+        }
+    }
+
+    private void processSnapshot(Image image, TiledSnapshotProcessor.Cancellation cancellation) {
+        File dir = new File(getFilesDir(), "snapshots");
+        File output = new File(dir, "edges_" + System.currentTimeMillis() + ".edg");
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            Image.Plane luma = image.getPlanes()[0];
+            TiledSnapshotProcessor.Result result = snapshotProcessor.process(luma.getBuffer(),
+                    luma.getRowStride(), image.getWidth(), image.getHeight(), output, cancellation);
+            Log.d(TAG, "Snapshot " + result.width + "x" + result.height + " in " + result.tiles
+                    + " tiles, " + result.elapsedMs + " ms, workspace " + result.workspaceBytes + " bytes");
+            runOnUiThread(() -> Toast.makeText(this,
+                    getString(R.string.snapshot_saved, output.getName(), result.elapsedMs),
+                    Toast.LENGTH_LONG).show());
+        } catch (IOException | InterruptedException e) {
+            Log.e(TAG, "Snapshot processing failed", e);
+            if (!output.delete()) {
+                Log.w(TAG, "Could not delete partial snapshot " + output);
+            }
+            runOnUiThread(() -> Toast.makeText(this, R.string.snapshot_failed,
+                    Toast.LENGTH_SHORT).show());
+        } finally {
+            image.close();
+            snapshotInProgress = false;
+        }
+    }
+
+    /**
+     * Stop a pending or running snapshot and briefly wait until its workers no
+     * longer read the camera buffer, which becomes invalid once the camera is
+     * closed. Cancelled tiles finish within a few milliseconds, so the wait is
+     * bounded rather than risking the main thread on a stuck task.
+     */
+    private void cancelSnapshot() {
+        SnapshotJob job = snapshotJob.getAndSet(null);
+        if (job == null) {
+            return;
+        }
+        job.cancellation.cancel();
+        if (job.abandon()) {
+            return;
+        }
+        Future<?> future = job.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+        try {
+            if (!job.released.await(SNAPSHOT_CANCEL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Snapshot still running after " + SNAPSHOT_CANCEL_TIMEOUT_MS + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void toggleProcessing() {
         isProcessingEnabled = !isProcessingEnabled;
+        updateConversionRegions();
         updateStatusText();
         updateButtonText();
         
@@ -185,52 +562,45 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * Native Canny. With adaptive thresholds the library samples this frame's
+     * luma into the histogram, which sets the thresholds for the next frame.
+     */
+    private byte[] processFrameNative(byte[] frameData, int width, int height) {
+        AdaptiveThreshold adaptive = adaptiveThreshold;
+        if (adaptive == null) {
+            return NativeProcessor.processFrame(frameData, width, height, blurMode.id,
+                    AdaptiveThreshold.DEFAULT_LOW, AdaptiveThreshold.DEFAULT_HIGH, null, 0);
+        }
+        byte[] processed = NativeProcessor.processFrame(frameData, width, height, blurMode.id,
+                adaptive.low(), adaptive.high(), adaptive.histogram(), adaptive.getSampleStep());
+        adaptive.update();
+        return processed;
+    }
+
     /**
      * Java-based Sobel edge detection (when native library not available)
      * Black background with white edges like proper Canny detection
      */
     private byte[] processFrameJava(byte[] frameData, int width, int height) {
-        // Convert to grayscale
-        int[] gray = new int[width * height];
-        for (int i = 0; i < frameData.length; i += 4) {
-            int idx = i / 4;
-            int r = frameData[i] & 0xFF;
-            int g = frameData[i + 1] & 0xFF;
-            int b = frameData[i + 2] & 0xFF;
-            gray[idx] = (int)(0.299 * r + 0.587 * g + 0.114 * b);
+        byte[] gray = new byte[width * height];
+        EdgeKernels.rgbaToGray(frameData, gray, width, height);
+
+        int threshold = EdgeKernels.DEFAULT_SOBEL_THRESHOLD;
+        AdaptiveThreshold adaptive = adaptiveThreshold;
+        if (adaptive != null) {
+            adaptive.sample(gray, 0, width, width, height);
+            adaptive.update();
+            threshold = adaptive.sobelThreshold();
         }
-        
-        // Sobel edge detection
+        frameBlur.apply(blurMode, gray, 0, width, width, height, gray, 0, width);
+
+        // Sobel edge detection: black background (0), white edges (255)
+        byte[] edges = new byte[width * height];
+        EdgeKernels.sobel(gray, 0, width, width, height, threshold, edges, 0, width);
+
         byte[] output = new byte[frameData.length];
-        int threshold = 100; // Edge threshold
-        
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int idx = y * width + x;
-                
-                // Sobel X gradient
-                int gx = -gray[(y-1)*width + x-1] + gray[(y-1)*width + x+1]
-                       - 2*gray[y*width + x-1] + 2*gray[y*width + x+1]
-                       - gray[(y+1)*width + x-1] + gray[(y+1)*width + x+1];
-                
-                // Sobel Y gradient
-                int gy = -gray[(y-1)*width + x-1] - 2*gray[(y-1)*width + x] - gray[(y-1)*width + x+1]
-                       + gray[(y+1)*width + x-1] + 2*gray[(y+1)*width + x] + gray[(y+1)*width + x+1];
-                
-                // Gradient magnitude
-                int magnitude = (int)Math.sqrt(gx * gx + gy * gy);
-                
-                // Threshold: black background (0), white edges (255)
-                int edgeValue = magnitude > threshold ? 255 : 0;
-                
-                int outIdx = idx * 4;
-                output[outIdx] = (byte)edgeValue;
-                output[outIdx + 1] = (byte)edgeValue;
-                output[outIdx + 2] = (byte)edgeValue;
-                output[outIdx + 3] = (byte)255; // Alpha
-            }
-        }
-        
+        EdgeKernels.edgesToRgba(edges, output, width, height);
         return output;
     }
     
@@ -255,7 +625,10 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateFpsDisplay() {
-        String fpsText = getString(R.string.fps_label, currentFps);
+        int vertices = lastVertexCount;
+        String fpsText = vertices >= 0
+                ? getString(R.string.fps_vertices_label, currentFps, vertices)
+                : getString(R.string.fps_label, currentFps);
         fpsTextView.setText(fpsText);
     }
 
@@ -271,6 +644,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        cancelSnapshot();
         if (cameraHandler != null) {
             cameraHandler.stopCamera();
         }
@@ -283,5 +657,7 @@ public class MainActivity extends AppCompatActivity {
         if (cameraHandler != null) {
             cameraHandler.release();
         }
+        snapshotExecutor.shutdownNow();
+        snapshotProcessor.shutdown();
     }
 }
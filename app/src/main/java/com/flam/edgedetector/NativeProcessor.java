@@ -4,19 +4,34 @@ import android.util.Log;
 
 /**
  * JNI Bridge class for processing frames using native C++ and OpenCV
+ *
+ * Libraries are no longer loaded from a static initializer: call
+ * {@link #loadLibraries()} from a background thread during startup so the
+ * first class access on the UI thread does not pay for dlopen.
  */
 public class NativeProcessor {
     private static final String TAG = "NativeProcessor";
 
-    private static boolean librariesLoaded = false;
-    private static String loadError = null;
+    private static volatile boolean librariesLoaded = false;
+    private static volatile boolean loadAttempted = false;
+    private static volatile String loadError = null;
 
-    static {
+    /**
+     * Load OpenCV and the native library. Safe to call more than once and
+     * from any thread; only the first call does any work.
+     *
+     * @return true if the native libraries are available
+     */
+    public static synchronized boolean loadLibraries() {
+        if (loadAttempted) {
+            return librariesLoaded;
+        }
+        loadAttempted = true;
         try {
             // Load OpenCV library first (required dependency)
             System.loadLibrary("opencv_java4");
             Log.d(TAG, "OpenCV library loaded successfully");
-            
+
             // Then load our native library
             System.loadLibrary("native-lib");
             Log.d(TAG, "Native library loaded successfully");
@@ -26,15 +41,23 @@ public class NativeProcessor {
             Log.e(TAG, "Failed to load native libraries: " + e.getMessage());
             Log.e(TAG, "Stack trace: ", e);
         }
+        return librariesLoaded;
     }
 
     /**
-     * Check if native libraries are loaded
+     * Check if native libraries are loaded. Does not trigger loading.
      */
     public static boolean isLoaded() {
         return librariesLoaded;
     }
 
+    /**
+     * Check if {@link #loadLibraries()} has already run (successfully or not)
+     */
+    public static boolean isLoadAttempted() {
+        return loadAttempted;
+    }
+
     /**
      * Get the load error message if libraries failed to load
      */
@@ -48,9 +71,36 @@ public class NativeProcessor {
      * @param frameData Input frame data in RGBA format
      * @param width Frame width
      * @param height Frame height
+     * @param blurMode {@link BlurMode#id} of the smoothing applied before edge detection
+     * @param lowThreshold Canny low threshold
+     * @param highThreshold Canny high threshold
+     * @param histogram 256 luma bins the sampled grayscale pixels are added
+     *                  to, see {@link AdaptiveThreshold#histogram()}; may be null
+     * @param sampleStep Sample every Nth row and column into the histogram
      * @return Processed frame data (edge detected)
      */
-    public static native byte[] processFrame(byte[] frameData, int width, int height);
+    public static native byte[] processFrame(byte[] frameData, int width, int height, int blurMode,
+                                             int lowThreshold, int highThreshold,
+                                             int[] histogram, int sampleStep);
+
+    /**
+     * Process only regions of interest of a frame. Conversion, blur and edge
+     * detection run over each region plus the border the filters need.
+     * Canny hysteresis is not local, so a weak edge whose link to a strong
+     * one lies outside that border can differ from the full-frame result.
+     *
+     * @param frameData Input frame data in RGBA format
+     * @param width Frame width
+     * @param height Frame height
+     * @param rois Regions as {x, y, width, height, ...}, see {@link Roi#toArray}
+     * @param crops false to composite the regions into a full RGBA frame
+     *              (zero elsewhere), true to return the RGBA crops of the
+     *              clamped regions concatenated in order
+     * @param blurMode {@link BlurMode#id} of the smoothing applied before edge detection
+     * @return Processed data, or null on error
+     */
+    public static native byte[] processFrameRois(byte[] frameData, int width, int height,
+                                                 int[] rois, boolean crops, int blurMode);
 
     /**
      * Apply grayscale conversion to a frame
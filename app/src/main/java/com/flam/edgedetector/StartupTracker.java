@@ -0,0 +1,99 @@
+package com.flam.edgedetector;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Records cold-start milestones and reports time-to-first-frame and
+ * time-to-first-edge-frame. All times are milliseconds since process start.
+ */
+public class StartupTracker {
+    private static final String TAG = "Startup";
+
+    private final long processStartMs;
+
+    private volatile long activityCreatedMs = -1;
+    private volatile long engineReadyMs = -1;
+    private volatile long cameraOpenedMs = -1;
+    private volatile long firstFrameMs = -1;
+    private volatile long firstEdgeFrameMs = -1;
+
+    public StartupTracker() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            processStartMs = Process.getStartElapsedRealtime();
+        } else {
+            processStartMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private long now() {
+        return SystemClock.elapsedRealtime() - processStartMs;
+    }
+
+    public void markActivityCreated() {
+        activityCreatedMs = now();
+        Log.i(TAG, "Activity created at " + activityCreatedMs + " ms");
+    }
+
+    public void markEngineReady(boolean nativeLoaded) {
+        engineReadyMs = now();
+        Log.i(TAG, "Edge engine ready at " + engineReadyMs + " ms (native: " + nativeLoaded + ")");
+    }
+
+    public void markCameraOpened() {
+        cameraOpenedMs = now();
+        Log.i(TAG, "Camera opened at " + cameraOpenedMs + " ms");
+    }
+
+    /**
+     * Record the first frame handed to the renderer. Only the first call counts.
+     */
+    public void markFirstFrame() {
+        if (firstFrameMs < 0) {
+            firstFrameMs = now();
+            Log.i(TAG, "Time to first frame: " + firstFrameMs + " ms");
+        }
+    }
+
+    /**
+     * Record the first edge-processed frame handed to the renderer. Frames
+     * shown raw, because processing is off or the engine is still warming
+     * up, do not count. Only the first call counts.
+     */
+    public void markFirstEdgeFrame() {
+        if (firstEdgeFrameMs < 0) {
+            firstEdgeFrameMs = now();
+            Log.i(TAG, "Time to first edge frame: " + firstEdgeFrameMs + " ms");
+            Log.i(TAG, getSummary());
+        }
+    }
+
+    public boolean hasFirstFrame() {
+        return firstFrameMs >= 0;
+    }
+
+    public boolean hasFirstEdgeFrame() {
+        return firstEdgeFrameMs >= 0;
+    }
+
+    public long getFirstFrameMs() {
+        return firstFrameMs;
+    }
+
+    public long getFirstEdgeFrameMs() {
+        return firstEdgeFrameMs;
+    }
+
+    /**
+     * One-line summary of all milestones, -1 for ones not reached yet
+     */
+    public String getSummary() {
+        return "startup: activity=" + activityCreatedMs
+                + "ms engine=" + engineReadyMs
+                + "ms camera=" + cameraOpenedMs
+                + "ms firstFrame=" + firstFrameMs
+                + "ms firstEdgeFrame=" + firstEdgeFrameMs + "ms";
+    }
+}
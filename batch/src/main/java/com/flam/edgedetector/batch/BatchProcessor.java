@@ -0,0 +1,355 @@
+package com.flam.edgedetector.batch;
+
+import com.flam.edgedetector.BlurMode;
+import com.flam.edgedetector.EdgeDetector;
+import com.flam.edgedetector.EdgeKernels;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline batch edge detection over a directory of frames.
+ *
+ * Three stages overlap I/O with compute:
+ * <pre>
+ * reader thread -> N decode+detect workers -> writer thread
+ * </pre>
+ * Frames travel in a fixed pool of {@link Slot}s. The reader blocks when no
+ * slot is free, which bounds memory, and slots keep their input and output
+ * arrays between frames. Each worker owns its {@link FrameCodec} and
+ * {@link EdgeDetector}, so long jobs run without per-frame garbage (apart
+ * from PNG decoding, which ImageIO allocates).
+ *
+ * Usage: BatchProcessor &lt;input dir&gt; &lt;output dir&gt; [--threads N]
+ *        [--size WxH] [--packed] [--threshold N] [--blur mode] [--progress seconds]
+ */
+public class BatchProcessor {
+    private static final Slot END = new Slot();
+
+    /**
+     * One frame in flight, reused for many frames
+     */
+    static final class Slot {
+        Path input;
+        FrameCodec.InputFormat format;
+        byte[] data = new byte[0];
+        int length;
+        byte[] out = new byte[0];
+        int outLength;
+        String outputName;
+        String error;
+    }
+
+    private final List<Path> inputs;
+    private final Path outputDir;
+    private final int threadCount;
+    private final int rawWidth;
+    private final int rawHeight;
+    private final boolean packed;
+    private final int threshold;
+    private final BlurMode blurMode;
+
+    private final BlockingQueue<Slot> free;
+    private final BlockingQueue<Slot> decoded;
+    private final BlockingQueue<Slot> encoded;
+
+    final AtomicLong framesDone = new AtomicLong();
+    final AtomicLong framesFailed = new AtomicLong();
+    final AtomicLong bytesRead = new AtomicLong();
+    private volatile IOException fatal;
+
+    BatchProcessor(List<Path> inputs, Path outputDir, int threadCount, int rawWidth, int rawHeight,
+                   boolean packed, int threshold, BlurMode blurMode) {
+        this.inputs = inputs;
+        this.outputDir = outputDir;
+        this.threadCount = threadCount;
+        this.rawWidth = rawWidth;
+        this.rawHeight = rawHeight;
+        this.packed = packed;
+        this.threshold = threshold;
+        this.blurMode = blurMode;
+        // Enough slots for every worker to have one in hand, one queued on
+        // each side, and a little slack for I/O jitter
+        int slots = threadCount * 3 + 2;
+        free = new ArrayBlockingQueue<>(slots);
+        decoded = new ArrayBlockingQueue<>(slots + threadCount);
+        encoded = new ArrayBlockingQueue<>(slots + 1);
+        for (int i = 0; i < slots; i++) {
+            free.add(new Slot());
+        }
+    }
+
+    /**
+     * Run the whole job, returning once every frame is written
+     */
+    void run() throws IOException, InterruptedException {
+        Thread reader = new Thread(this::readLoop, "batch-reader");
+        Thread writer = new Thread(this::writeLoop, "batch-writer");
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            workers.add(new Thread(this::workLoop, "batch-worker-" + i));
+        }
+        writer.start();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        reader.start();
+
+        reader.join();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        encoded.put(END);
+        writer.join();
+        if (fatal != null) {
+            throw fatal;
+        }
+    }
+
+    private void readLoop() {
+        try {
+            for (Path input : inputs) {
+                Slot slot = free.take();
+                if (fatal != null) {
+                    break;
+                }
+                slot.input = input;
+                slot.format = FrameCodec.InputFormat.forName(input.getFileName().toString());
+                slot.error = null;
+                try {
+                    readFully(input, slot);
+                    bytesRead.addAndGet(slot.length);
+                } catch (IOException e) {
+                    slot.error = e.getMessage();
+                }
+                decoded.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i = 0; i < threadCount; i++) {
+                decoded.offer(END);
+            }
+        }
+    }
+
+    private static void readFully(Path input, Slot slot) throws IOException {
+        try (FileInputStream in = new FileInputStream(input.toFile())) {
+            long size = in.getChannel().size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large");
+            }
+            if (slot.data.length < size) {
+                slot.data = new byte[(int) size];
+            }
+            int length = 0;
+            int n;
+            while (length < size && (n = in.read(slot.data, length, (int) size - length)) > 0) {
+                length += n;
+            }
+            slot.length = length;
+        }
+    }
+
+    private void workLoop() {
+        FrameCodec codec = new FrameCodec(rawWidth, rawHeight);
+        EdgeDetector detector = new EdgeDetector(threshold, blurMode);
+        try {
+            while (true) {
+                Slot slot = decoded.take();
+                if (slot == END) {
+                    break;
+                }
+                if (slot.error == null) {
+                    try {
+                        process(codec, detector, slot);
+                    } catch (IOException | RuntimeException e) {
+                        slot.error = e.getMessage() != null ? e.getMessage() : e.toString();
+                    }
+                }
+                encoded.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(FrameCodec codec, EdgeDetector detector, Slot slot) throws IOException {
+        codec.decode(slot.format, slot.data, slot.length);
+        int width = codec.width();
+        int height = codec.height();
+        byte[] edges = detector.fromGray(codec.gray(), 0, width, width, height);
+
+        int size = FrameCodec.encodedSize(packed, width, height);
+        if (slot.out.length < size) {
+            slot.out = new byte[size];
+        }
+        slot.outLength = FrameCodec.encode(edges, width, height, packed, slot.out);
+        slot.outputName = outputName(slot.input.getFileName().toString(), packed);
+    }
+
+    /**
+     * Output file name for an input. The source extension is kept, so inputs
+     * that differ only in extension (a.png and a.pgm) never share an output.
+     */
+    static String outputName(String inputName, boolean packed) {
+        return inputName + (packed ? ".edg" : ".pgm");
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Slot slot = encoded.take();
+                if (slot == END) {
+                    break;
+                }
+                if (slot.error != null) {
+                    framesFailed.incrementAndGet();
+                    System.err.println(slot.input.getFileName() + ": " + slot.error);
+                } else if (fatal == null) {
+                    try (FileOutputStream out = new FileOutputStream(
+                            outputDir.resolve(slot.outputName).toFile())) {
+                        out.write(slot.out, 0, slot.outLength);
+                        framesDone.incrementAndGet();
+                    } catch (IOException e) {
+                        // Output problems (disk full, permissions) will not fix themselves
+                        fatal = e;
+                    }
+                }
+                free.put(slot);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Supported input files of a directory, in name order
+     */
+    static List<Path> listInputs(Path dir) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)
+                        && FrameCodec.InputFormat.forName(path.getFileName().toString()) != null) {
+                    inputs.add(path);
+                }
+            }
+        }
+        Collections.sort(inputs);
+        return inputs;
+    }
+
+    /**
+     * Parse a raw frame size given as WxH
+     *
+     * @return {width, height}, or null unless both are positive integers
+     */
+    static int[] parseSize(String spec) {
+        String[] parts = spec.split("x", -1);
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            int width = Integer.parseInt(parts[0]);
+            int height = Integer.parseInt(parts[1]);
+            return width > 0 && height > 0 ? new int[]{width, height} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchProcessor <input dir> <output dir> [--threads N] [--size WxH]"
+                + " [--packed] [--threshold N] [--blur none|gaussian|binomial|box3] [--progress seconds]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int rawWidth = 0;
+        int rawHeight = 0;
+        boolean packed = false;
+        int threshold = EdgeKernels.DEFAULT_SOBEL_THRESHOLD;
+        BlurMode blurMode = BlurMode.NONE;
+        double progressSeconds = 2;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--size":
+                        int[] size = parseSize(args[++i]);
+                        if (size == null) {
+                            usage();
+                        }
+                        rawWidth = size[0];
+                        rawHeight = size[1];
+                        break;
+                    case "--packed":
+                        packed = true;
+                        break;
+                    case "--threshold":
+                        threshold = Integer.parseInt(args[++i]);
+                        break;
+                    case "--blur":
+                        blurMode = BlurMode.fromName(args[++i]);
+                        break;
+                    case "--progress":
+                        progressSeconds = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            usage();
+                        }
+                        positional.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            // Missing option value, or one that is not a number / blur mode
+            usage();
+        }
+        if (positional.size() != 2 || threads < 1) {
+            usage();
+        }
+
+        Path inputDir = Paths.get(positional.get(0));
+        Path outputDir = Paths.get(positional.get(1));
+        Files.createDirectories(outputDir);
+        if (Files.isSameFile(inputDir, outputDir)) {
+            System.err.println("Output directory must differ from the input directory");
+            System.exit(2);
+        }
+
+        List<Path> inputs = listInputs(inputDir);
+        System.out.printf(Locale.US, "%d frames, %d worker threads%n", inputs.size(), threads);
+        BatchProcessor processor = new BatchProcessor(inputs, outputDir, threads,
+                rawWidth, rawHeight, packed, threshold, blurMode);
+
+        ProgressReporter progress = new ProgressReporter(processor, inputs.size(), progressSeconds);
+        progress.start();
+        try {
+            processor.run();
+        } finally {
+            progress.stop();
+        }
+        progress.printSummary();
+        if (processor.framesFailed.get() > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.flam.edgedetector.batch;
+
+import com.flam.edgedetector.EdgeKernels;
+import com.flam.edgedetector.YuvConverter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes input frames to 8-bit gray and encodes edge maps for the batch
+ * tool. One instance per worker thread: decode buffers are reused between
+ * frames, so steady-state processing of PGM and raw YUV does not allocate.
+ *
+ * Inputs by extension: .pgm (binary P5, 8 or 16 bit), .png (via ImageIO),
+ * .yuv / .i420 and .nv21 (tightly packed, size given up front).
+ * Outputs: binary PGM edge map, or the packed "EDG1" format written by
+ * {@link com.flam.edgedetector.TiledSnapshotProcessor}.
+ */
+final class FrameCodec {
+    enum InputFormat {
+        PGM, PNG, I420, NV21;
+
+        /**
+         * Format for a file name, or null if unsupported
+         */
+        static InputFormat forName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".pgm")) {
+                return PGM;
+            } else if (lower.endsWith(".png")) {
+                return PNG;
+            } else if (lower.endsWith(".yuv") || lower.endsWith(".i420")) {
+                return I420;
+            } else if (lower.endsWith(".nv21")) {
+                return NV21;
+            }
+            return null;
+        }
+    }
+
+    private static final byte[] EDG_MAGIC = {'E', 'D', 'G', '1'};
+
+    private final int rawWidth;
+    private final int rawHeight;
+    private final YuvConverter yuvConverter = new YuvConverter();
+    private byte[] gray = new byte[0];
+    private int[] rgbRow = new int[0];
+    private int width;
+    private int height;
+
+    /**
+     * @param rawWidth  Width of raw YUV inputs, 0 if none are expected
+     * @param rawHeight Height of raw YUV inputs, 0 if none are expected
+     */
+    FrameCodec(int rawWidth, int rawHeight) {
+        this.rawWidth = rawWidth;
+        this.rawHeight = rawHeight;
+    }
+
+    /** Gray pixels of the last decoded frame, tightly packed */
+    byte[] gray() {
+        return gray;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    /**
+     * Decode a whole input file held in memory
+     */
+    void decode(InputFormat format, byte[] data, int length) throws IOException {
+        switch (format) {
+            case PGM:
+                decodePgm(data, length);
+                break;
+            case PNG:
+                decodePng(data, length);
+                break;
+            default:
+                decodeYuv(data, length, format == InputFormat.NV21);
+                break;
+        }
+    }
+
+    private void decodeYuv(byte[] data, int length, boolean nv21) throws IOException {
+        if (rawWidth <= 0 || rawHeight <= 0) {
+            throw new IOException("Raw YUV input needs --size WxH");
+        }
+        int expected = YuvConverter.packedFrameSize(rawWidth, rawHeight);
+        if (length != expected) {
+            throw new IOException("Raw frame is " + length + " bytes, expected " + expected
+                    + " for " + rawWidth + "x" + rawHeight);
+        }
+        setSize(rawWidth, rawHeight);
+        yuvConverter.packedToGray(data, nv21, width, height, gray);
+    }
+
+    private void decodePgm(byte[] data, int length) throws IOException {
+        int[] pos = {0};
+        String magic = pgmToken(data, length, pos);
+        if (!"P5".equals(magic)) {
+            throw new IOException("Only binary PGM (P5) is supported, got " + magic);
+        }
+        int w = Integer.parseInt(pgmToken(data, length, pos));
+        int h = Integer.parseInt(pgmToken(data, length, pos));
+        int maxVal = Integer.parseInt(pgmToken(data, length, pos));
+        // Exactly one whitespace byte separates the header from the raster
+        int offset = pos[0] + 1;
+        int bytesPerSample = maxVal > 255 ? 2 : 1;
+        if (w <= 0 || h <= 0 || maxVal <= 0 || maxVal > 65535
+                || offset + (long) w * h * bytesPerSample > length) {
+            throw new IOException("Bad PGM header " + w + "x" + h + " maxval " + maxVal);
+        }
+        setSize(w, h);
+        int size = w * h;
+        if (bytesPerSample == 1 && maxVal == 255) {
+            System.arraycopy(data, offset, gray, 0, size);
+        } else if (bytesPerSample == 1) {
+            for (int i = 0; i < size; i++) {
+                gray[i] = (byte) ((data[offset + i] & 0xFF) * 255 / maxVal);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                int sample = ((data[offset + 2 * i] & 0xFF) << 8) | (data[offset + 2 * i + 1] & 0xFF);
+                gray[i] = (byte) (sample * 255 / maxVal);
+            }
+        }
+    }
+
+    /**
+     * Next whitespace-separated PGM header token, skipping '#' comments
+     */
+    private static String pgmToken(byte[] data, int length, int[] pos) throws IOException {
+        int i = pos[0];
+        while (i < length) {
+            if (data[i] == '#') {
+                while (i < length && data[i] != '\n') {
+                    i++;
+                }
+            } else if (Character.isWhitespace(data[i])) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        int start = i;
+        while (i < length && !Character.isWhitespace(data[i])) {
+            i++;
+        }
+        if (start == i) {
+            throw new IOException("Truncated PGM header");
+        }
+        pos[0] = i;
+        return new String(data, start, i - start, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * PNG decoding goes through ImageIO, which allocates its own image per
+     * frame; gray images are copied straight from the raster, anything else
+     * uses the same luma weights as {@link EdgeKernels#rgbaToGray}
+     */
+    private void decodePng(byte[] data, int length) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data, 0, length));
+        if (image == null) {
+            throw new IOException("Unreadable PNG");
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        setSize(w, h);
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, 0, gray, 0, w * h);
+            return;
+        }
+        if (rgbRow.length < w) {
+            rgbRow = new int[w];
+        }
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, rgbRow, 0, w);
+            int row = y * w;
+            for (int x = 0; x < w; x++) {
+                int argb = rgbRow[x];
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                gray[row + x] = (byte) (int) (0.299 * r + 0.587 * g + 0.114 * b);
+            }
+        }
+    }
+
+    private void setSize(int w, int h) {
+        width = w;
+        height = h;
+        if (gray.length < w * h) {
+            gray = new byte[w * h];
+        }
+    }
+
+    /**
+     * Encoded size of an edge map, so callers can size a reusable buffer
+     */
+    static int encodedSize(boolean packed, int width, int height) {
+        if (packed) {
+            return EDG_MAGIC.length + 8 + EdgeKernels.packedRowBytes(width) * height;
+        }
+        return pgmHeader(width, height).length + width * height;
+    }
+
+    /**
+     * Encode an edge map as PGM or packed EDG1
+     *
+     * @return Bytes written to {@code out}
+     */
+    static int encode(byte[] edges, int width, int height, boolean packed, byte[] out) {
+        if (packed) {
+            System.arraycopy(EDG_MAGIC, 0, out, 0, EDG_MAGIC.length);
+            putInt(out, 4, width);
+            putInt(out, 8, height);
+            EdgeKernels.packBits(edges, width, height, out, 12);
+            return 12 + EdgeKernels.packedRowBytes(width) * height;
+        }
+        byte[] header = pgmHeader(width, height);
+        System.arraycopy(header, 0, out, 0, header.length);
+        System.arraycopy(edges, 0, out, header.length, width * height);
+        return header.length + width * height;
+    }
+
+    private static byte[] pgmHeader(int width, int height) {
+        return ("P5\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Big-endian, matching the ByteBuffer default used for snapshot files
+    private static void putInt(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,63 @@
+package com.flam.edgedetector.batch;
+
+import java.util.Locale;
+
+/**
+ * Periodic frames/s report for a running batch job
+ */
+final class ProgressReporter {
+    private final BatchProcessor processor;
+    private final int totalFrames;
+    private final long intervalMs;
+    private final long startNanos = System.nanoTime();
+    private Thread thread;
+
+    ProgressReporter(BatchProcessor processor, int totalFrames, double intervalSeconds) {
+        this.processor = processor;
+        this.totalFrames = totalFrames;
+        this.intervalMs = Math.max(100, (long) (intervalSeconds * 1000));
+    }
+
+    void start() {
+        thread = new Thread(this::reportLoop, "batch-progress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() throws InterruptedException {
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void reportLoop() {
+        long lastFrames = 0;
+        long lastNanos = startNanos;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long frames = processor.framesDone.get() + processor.framesFailed.get();
+            double recent = (frames - lastFrames) / ((now - lastNanos) / 1e9);
+            double overall = frames / ((now - startNanos) / 1e9);
+            String eta = overall > 0
+                    ? String.format(Locale.US, "%.0fs", (totalFrames - frames) / overall)
+                    : "?";
+            System.out.printf(Locale.US, "%d/%d frames  %.1f frames/s (avg %.1f)  ETA %s%n",
+                    frames, totalFrames, recent, overall, eta);
+            lastFrames = frames;
+            lastNanos = now;
+        }
+    }
+
+    void printSummary() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long done = processor.framesDone.get();
+        System.out.printf(Locale.US,
+                "Done: %d frames, %d failed in %.2fs = %.1f frames/s, %.1f MB/s read%n",
+                done, processor.framesFailed.get(), seconds, done / seconds,
+                processor.bytesRead.get() / seconds / (1024 * 1024));
+    }
+}
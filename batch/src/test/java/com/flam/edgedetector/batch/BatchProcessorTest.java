@@ -0,0 +1,30 @@
+package com.flam.edgedetector.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BatchProcessorTest {
+
+    @Test
+    public void outputNamesKeepSourceExtension() {
+        assertEquals("a.png.pgm", BatchProcessor.outputName("a.png", false));
+        assertEquals("a.nv21.edg", BatchProcessor.outputName("a.nv21", true));
+        assertNotEquals(BatchProcessor.outputName("a.png", false), BatchProcessor.outputName("a.pgm", false));
+        assertNotEquals(BatchProcessor.outputName("a.yuv", true), BatchProcessor.outputName("a.nv21", true));
+    }
+
+    @Test
+    public void sizeMustBeTwoPositiveIntegers() {
+        assertArrayEquals(new int[]{640, 480}, BatchProcessor.parseSize("640x480"));
+        assertNull(BatchProcessor.parseSize("640"));
+        assertNull(BatchProcessor.parseSize("640x"));
+        assertNull(BatchProcessor.parseSize("640x480x2"));
+        assertNull(BatchProcessor.parseSize("0x480"));
+        assertNull(BatchProcessor.parseSize("640x-1"));
+        assertNull(BatchProcessor.parseSize("wide x tall"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.flam.edgedetector.batch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.flam.edgedetector.YuvConverter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class FrameCodecTest {
+
+    static byte[] pgm(String header, byte[] raster) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+        out.write(raster, 0, raster.length);
+        return out.toByteArray();
+    }
+
+    static byte[] decodedGray(FrameCodec codec, FrameCodec.InputFormat format, byte[] data)
+            throws IOException {
+        codec.decode(format, data, data.length);
+        return Arrays.copyOf(codec.gray(), codec.width() * codec.height());
+    }
+
+    static void assertRejected(FrameCodec codec, FrameCodec.InputFormat format, byte[] data,
+                               String message) {
+        try {
+            codec.decode(format, data, data.length);
+            fail("Expected IOException containing \"" + message + "\"");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void pgm8BitIsCopied() throws IOException {
+        FrameCodec codec = new FrameCodec(0, 0);
+        byte[] raster = {0, 1, (byte) 128, (byte) 255, 17, 42};
+        byte[] gray = decodedGray(codec, FrameCodec.InputFormat.PGM,
+                pgm("P5\n# comment line\n3 2\n255\n", raster));
+        assertEquals(3, codec.width());
+        assertEquals(2, codec.height());
+        assertArrayEquals(raster, gray);
+    }
+
+    @Test
+    public void pgmMaxvalIsScaledTo8Bit() throws IOException {
+        byte[] gray = decodedGray(new FrameCodec(0, 0), FrameCodec.InputFormat.PGM,
+                pgm("P5 4 1 15\n", new byte[]{0, 1, 7, 15}));
+        assertArrayEquals(new byte[]{0, 17, 119, (byte) 255}, gray);
+    }
+
+    @Test
+    public void pgm16BitSamplesAreBigEndianAndScaled() throws IOException {
+        FrameCodec codec = new FrameCodec(0, 0);
+        byte[] full = decodedGray(codec, FrameCodec.InputFormat.PGM, pgm("P5\n3 1\n65535\n",
+                new byte[]{0, 0, (byte) 0x80, 0, (byte) 0xFF, (byte) 0xFF}));
+        assertArrayEquals(new byte[]{0, 127, (byte) 255}, full);
+
+        // 10-bit samples; the low byte alone would give a different result
+        byte[] tenBit = decodedGray(codec, FrameCodec.InputFormat.PGM, pgm("P5\n3 1\n1023\n",
+                new byte[]{0, 4, 2, 0, 3, (byte) 0xFF}));
+        assertArrayEquals(new byte[]{0, 127, (byte) 255}, tenBit);
+    }
+
+    @Test
+    public void malformedPgmIsRejected() {
+        FrameCodec codec = new FrameCodec(0, 0);
+        assertRejected(codec, FrameCodec.InputFormat.PGM, pgm("P2\n2 2\n255\n", new byte[4]), "P5");
+        assertRejected(codec, FrameCodec.InputFormat.PGM, pgm("P5\n2 2\n255\n", new byte[3]), "Bad PGM header");
+        assertRejected(codec, FrameCodec.InputFormat.PGM, pgm("P5\n2 2\n65535\n", new byte[7]), "Bad PGM header");
+        assertRejected(codec, FrameCodec.InputFormat.PGM, pgm("P5\n2 2\n", new byte[0]), "Truncated");
+    }
+
+    @Test
+    public void rawSizeMismatchIsRejected() throws IOException {
+        int expected = YuvConverter.packedFrameSize(4, 4);
+        FrameCodec codec = new FrameCodec(4, 4);
+        assertRejected(codec, FrameCodec.InputFormat.I420, new byte[expected - 1],
+                "expected " + expected);
+        assertRejected(codec, FrameCodec.InputFormat.NV21, new byte[expected + 1],
+                "expected " + expected);
+        assertRejected(new FrameCodec(0, 0), FrameCodec.InputFormat.I420, new byte[expected],
+                "--size");
+
+        codec.decode(FrameCodec.InputFormat.NV21, new byte[expected], expected);
+        assertEquals(4, codec.width());
+        assertEquals(4, codec.height());
+    }
+
+    @Test
+    public void encodesPgmAndPackedEdgeMaps() {
+        byte[] edges = {(byte) 255, 0, 0, 0, 0, 0, 0, 0, (byte) 255,
+                0, (byte) 255, 0, 0, 0, 0, 0, 0, 0};
+        int width = 9;
+        int height = 2;
+
+        byte[] pgm = new byte[FrameCodec.encodedSize(false, width, height)];
+        int pgmLength = FrameCodec.encode(edges, width, height, false, pgm);
+        assertEquals(pgm.length, pgmLength);
+        byte[] header = "P5\n9 2\n255\n".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(pgm, header.length));
+        assertArrayEquals(edges, Arrays.copyOfRange(pgm, header.length, pgmLength));
+
+        byte[] packed = new byte[FrameCodec.encodedSize(true, width, height)];
+        int packedLength = FrameCodec.encode(edges, width, height, true, packed);
+        assertArrayEquals(new byte[]{'E', 'D', 'G', '1', 0, 0, 0, 9, 0, 0, 0, 2,
+                (byte) 0x80, (byte) 0x80, 0x40, 0}, Arrays.copyOf(packed, packedLength));
+    }
+}
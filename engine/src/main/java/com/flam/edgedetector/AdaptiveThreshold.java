@@ -0,0 +1,199 @@
+package com.flam.edgedetector;
+
+import java.util.Arrays;
+
+/**
+ * Edge thresholds that follow scene brightness. Each frame contributes a
+ * luma histogram sampled from every Nth row and column; {@link #update()}
+ * turns it into Canny low/high thresholds (median or Otsu) and blends them
+ * into the running values so they do not flicker between frames.
+ *
+ * The histogram can be filled from Java with {@link #sample} or by the
+ * native library through {@link #histogram()}. Not thread-safe.
+ */
+public class AdaptiveThreshold {
+    public enum Method {
+        /** low = 0.66 * median, high = 1.33 * median */
+        MEDIAN,
+        /** high = Otsu threshold, low = half of it */
+        OTSU
+    }
+
+    public static final int DEFAULT_LOW = 50;
+    public static final int DEFAULT_HIGH = 150;
+    /** 1 in 64 pixels; 4800 samples on a 640x480 frame */
+    public static final int DEFAULT_SAMPLE_STEP = 8;
+    /** Weight of the newest frame in the running thresholds */
+    public static final float DEFAULT_SMOOTHING = 0.2f;
+
+    private static final float MEDIAN_LOW = 0.66f;
+    private static final float MEDIAN_HIGH = 1.33f;
+    /** Floor for the high threshold so dark frames do not turn sensor noise into edges */
+    private static final float MIN_HIGH = 20;
+
+    private final Method method;
+    private final int sampleStep;
+    private final float smoothing;
+    private final int[] histogram = new int[256];
+    private float low = DEFAULT_LOW;
+    private float high = DEFAULT_HIGH;
+    private boolean primed;
+
+    /**
+     * @param method Threshold derivation
+     * @param sampleStep Sample every Nth row and column
+     * @param smoothing Weight of each new frame, 0 (frozen) to 1 (no smoothing)
+     */
+    public AdaptiveThreshold(Method method, int sampleStep, float smoothing) {
+        if (sampleStep < 1 || smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("sampleStep must be positive and smoothing in (0, 1]");
+        }
+        this.method = method;
+        this.sampleStep = sampleStep;
+        this.smoothing = smoothing;
+    }
+
+    public AdaptiveThreshold(Method method) {
+        this(method, DEFAULT_SAMPLE_STEP, DEFAULT_SMOOTHING);
+    }
+
+    public int getSampleStep() {
+        return sampleStep;
+    }
+
+    /**
+     * Add every Nth pixel of every Nth row of an 8-bit image to the
+     * histogram of the current frame
+     */
+    public void sample(byte[] gray, int offset, int stride, int width, int height) {
+        int[] h = histogram;
+        int step = sampleStep;
+        for (int y = step / 2; y < height; y += step) {
+            int row = offset + y * stride;
+            for (int x = step / 2; x < width; x += step) {
+                h[gray[row + x] & 0xFF]++;
+            }
+        }
+    }
+
+    /**
+     * Histogram of the current frame, for the native library to add its
+     * samples to. Cleared by {@link #update()}.
+     */
+    public int[] histogram() {
+        return histogram;
+    }
+
+    /**
+     * Fold the current frame's histogram into the thresholds and clear it.
+     * Frames without samples leave the thresholds unchanged.
+     */
+    public void update() {
+        int total = 0;
+        for (int count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return;
+        }
+
+        float targetHigh;
+        float targetLow;
+        if (method == Method.OTSU) {
+            targetHigh = otsu(histogram, total);
+            targetLow = targetHigh * 0.5f;
+        } else {
+            int median = median(histogram, total);
+            targetHigh = median * MEDIAN_HIGH;
+            targetLow = median * MEDIAN_LOW;
+        }
+        targetHigh = Math.max(targetHigh, MIN_HIGH);
+        targetLow = Math.max(targetLow, MIN_HIGH * 0.5f);
+
+        if (primed) {
+            low += smoothing * (targetLow - low);
+            high += smoothing * (targetHigh - high);
+        } else {
+            low = targetLow;
+            high = targetHigh;
+            primed = true;
+        }
+        Arrays.fill(histogram, 0);
+    }
+
+    /** Canny low threshold */
+    public int low() {
+        return Math.round(low);
+    }
+
+    /** Canny high threshold */
+    public int high() {
+        return Math.round(high);
+    }
+
+    /**
+     * Single threshold for {@link EdgeKernels#sobel}: midway between low and
+     * high, which gives {@link EdgeKernels#DEFAULT_SOBEL_THRESHOLD} for the
+     * default 50/150
+     */
+    public int sobelThreshold() {
+        return Math.round((low + high) * 0.5f);
+    }
+
+    /**
+     * Back to the default thresholds; the next update starts unsmoothed
+     */
+    public void reset() {
+        low = DEFAULT_LOW;
+        high = DEFAULT_HIGH;
+        primed = false;
+        Arrays.fill(histogram, 0);
+    }
+
+    static int median(int[] histogram, int total) {
+        int half = (total + 1) / 2;
+        int seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= half) {
+                return i;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * Level that maximizes the between-class variance of the two classes
+     * {@code <= t} and {@code > t}
+     */
+    static int otsu(int[] histogram, int total) {
+        long sumAll = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sumAll += (long) i * histogram[i];
+        }
+        long sumBelow = 0;
+        int countBelow = 0;
+        double bestVariance = -1;
+        int best = 0;
+        for (int t = 0; t < histogram.length; t++) {
+            countBelow += histogram[t];
+            if (countBelow == 0) {
+                continue;
+            }
+            int countAbove = total - countBelow;
+            if (countAbove == 0) {
+                break;
+            }
+            sumBelow += (long) t * histogram[t];
+            double meanBelow = (double) sumBelow / countBelow;
+            double meanAbove = (double) (sumAll - sumBelow) / countAbove;
+            double diff = meanBelow - meanAbove;
+            double variance = (double) countBelow * countAbove * diff * diff;
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                best = t;
+            }
+        }
+        return best;
+    }
+}
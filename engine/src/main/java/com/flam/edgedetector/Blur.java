@@ -0,0 +1,292 @@
+package com.flam.edgedetector;
+
+import java.util.Arrays;
+
+/**
+ * Pre-edge smoothing kernels on 8-bit grayscale images. All modes are
+ * separable, integer-only and replicate the image border, and each mirrors
+ * the native implementation in {@code blur.h} bit for bit.
+ *
+ * Holds scratch buffers; an instance must not be shared between threads.
+ */
+public class Blur {
+    /**
+     * Gaussian sigma 1.5 sampled at -2..2 and scaled to sum to 4096. The
+     * horizontal pass keeps 8 fractional bits for the vertical pass.
+     */
+    private static final int[] GAUSSIAN_WEIGHTS = {492, 958, 1196, 958, 492};
+    private static final int GAUSSIAN_MID_SHIFT = 4;
+    private static final int GAUSSIAN_OUT_SHIFT = 20;
+
+    /** Border pixels only; the interior uses shifts and adds */
+    private static final int[] BINOMIAL_WEIGHTS = {1, 4, 6, 4, 1};
+
+    /** Box radius and pass count for BOX3; cost does not depend on the radius */
+    private static final int BOX_RADIUS = 1;
+    private static final int BOX_PASSES = 3;
+    /** 65536 / box width, so each pass averages with a multiply and a shift */
+    private static final int BOX_RECIPROCAL = (65536 + (2 * BOX_RADIUS + 1) / 2) / (2 * BOX_RADIUS + 1);
+
+    private int[] rows = new int[0];
+    private byte[] rowA = new byte[0];
+    private byte[] rowB = new byte[0];
+    private byte[] planeA = new byte[0];
+    private byte[] planeB = new byte[0];
+    private int[] columnSums = new int[0];
+
+    /**
+     * Smooth an image region. Source and destination may be the same region
+     * (in-place), but must not partially overlap.
+     *
+     * @param src Source pixels
+     * @param srcOffset Index of the top-left source pixel
+     * @param srcStride Source row stride in bytes
+     * @param width Region width
+     * @param height Region height
+     * @param dst Destination pixels
+     * @param dstOffset Index of the top-left destination pixel
+     * @param dstStride Destination row stride in bytes
+     */
+    public void apply(BlurMode mode, byte[] src, int srcOffset, int srcStride, int width, int height,
+                      byte[] dst, int dstOffset, int dstStride) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        switch (mode) {
+            case GAUSSIAN:
+                separable5(GAUSSIAN_WEIGHTS, GAUSSIAN_MID_SHIFT, GAUSSIAN_OUT_SHIFT,
+                        src, srcOffset, srcStride, width, height, dst, dstOffset, dstStride);
+                break;
+            case BINOMIAL:
+                binomial5(src, srcOffset, srcStride, width, height, dst, dstOffset, dstStride);
+                break;
+            case BOX3:
+                box(src, srcOffset, srcStride, width, height, dst, dstOffset, dstStride);
+                break;
+            default:
+                if (src != dst || srcOffset != dstOffset || srcStride != dstStride) {
+                    for (int y = 0; y < height; y++) {
+                        System.arraycopy(src, srcOffset + y * srcStride, dst, dstOffset + y * dstStride, width);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * 5-tap separable filter. The horizontal pass writes whole rows of
+     * intermediate sums, rounded down by {@code midShift} bits, and the
+     * vertical pass combines five of them. Work is done a row per call so
+     * the row kernels compile as ordinary methods.
+     */
+    private void separable5(int[] w, int midShift, int outShift,
+                            byte[] src, int srcOffset, int srcStride, int width, int height,
+                            byte[] dst, int dstOffset, int dstStride) {
+        int[] rows = prepareRows(width * height);
+        for (int y = 0; y < height; y++) {
+            horizontal5(w, midShift, src, srcOffset + y * srcStride, width, rows, y * width);
+        }
+        int lastRow = height - 1;
+        for (int y = 0; y < height; y++) {
+            vertical5(w, outShift, rows, width,
+                    clamp(y - 2, lastRow) * width, clamp(y - 1, lastRow) * width, y * width,
+                    clamp(y + 1, lastRow) * width, clamp(y + 2, lastRow) * width,
+                    dst, dstOffset + y * dstStride);
+        }
+    }
+
+    private static void horizontal5(int[] w, int shift, byte[] src, int s, int width, int[] rows, int o) {
+        int round = shift > 0 ? 1 << (shift - 1) : 0;
+        int w0 = w[0], w1 = w[1], w2 = w[2], w3 = w[3], w4 = w[4];
+        // Clamped reads only within two pixels of either end
+        int head = Math.min(2, width);
+        int interiorEnd = Math.max(head, width - 2);
+        int x = 0;
+        for (; x < head; x++) {
+            rows[o + x] = (clamped5(w, src, s, width, x) + round) >> shift;
+        }
+        for (; x < interiorEnd; x++) {
+            int i = s + x;
+            int sum = w0 * (src[i - 2] & 0xFF) + w1 * (src[i - 1] & 0xFF) + w2 * (src[i] & 0xFF)
+                    + w3 * (src[i + 1] & 0xFF) + w4 * (src[i + 2] & 0xFF);
+            rows[o + x] = (sum + round) >> shift;
+        }
+        for (; x < width; x++) {
+            rows[o + x] = (clamped5(w, src, s, width, x) + round) >> shift;
+        }
+    }
+
+    /** Weighted 5-tap sum at {@code x} with the row's end pixels replicated */
+    private static int clamped5(int[] w, byte[] src, int s, int width, int x) {
+        int last = width - 1;
+        return w[0] * (src[s + clamp(x - 2, last)] & 0xFF)
+                + w[1] * (src[s + clamp(x - 1, last)] & 0xFF)
+                + w[2] * (src[s + x] & 0xFF)
+                + w[3] * (src[s + clamp(x + 1, last)] & 0xFF)
+                + w[4] * (src[s + clamp(x + 2, last)] & 0xFF);
+    }
+
+    private static void vertical5(int[] w, int shift, int[] rows, int width,
+                                  int r0, int r1, int r2, int r3, int r4, byte[] dst, int d) {
+        int round = 1 << (shift - 1);
+        int w0 = w[0], w1 = w[1], w2 = w[2], w3 = w[3], w4 = w[4];
+        for (int x = 0; x < width; x++) {
+            int sum = w0 * rows[r0 + x] + w1 * rows[r1 + x] + w2 * rows[r2 + x]
+                    + w3 * rows[r3 + x] + w4 * rows[r4 + x];
+            dst[d + x] = (byte) ((sum + round) >> shift);
+        }
+    }
+
+    /**
+     * [1 4 6 4 1] in both directions with shifts and adds only. Row sums fit
+     * in 12 bits, so the vertical pass needs no intermediate rounding.
+     */
+    private void binomial5(byte[] src, int srcOffset, int srcStride, int width, int height,
+                           byte[] dst, int dstOffset, int dstStride) {
+        int[] rows = prepareRows(width * height);
+        for (int y = 0; y < height; y++) {
+            binomialRow(src, srcOffset + y * srcStride, width, rows, y * width);
+        }
+        int lastRow = height - 1;
+        for (int y = 0; y < height; y++) {
+            binomialColumn(rows, width,
+                    clamp(y - 2, lastRow) * width, clamp(y - 1, lastRow) * width, y * width,
+                    clamp(y + 1, lastRow) * width, clamp(y + 2, lastRow) * width,
+                    dst, dstOffset + y * dstStride);
+        }
+    }
+
+    private static void binomialRow(byte[] src, int s, int width, int[] rows, int o) {
+        int head = Math.min(2, width);
+        int interiorEnd = Math.max(head, width - 2);
+        int x = 0;
+        for (; x < head; x++) {
+            rows[o + x] = clamped5(BINOMIAL_WEIGHTS, src, s, width, x);
+        }
+        for (; x < interiorEnd; x++) {
+            int i = s + x;
+            int c = src[i] & 0xFF;
+            rows[o + x] = (src[i - 2] & 0xFF) + (src[i + 2] & 0xFF)
+                    + (((src[i - 1] & 0xFF) + (src[i + 1] & 0xFF)) << 2) + (c << 2) + (c << 1);
+        }
+        for (; x < width; x++) {
+            rows[o + x] = clamped5(BINOMIAL_WEIGHTS, src, s, width, x);
+        }
+    }
+
+    private static void binomialColumn(int[] rows, int width,
+                                       int r0, int r1, int r2, int r3, int r4, byte[] dst, int d) {
+        for (int x = 0; x < width; x++) {
+            int c = rows[r2 + x];
+            int sum = rows[r0 + x] + rows[r4 + x] + ((rows[r1 + x] + rows[r3 + x]) << 2)
+                    + (c << 2) + (c << 1);
+            dst[d + x] = (byte) ((sum + 128) >> 8);
+        }
+    }
+
+    private int[] prepareRows(int size) {
+        if (rows.length < size) {
+            rows = new int[size];
+        }
+        return rows;
+    }
+
+    /**
+     * Repeated running-sum box filter: all horizontal passes row by row, then
+     * all vertical passes with one running sum per column. Each pass rounds
+     * back to 8 bits.
+     */
+    private void box(byte[] src, int srcOffset, int srcStride, int width, int height,
+                     byte[] dst, int dstOffset, int dstStride) {
+        int size = width * height;
+        if (planeA.length < size) {
+            planeA = new byte[size];
+            planeB = new byte[size];
+        }
+        if (rowA.length < width) {
+            rowA = new byte[width];
+            rowB = new byte[width];
+        }
+        if (columnSums.length < width) {
+            columnSums = new int[width];
+        }
+
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(src, srcOffset + y * srcStride, rowA, 0, width);
+            byte[] in = rowA;
+            byte[] out = rowB;
+            for (int pass = 0; pass < BOX_PASSES; pass++) {
+                boxRow(in, out, width);
+                byte[] t = in;
+                in = out;
+                out = t;
+            }
+            System.arraycopy(in, 0, planeA, y * width, width);
+        }
+
+        byte[] in = planeA;
+        byte[] out = planeB;
+        for (int pass = 0; pass < BOX_PASSES; pass++) {
+            boxColumns(in, out, width, height);
+            byte[] t = in;
+            in = out;
+            out = t;
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(in, y * width, dst, dstOffset + y * dstStride, width);
+        }
+    }
+
+    private static void boxRow(byte[] in, byte[] out, int width) {
+        int last = width - 1;
+        int sum = 0;
+        for (int k = -BOX_RADIUS; k <= BOX_RADIUS; k++) {
+            sum += in[clamp(k, last)] & 0xFF;
+        }
+        // Unclamped while both the entering and leaving pixel are inside
+        int interiorStart = Math.min(BOX_RADIUS, width);
+        int interiorEnd = Math.max(interiorStart, width - BOX_RADIUS - 1);
+        int x = 0;
+        for (; x < interiorStart; x++) {
+            out[x] = (byte) ((sum * BOX_RECIPROCAL + 32768) >> 16);
+            sum += (in[clamp(x + BOX_RADIUS + 1, last)] & 0xFF) - (in[clamp(x - BOX_RADIUS, last)] & 0xFF);
+        }
+        for (; x < interiorEnd; x++) {
+            out[x] = (byte) ((sum * BOX_RECIPROCAL + 32768) >> 16);
+            sum += (in[x + BOX_RADIUS + 1] & 0xFF) - (in[x - BOX_RADIUS] & 0xFF);
+        }
+        for (; x < width; x++) {
+            out[x] = (byte) ((sum * BOX_RECIPROCAL + 32768) >> 16);
+            sum += (in[clamp(x + BOX_RADIUS + 1, last)] & 0xFF) - (in[clamp(x - BOX_RADIUS, last)] & 0xFF);
+        }
+    }
+
+    private void boxColumns(byte[] in, byte[] out, int width, int height) {
+        int lastRow = height - 1;
+        int[] sums = columnSums;
+        Arrays.fill(sums, 0, width, 0);
+        for (int k = -BOX_RADIUS; k <= BOX_RADIUS; k++) {
+            int row = clamp(k, lastRow) * width;
+            for (int x = 0; x < width; x++) {
+                sums[x] += in[row + x] & 0xFF;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            boxColumnStep(in, out, sums, width, y * width,
+                    clamp(y + BOX_RADIUS + 1, lastRow) * width, clamp(y - BOX_RADIUS, lastRow) * width);
+        }
+    }
+
+    /** Emit one output row from the column sums, then slide them down a row */
+    private static void boxColumnStep(byte[] in, byte[] out, int[] sums, int width, int o, int add, int sub) {
+        for (int x = 0; x < width; x++) {
+            int sum = sums[x];
+            out[o + x] = (byte) ((sum * BOX_RECIPROCAL + 32768) >> 16);
+            sums[x] = sum + (in[add + x] & 0xFF) - (in[sub + x] & 0xFF);
+        }
+    }
+
+    private static int clamp(int i, int last) {
+        return i < 0 ? 0 : (i > last ? last : i);
+    }
+}
@@ -0,0 +1,38 @@
+package com.flam.edgedetector;
+
+import java.util.Locale;
+
+/**
+ * Smoothing applied to the grayscale frame before edge detection. The Java
+ * kernels in {@link Blur} and the native ones in {@code blur.h} implement the
+ * same integer arithmetic, so each mode gives identical pixels in both.
+ */
+public enum BlurMode {
+    /** No smoothing */
+    NONE(0, 0),
+    /** Separable 5x5 Gaussian, sigma 1.5, 12-bit fixed point weights */
+    GAUSSIAN(1, 2),
+    /** Separable 5x5 binomial [1 4 6 4 1] / 16, shifts and adds only */
+    BINOMIAL(2, 2),
+    /** Three passes of a 3-wide running-sum box, roughly Gaussian with sigma 1.4 */
+    BOX3(3, 3);
+
+    /** Value passed to the native library */
+    public final int id;
+    /** Pixels of context the blur reads on each side of an output pixel */
+    public final int reach;
+
+    BlurMode(int id, int reach) {
+        this.id = id;
+        this.reach = reach;
+    }
+
+    /**
+     * Parse a mode name, case-insensitive
+     *
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static BlurMode fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,117 @@
+package com.flam.edgedetector;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compact binary encoding for {@link ContourVectorizer.Polylines}.
+ *
+ * All integers are LEB128 varints; signed values are zigzag encoded.
+ * <pre>
+ * "CNT1" | width | height | polylineCount
+ * per polyline: vertexCount | first vertex as delta from the previous
+ *               polyline's last vertex | remaining vertices as deltas
+ * </pre>
+ * Polylines come out of the vectorizer in raster order, so consecutive
+ * starts are close and almost every delta fits in a single byte.
+ */
+public final class ContourCodec {
+    private static final byte[] MAGIC = {'C', 'N', 'T', '1'};
+
+    private ContourCodec() {
+    }
+
+    /**
+     * Encode polylines into the given stream, which is reset first so it can
+     * be reused across frames
+     */
+    public static void encode(ContourVectorizer.Polylines polylines, int width, int height,
+                              ByteArrayOutputStream out) {
+        out.reset();
+        out.write(MAGIC, 0, MAGIC.length);
+        writeVarint(out, width);
+        writeVarint(out, height);
+        writeVarint(out, polylines.getPolylineCount());
+
+        int prevX = 0;
+        int prevY = 0;
+        for (int p = 0; p < polylines.getPolylineCount(); p++) {
+            int start = polylines.start(p);
+            int end = polylines.start(p + 1);
+            writeVarint(out, end - start);
+            for (int v = start; v < end; v++) {
+                int x = polylines.x(v);
+                int y = polylines.y(v);
+                writeVarint(out, zigzag(x - prevX));
+                writeVarint(out, zigzag(y - prevY));
+                prevX = x;
+                prevY = y;
+            }
+        }
+    }
+
+    /**
+     * Decode polylines, replacing the contents of {@code into}
+     *
+     * @return {width, height}
+     * @throws IllegalArgumentException if the data is not a valid encoding
+     */
+    public static int[] decode(byte[] data, ContourVectorizer.Polylines into) {
+        if (data.length < MAGIC.length) {
+            throw new IllegalArgumentException("Contour data too short");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                throw new IllegalArgumentException("Not contour data");
+            }
+        }
+        int[] pos = {MAGIC.length};
+        int width = readVarint(data, pos);
+        int height = readVarint(data, pos);
+        int count = readVarint(data, pos);
+
+        into.clear();
+        int x = 0;
+        int y = 0;
+        for (int p = 0; p < count; p++) {
+            int vertices = readVarint(data, pos);
+            for (int v = 0; v < vertices; v++) {
+                x += unzigzag(readVarint(data, pos));
+                y += unzigzag(readVarint(data, pos));
+                into.addVertex(x, y);
+            }
+            into.endPolyline();
+        }
+        return new int[]{width, height};
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated contour data");
+            }
+            int b = data[pos[0]++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in contour data");
+    }
+}
@@ -0,0 +1,279 @@
+package com.flam.edgedetector;
+
+import java.util.Arrays;
+
+/**
+ * Traces connected edge pixels into polylines and simplifies them with
+ * Douglas-Peucker. Working buffers are kept between calls so steady-state
+ * frames do not allocate; an instance must not be shared between threads.
+ */
+public class ContourVectorizer {
+
+    // 4-connected neighbours first so straight runs are not traced diagonally
+    private static final int[] DX = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int[] DY = {0, 1, 0, -1, 1, 1, -1, -1};
+
+    /**
+     * Simplified polylines of one frame. Vertices are stored as interleaved
+     * x, y pixel coordinates; polyline i spans vertices
+     * [start(i), start(i + 1)).
+     */
+    public static final class Polylines {
+        private int[] coords = new int[1024];
+        private int[] starts = new int[65];
+        private int vertexCount;
+        private int polylineCount;
+
+        public int getPolylineCount() {
+            return polylineCount;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        /** First vertex of polyline i; start(polylineCount) is the vertex count */
+        public int start(int polyline) {
+            return starts[polyline];
+        }
+
+        public int x(int vertex) {
+            return coords[vertex * 2];
+        }
+
+        public int y(int vertex) {
+            return coords[vertex * 2 + 1];
+        }
+
+        public void clear() {
+            vertexCount = 0;
+            polylineCount = 0;
+            starts[0] = 0;
+        }
+
+        public void addVertex(int x, int y) {
+            if (vertexCount * 2 + 2 > coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            coords[vertexCount * 2] = x;
+            coords[vertexCount * 2 + 1] = y;
+            vertexCount++;
+        }
+
+        /** Close the polyline made of the vertices added since the previous one */
+        public void endPolyline() {
+            if (polylineCount + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            polylineCount++;
+            starts[polylineCount] = vertexCount;
+        }
+    }
+
+    private final Polylines polylines = new Polylines();
+    private byte[] visited = new byte[0];
+    private int[] chainX = new int[256];
+    private int[] chainY = new int[256];
+    private int[] backX = new int[256];
+    private int[] backY = new int[256];
+    private boolean[] keep = new boolean[256];
+    private int[] stack = new int[512];
+
+    /**
+     * Vectorize an edge map. Any non-zero sample counts as an edge pixel.
+     *
+     * @param edges Edge map
+     * @param offset Index of the sample for pixel (0, 0)
+     * @param pixelStride Distance between horizontally adjacent samples (4 for RGBA)
+     * @param rowStride Distance between vertically adjacent samples
+     * @param width Frame width
+     * @param height Frame height
+     * @param tolerance Douglas-Peucker tolerance in pixels
+     * @param minVertices Traced chains with fewer pixels are dropped
+     * @return the polylines; valid until the next call
+     */
+    public Polylines vectorize(byte[] edges, int offset, int pixelStride, int rowStride,
+                               int width, int height, float tolerance, int minVertices) {
+        polylines.clear();
+        int pixels = width * height;
+        if (visited.length < pixels) {
+            visited = new byte[pixels];
+        } else {
+            Arrays.fill(visited, 0, pixels, (byte) 0);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * rowStride;
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if (visited[i] != 0 || edges[row + x * pixelStride] == 0) {
+                    continue;
+                }
+                visited[i] = 1;
+
+                // Trace both ways from the seed and join: back (reversed) + seed + forward
+                int backLength = follow(edges, offset, pixelStride, rowStride, width, height,
+                        x, y);
+                ensureChainCapacity(backLength + 1);
+                int length = 0;
+                for (int k = backLength - 1; k >= 0; k--) {
+                    chainX[length] = backX[k];
+                    chainY[length] = backY[k];
+                    length++;
+                }
+                chainX[length] = x;
+                chainY[length] = y;
+                length++;
+                length = followInto(edges, offset, pixelStride, rowStride, width, height, length);
+
+                if (length >= minVertices) {
+                    simplify(length, tolerance);
+                }
+            }
+        }
+        return polylines;
+    }
+
+    /**
+     * Follow unvisited neighbours starting after the last chain point,
+     * appending to the chain
+     */
+    private int followInto(byte[] edges, int offset, int pixelStride, int rowStride,
+                           int width, int height, int length) {
+        int cx = chainX[length - 1];
+        int cy = chainY[length - 1];
+        while (true) {
+            int next = nextNeighbour(edges, offset, pixelStride, rowStride, width, height, cx, cy);
+            if (next < 0) {
+                return length;
+            }
+            cx = next % width;
+            cy = next / width;
+            ensureChainCapacity(length + 1);
+            chainX[length] = cx;
+            chainY[length] = cy;
+            length++;
+        }
+    }
+
+    /**
+     * Follow unvisited neighbours from (x, y) into the back buffer
+     */
+    private int follow(byte[] edges, int offset, int pixelStride, int rowStride,
+                       int width, int height, int x, int y) {
+        int length = 0;
+        int cx = x;
+        int cy = y;
+        while (true) {
+            int next = nextNeighbour(edges, offset, pixelStride, rowStride, width, height, cx, cy);
+            if (next < 0) {
+                return length;
+            }
+            cx = next % width;
+            cy = next / width;
+            if (length == backX.length) {
+                backX = Arrays.copyOf(backX, length * 2);
+                backY = Arrays.copyOf(backY, length * 2);
+            }
+            backX[length] = cx;
+            backY[length] = cy;
+            length++;
+        }
+    }
+
+    /**
+     * Find and mark the first unvisited edge neighbour of (x, y)
+     *
+     * @return its pixel index, or -1 if there is none
+     */
+    private int nextNeighbour(byte[] edges, int offset, int pixelStride, int rowStride,
+                              int width, int height, int x, int y) {
+        for (int d = 0; d < 8; d++) {
+            int nx = x + DX[d];
+            int ny = y + DY[d];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                continue;
+            }
+            int i = ny * width + nx;
+            if (visited[i] == 0 && edges[offset + ny * rowStride + nx * pixelStride] != 0) {
+                visited[i] = 1;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureChainCapacity(int capacity) {
+        if (capacity > chainX.length) {
+            int size = Math.max(capacity, chainX.length * 2);
+            chainX = Arrays.copyOf(chainX, size);
+            chainY = Arrays.copyOf(chainY, size);
+        }
+    }
+
+    /**
+     * Iterative Douglas-Peucker over chain[0, length), appending the kept
+     * vertices as one polyline
+     */
+    private void simplify(int length, float tolerance) {
+        if (keep.length < length) {
+            keep = new boolean[Math.max(length, keep.length * 2)];
+        }
+        Arrays.fill(keep, 0, length, false);
+        keep[0] = true;
+        keep[length - 1] = true;
+
+        double tolerance2 = (double) tolerance * tolerance;
+        int top = 0;
+        stack = ensureStack(top + 2);
+        stack[top++] = 0;
+        stack[top++] = length - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            if (last - first < 2) {
+                continue;
+            }
+
+            int ax = chainX[first];
+            int ay = chainY[first];
+            int dx = chainX[last] - ax;
+            int dy = chainY[last] - ay;
+            // The tracer never revisits a pixel, so the end points are distinct
+            double segment2 = (double) dx * dx + (double) dy * dy;
+
+            int farthest = -1;
+            double farthestDistance2 = 0;
+            for (int i = first + 1; i < last; i++) {
+                int px = chainX[i] - ax;
+                int py = chainY[i] - ay;
+                double cross = (double) dx * py - (double) dy * px;
+                double distance2 = cross * cross / segment2;
+                if (distance2 > farthestDistance2) {
+                    farthestDistance2 = distance2;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0 && farthestDistance2 > tolerance2) {
+                keep[farthest] = true;
+                stack = ensureStack(top + 4);
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (keep[i]) {
+                polylines.addVertex(chainX[i], chainY[i]);
+            }
+        }
+        polylines.endPolyline();
+    }
+
+    private int[] ensureStack(int capacity) {
+        return capacity > stack.length ? Arrays.copyOf(stack, stack.length * 2) : stack;
+    }
+}
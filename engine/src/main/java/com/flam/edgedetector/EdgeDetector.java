@@ -0,0 +1,120 @@
+package com.flam.edgedetector;
+
+import java.util.Arrays;
+
+/**
+ * Frame-level Java edge detection for JVM hosts (server, batch tools).
+ * Produces the same edge map as the app's Java fallback: BT.601 grayscale,
+ * the selected {@link BlurMode} and thresholded Sobel, with a zero one pixel
+ * border. With an {@link AdaptiveThreshold} the Sobel threshold follows the
+ * luma of each frame instead of staying fixed.
+ *
+ * Keeps its scratch buffers between frames so a long-lived instance per
+ * worker thread does not allocate per frame. Not thread-safe.
+ */
+public class EdgeDetector {
+    private final int threshold;
+    private final BlurMode blurMode;
+    private final AdaptiveThreshold adaptiveThreshold;
+    private final YuvConverter yuvConverter = new YuvConverter();
+    private final Blur blur = new Blur();
+    private byte[] gray = new byte[0];
+    private byte[] blurred = new byte[0];
+    private byte[] edges = new byte[0];
+    private int edgesWidth;
+    private int edgesHeight;
+
+    /**
+     * @param threshold Sobel threshold, unused with an adaptive threshold
+     * @param blurMode Smoothing applied before Sobel
+     * @param adaptiveThreshold Per-frame threshold source, or null for a fixed threshold
+     */
+    public EdgeDetector(int threshold, BlurMode blurMode, AdaptiveThreshold adaptiveThreshold) {
+        this.threshold = threshold;
+        this.blurMode = blurMode;
+        this.adaptiveThreshold = adaptiveThreshold;
+    }
+
+    public EdgeDetector(int threshold, BlurMode blurMode) {
+        this(threshold, blurMode, null);
+    }
+
+    public EdgeDetector(int threshold) {
+        this(threshold, BlurMode.NONE);
+    }
+
+    public EdgeDetector() {
+        this(EdgeKernels.DEFAULT_SOBEL_THRESHOLD);
+    }
+
+    /**
+     * Edge map of an 8-bit grayscale image
+     *
+     * @return width * height edge map (0 or 255); valid until the next call
+     */
+    public byte[] fromGray(byte[] src, int offset, int stride, int width, int height) {
+        byte[] out = prepareEdges(width, height);
+        int frameThreshold = threshold;
+        if (adaptiveThreshold != null) {
+            adaptiveThreshold.sample(src, offset, stride, width, height);
+            adaptiveThreshold.update();
+            frameThreshold = adaptiveThreshold.sobelThreshold();
+        }
+        if (blurMode != BlurMode.NONE) {
+            int size = width * height;
+            if (blurred.length < size) {
+                blurred = new byte[size];
+            }
+            blur.apply(blurMode, src, offset, stride, width, height, blurred, 0, width);
+            src = blurred;
+            offset = 0;
+            stride = width;
+        }
+        EdgeKernels.sobel(src, offset, stride, width, height, frameThreshold, out, 0, width);
+        return out;
+    }
+
+    /**
+     * Edge map of a tightly packed I420 or NV21 frame
+     *
+     * @return width * height edge map (0 or 255); valid until the next call
+     */
+    public byte[] fromYuv(byte[] frame, boolean nv21, int width, int height) {
+        int size = width * height;
+        if (gray.length < size) {
+            gray = new byte[size];
+        }
+        yuvConverter.packedToGray(frame, nv21, width, height, gray);
+        return fromGray(gray, 0, width, width, height);
+    }
+
+    /**
+     * Edge map of an RGBA frame
+     *
+     * @return width * height edge map (0 or 255); valid until the next call
+     */
+    public byte[] fromRgba(byte[] rgba, int width, int height) {
+        int size = width * height;
+        if (gray.length < size) {
+            gray = new byte[size];
+        }
+        EdgeKernels.rgbaToGray(rgba, gray, width, height);
+        return fromGray(gray, 0, width, width, height);
+    }
+
+    /**
+     * Sobel never writes the one pixel border, so the buffer only needs
+     * clearing when the frame geometry changes
+     */
+    private byte[] prepareEdges(int width, int height) {
+        int size = width * height;
+        if (edges.length < size) {
+            edges = new byte[size];
+        } else if (width != edgesWidth || height != edgesHeight) {
+            Arrays.fill(edges, 0, size, (byte) 0);
+        }
+        edgesWidth = width;
+        edgesHeight = height;
+        return edges;
+    }
+}
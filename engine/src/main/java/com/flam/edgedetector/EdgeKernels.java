@@ -0,0 +1,135 @@
+package com.flam.edgedetector;
+
+/**
+ * Plain-Java edge detection kernels shared by the live Java fallback and the
+ * tiled snapshot path. No Android dependencies.
+ */
+public final class EdgeKernels {
+
+    /** Sobel magnitude threshold used by the Java fallback */
+    public static final int DEFAULT_SOBEL_THRESHOLD = 100;
+
+    private EdgeKernels() {
+    }
+
+    /**
+     * RGBA to 8-bit grayscale using BT.601 weights
+     */
+    public static void rgbaToGray(byte[] rgba, byte[] gray, int width, int height) {
+        rgbaToGray(rgba, 0, width * 4, width, height, gray, 0, width);
+    }
+
+    /**
+     * RGBA to 8-bit grayscale for a region
+     *
+     * @param rgba Source RGBA pixels
+     * @param rgbaOffset Byte index of the top-left source pixel
+     * @param rgbaStride Source row stride in bytes
+     * @param width Region width
+     * @param height Region height
+     * @param gray Destination
+     * @param grayOffset Index of the top-left destination pixel
+     * @param grayStride Destination row stride in bytes
+     */
+    public static void rgbaToGray(byte[] rgba, int rgbaOffset, int rgbaStride, int width, int height,
+                                  byte[] gray, int grayOffset, int grayStride) {
+        for (int y = 0; y < height; y++) {
+            int i = rgbaOffset + y * rgbaStride;
+            int idx = grayOffset + y * grayStride;
+            for (int x = 0; x < width; x++, idx++, i += 4) {
+                int r = rgba[i] & 0xFF;
+                int g = rgba[i + 1] & 0xFF;
+                int b = rgba[i + 2] & 0xFF;
+                gray[idx] = (byte) (int) (0.299 * r + 0.587 * g + 0.114 * b);
+            }
+        }
+    }
+
+    /**
+     * Sobel edge detection on an 8-bit image. Writes 255 for pixels whose
+     * gradient magnitude exceeds the threshold and 0 otherwise. The one pixel
+     * border of the output region is left untouched.
+     *
+     * @param src Source pixels
+     * @param srcOffset Index of the top-left source pixel
+     * @param srcStride Source row stride in bytes
+     * @param width Region width
+     * @param height Region height
+     * @param threshold Magnitude threshold
+     * @param dst Destination pixels, same geometry as the source region
+     * @param dstOffset Index of the top-left destination pixel
+     * @param dstStride Destination row stride in bytes
+     */
+    public static void sobel(byte[] src, int srcOffset, int srcStride, int width, int height,
+                             int threshold, byte[] dst, int dstOffset, int dstStride) {
+        // (int) sqrt(m) > t  <=>  m >= (t + 1)^2, so no square root per pixel
+        final int limit = (threshold + 1) * (threshold + 1);
+        for (int y = 1; y < height - 1; y++) {
+            int above = srcOffset + (y - 1) * srcStride;
+            int row = above + srcStride;
+            int below = row + srcStride;
+            int out = dstOffset + y * dstStride;
+            for (int x = 1; x < width - 1; x++) {
+                int tl = src[above + x - 1] & 0xFF;
+                int tc = src[above + x] & 0xFF;
+                int tr = src[above + x + 1] & 0xFF;
+                int ml = src[row + x - 1] & 0xFF;
+                int mr = src[row + x + 1] & 0xFF;
+                int bl = src[below + x - 1] & 0xFF;
+                int bc = src[below + x] & 0xFF;
+                int br = src[below + x + 1] & 0xFF;
+
+                int gx = -tl + tr - 2 * ml + 2 * mr - bl + br;
+                int gy = -tl - 2 * tc - tr + bl + 2 * bc + br;
+
+                dst[out + x] = (gx * gx + gy * gy) >= limit ? (byte) 255 : 0;
+            }
+        }
+    }
+
+    /**
+     * Expand an 8-bit edge map into opaque RGBA, skipping the one pixel border
+     * which {@link #sobel} does not write
+     */
+    public static void edgesToRgba(byte[] edges, byte[] rgba, int width, int height) {
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                byte v = edges[y * width + x];
+                int outIdx = (y * width + x) * 4;
+                rgba[outIdx] = v;
+                rgba[outIdx + 1] = v;
+                rgba[outIdx + 2] = v;
+                rgba[outIdx + 3] = (byte) 255; // Alpha
+            }
+        }
+    }
+
+    /**
+     * Bytes per row of a packed 1-bit edge map
+     */
+    public static int packedRowBytes(int width) {
+        return (width + 7) / 8;
+    }
+
+    /**
+     * Pack an 8-bit edge map into 1 bit per pixel, rows of
+     * {@link #packedRowBytes} bytes, most significant bit first
+     */
+    public static void packBits(byte[] edges, int width, int height, byte[] out, int outOffset) {
+        int rowBytes = packedRowBytes(width);
+        for (int y = 0; y < height; y++) {
+            int src = y * width;
+            int dst = outOffset + y * rowBytes;
+            for (int x = 0; x < width; x += 8, dst++) {
+                int bits = 0;
+                int end = Math.min(x + 8, width);
+                for (int i = x; i < end; i++) {
+                    if (edges[src + i] != 0) {
+                        bits |= 0x80 >>> (i - x);
+                    }
+                }
+                out[dst] = (byte) bits;
+            }
+        }
+    }
+}
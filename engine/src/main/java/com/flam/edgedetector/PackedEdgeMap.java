@@ -0,0 +1,483 @@
+package com.flam.edgedetector;
+
+import java.util.Arrays;
+
+/**
+ * Edge map with one bit per pixel, for post-processing without going back
+ * to 8-bit or RGBA pixels. Each row is {@link #wordsPerRow()} longs; pixel
+ * x of row y is bit {@code x & 63} (least significant first) of word
+ * {@code y * wordsPerRow() + (x >> 6)}. Bits past the width are always
+ * clear.
+ *
+ * Morphology works on 64 pixels at a time with shifts, ANDs and ORs, and
+ * edge density is counted with {@link Long#bitCount}. Operations replace
+ * the map's contents; the scratch rows are kept between calls, so an
+ * instance must not be shared between threads.
+ */
+public final class PackedEdgeMap {
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    /** Valid bits of the last word in each row */
+    private final long lastMask;
+    private final long[] bits;
+    /** One row longer than the map; the extra row stays clear and stands in for rows outside it */
+    private final long[] scratch;
+    private final int zeroRow;
+    /** Thinning step at which each row last lost pixels, -1 for none */
+    private final int[] rowChangedAt;
+    /** Word, mask and tile column of each row segment for {@link #tileCounts} */
+    private int segmentTileWidth;
+    private int[] segmentWord;
+    private long[] segmentMask;
+    private int[] segmentTile;
+
+    public PackedEdgeMap(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Empty edge map " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.lastMask = -1L >>> (wordsPerRow * 64 - width);
+        this.bits = new long[wordsPerRow * height];
+        this.scratch = new long[bits.length + wordsPerRow];
+        this.zeroRow = bits.length;
+        this.rowChangedAt = new int[height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * The packed rows, {@code wordsPerRow() * getHeight()} words
+     */
+    public long[] words() {
+        return bits;
+    }
+
+    public boolean get(int x, int y) {
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y, boolean edge) {
+        int i = y * wordsPerRow + (x >>> 6);
+        if (edge) {
+            bits[i] |= 1L << x;
+        } else {
+            bits[i] &= ~(1L << x);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0);
+    }
+
+    /**
+     * Load an 8-bit edge map; any non-zero pixel is an edge
+     *
+     * @param edges Source pixels, e.g. from {@link EdgeKernels#sobel}
+     * @param offset Index of the top-left pixel
+     * @param stride Row stride in bytes
+     */
+    public void pack(byte[] edges, int offset, int stride) {
+        for (int y = 0; y < height; y++) {
+            int src = offset + y * stride;
+            int dst = y * wordsPerRow;
+            for (int x = 0; x < width; x += 64, dst++) {
+                int end = Math.min(64, width - x);
+                long word = 0;
+                for (int b = 0; b < end; b++) {
+                    int e = edges[src + x + b];
+                    // Sign bit of e | -e is set for any non-zero e
+                    word |= (long) ((e | -e) >>> 31) << b;
+                }
+                bits[dst] = word;
+            }
+        }
+    }
+
+    /**
+     * Write the map as an 8-bit edge map, 255 for edges and 0 elsewhere
+     */
+    public void unpack(byte[] edges, int offset, int stride) {
+        for (int y = 0; y < height; y++) {
+            int dst = offset + y * stride;
+            int src = y * wordsPerRow;
+            for (int x = 0; x < width; x += 64, src++) {
+                long word = bits[src];
+                int end = Math.min(64, width - x);
+                for (int b = 0; b < end; b++) {
+                    edges[dst + x + b] = (byte) -((int) (word >>> b) & 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the map as opaque RGBA, white edges on black, tightly packed
+     */
+    public void toRgba(byte[] rgba) {
+        for (int y = 0; y < height; y++) {
+            int dst = y * width * 4;
+            int src = y * wordsPerRow;
+            for (int x = 0; x < width; x += 64, src++) {
+                long word = bits[src];
+                int end = Math.min(64, width - x);
+                for (int b = 0; b < end; b++, dst += 4) {
+                    byte v = (byte) -((int) (word >>> b) & 1);
+                    rgba[dst] = v;
+                    rgba[dst + 1] = v;
+                    rgba[dst + 2] = v;
+                    rgba[dst + 3] = (byte) 255;
+                }
+            }
+        }
+    }
+
+    /**
+     * 3x3 dilation; pixels outside the map count as background
+     */
+    public void dilate() {
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            horizontalOr(bits, scratch, row, wordsPerRow, 0L);
+            scratch[row + wordsPerRow - 1] &= lastMask;
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : row;
+            int below = y < height - 1 ? row + wordsPerRow : row;
+            for (int i = 0; i < wordsPerRow; i++) {
+                bits[row + i] = scratch[above + i] | scratch[row + i] | scratch[below + i];
+            }
+        }
+    }
+
+    /**
+     * 3x3 erosion; pixels outside the map count as edges, so the map border
+     * is only eroded by background inside the map
+     */
+    public void erode() {
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            // Padding bits stand in for the set pixels right of the map
+            bits[row + wordsPerRow - 1] |= ~lastMask;
+            horizontalAnd(bits, scratch, row, wordsPerRow);
+            bits[row + wordsPerRow - 1] &= lastMask;
+            scratch[row + wordsPerRow - 1] &= lastMask;
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : row;
+            int below = y < height - 1 ? row + wordsPerRow : row;
+            for (int i = 0; i < wordsPerRow; i++) {
+                bits[row + i] = scratch[above + i] & scratch[row + i] & scratch[below + i];
+            }
+        }
+    }
+
+    /**
+     * Clear edge pixels with none of their 8 neighbours set
+     */
+    public void removeIsolated() {
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            horizontalOr(bits, scratch, row, wordsPerRow, 0L);
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : zeroRow;
+            int below = y < height - 1 ? row + wordsPerRow : zeroRow;
+            int last = wordsPerRow - 1;
+            long prev = 0;
+            long cur = bits[row];
+            for (int i = 0; i < last; i++) {
+                long next = bits[row + i + 1];
+                long sides = (cur << 1) | (prev >>> 63) | (cur >>> 1) | (next << 63);
+                bits[row + i] = cur & (sides | scratch[above + i] | scratch[below + i]);
+                prev = cur;
+                cur = next;
+            }
+            long sides = (cur << 1) | (prev >>> 63) | (cur >>> 1);
+            bits[row + last] = cur & (sides | scratch[above + last] | scratch[below + last]);
+        }
+    }
+
+    /**
+     * Zhang-Suen thinning to one-pixel-wide curves. Each pass runs both
+     * sub-iterations; thinning stops when a pass removes nothing. After the
+     * first pass only rows next to a removal are revisited.
+     *
+     * @param maxPasses Upper bound on passes, or 0 for no limit
+     * @return Passes run
+     */
+    public int thin(int maxPasses) {
+        Arrays.fill(rowChangedAt, -1);
+        int passes = 0;
+        int step = 0;
+        boolean changed = true;
+        while (changed && (maxPasses <= 0 || passes < maxPasses)) {
+            changed = thinStep(step++);
+            changed |= thinStep(step++);
+            passes++;
+        }
+        return passes;
+    }
+
+    /**
+     * One Zhang-Suen sub-iteration. Pixels are decided on a copy of the map
+     * in {@link #scratch}, so removals do not affect their neighbours until
+     * the next sub-iteration. A row whose neighbourhood is unchanged since
+     * the previous sub-iteration of the same kind would give the same
+     * result, which removed nothing, so it is skipped.
+     */
+    private boolean thinStep(int step) {
+        boolean first = (step & 1) == 0;
+        System.arraycopy(bits, 0, scratch, 0, bits.length);
+        long[] src = scratch;
+        int last = wordsPerRow - 1;
+        long removed = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : zeroRow;
+            int below = y < height - 1 ? row + wordsPerRow : zeroRow;
+            if (step >= 2 && !rowsChangedSince(y, step - 2)) {
+                continue;
+            }
+            for (int i = 0; i <= last; i++) {
+                long c = src[row + i];
+                if (c == 0) {
+                    continue;
+                }
+                long aPrev = 0;
+                long cPrev = 0;
+                long bPrev = 0;
+                if (i > 0) {
+                    aPrev = src[above + i - 1];
+                    cPrev = src[row + i - 1];
+                    bPrev = src[below + i - 1];
+                }
+                long aNext = 0;
+                long cNext = 0;
+                long bNext = 0;
+                if (i < last) {
+                    aNext = src[above + i + 1];
+                    cNext = src[row + i + 1];
+                    bNext = src[below + i + 1];
+                }
+                long candidates = thinCandidates(aPrev, src[above + i], aNext, cPrev, c, cNext,
+                        bPrev, src[below + i], bNext, first);
+                if (candidates != 0) {
+                    bits[row + i] = c & ~candidates;
+                    removed |= candidates;
+                    rowChangedAt[y] = step;
+                }
+            }
+        }
+        return removed != 0;
+    }
+
+    /** Whether row y or a row next to it lost pixels at or after the step */
+    private boolean rowsChangedSince(int y, int step) {
+        return rowChangedAt[y] >= step
+                || (y > 0 && rowChangedAt[y - 1] >= step)
+                || (y < height - 1 && rowChangedAt[y + 1] >= step);
+    }
+
+    /**
+     * Pixels of word {@code c} that a Zhang-Suen sub-iteration removes, with
+     * every rule evaluated on 64 pixels at once. a, c and b are the words
+     * above, at and below; the Prev and Next words supply the neighbours of
+     * the first and last bit.
+     */
+    private static long thinCandidates(long aPrev, long a, long aNext, long cPrev, long c, long cNext,
+                                       long bPrev, long b, long bNext, boolean first) {
+        // P2..P9 clockwise from north
+        long p2 = a;
+        long p3 = (a >>> 1) | (aNext << 63);
+        long p4 = (c >>> 1) | (cNext << 63);
+        long p5 = (b >>> 1) | (bNext << 63);
+        long p6 = b;
+        long p7 = (b << 1) | (bPrev >>> 63);
+        long p8 = (c << 1) | (cPrev >>> 63);
+        long p9 = (a << 1) | (aPrev >>> 63);
+
+        // 2 <= neighbours <= 6: at least two set and at least two clear
+        long neighbours = atLeastTwo(p2, p3, p4, p5, p6, p7, p8, p9)
+                & atLeastTwo(~p2, ~p3, ~p4, ~p5, ~p6, ~p7, ~p8, ~p9);
+        // Exactly one 0 -> 1 transition around P2, P3, ..., P9, P2
+        long t2 = ~p2 & p3;
+        long t3 = ~p3 & p4;
+        long t4 = ~p4 & p5;
+        long t5 = ~p5 & p6;
+        long t6 = ~p6 & p7;
+        long t7 = ~p7 & p8;
+        long t8 = ~p8 & p9;
+        long t9 = ~p9 & p2;
+        long oneTransition = (t2 | t3 | t4 | t5 | t6 | t7 | t8 | t9)
+                & ~atLeastTwo(t2, t3, t4, t5, t6, t7, t8, t9);
+
+        long candidates = c & neighbours & oneTransition;
+        if (first) {
+            return candidates & ~(p2 & p4 & p6) & ~(p4 & p6 & p8);
+        }
+        return candidates & ~(p2 & p4 & p8) & ~(p2 & p6 & p8);
+    }
+
+    /** Bits set in at least two of the eight words */
+    private static long atLeastTwo(long w0, long w1, long w2, long w3, long w4, long w5, long w6, long w7) {
+        long one = w0;
+        long two = one & w1;
+        one |= w1;
+        two |= one & w2;
+        one |= w2;
+        two |= one & w3;
+        one |= w3;
+        two |= one & w4;
+        one |= w4;
+        two |= one & w5;
+        one |= w5;
+        two |= one & w6;
+        one |= w6;
+        return two | (one & w7);
+    }
+
+    /**
+     * Number of edge pixels
+     */
+    public int count() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Fraction of pixels that are edges
+     */
+    public float density() {
+        return count() / (float) (width * height);
+    }
+
+    /**
+     * Edge pixels per tile, row-major with {@code ceil(width / tileWidth)}
+     * tiles per row. Tiles on the right and bottom may be partial.
+     *
+     * @param counts Destination, at least one entry per tile
+     */
+    public void tileCounts(int tileWidth, int tileHeight, int[] counts) {
+        if (tileWidth < 1 || tileHeight < 1) {
+            throw new IllegalArgumentException("Empty tile " + tileWidth + "x" + tileHeight);
+        }
+        if (tileWidth != segmentTileWidth) {
+            buildSegments(tileWidth);
+        }
+        int tilesX = (width + tileWidth - 1) / tileWidth;
+        int tilesY = (height + tileHeight - 1) / tileHeight;
+        Arrays.fill(counts, 0, tilesX * tilesY, 0);
+        int[] words = segmentWord;
+        long[] masks = segmentMask;
+        int[] tiles = segmentTile;
+        int segments = words.length;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int first = ty * tileHeight * wordsPerRow;
+            int end = Math.min(height, (ty + 1) * tileHeight) * wordsPerRow;
+            for (int s = 0; s < segments; s++) {
+                long mask = masks[s];
+                int count = 0;
+                for (int i = first + words[s]; i < end; i += wordsPerRow) {
+                    count += Long.bitCount(bits[i] & mask);
+                }
+                counts[ty * tilesX + tiles[s]] += count;
+            }
+        }
+    }
+
+    /**
+     * Fraction of edge pixels per tile, laid out as {@link #tileCounts}
+     */
+    public void tileDensities(int tileWidth, int tileHeight, float[] densities) {
+        int tilesX = (width + tileWidth - 1) / tileWidth;
+        int tilesY = (height + tileHeight - 1) / tileHeight;
+        int[] counts = new int[tilesX * tilesY];
+        tileCounts(tileWidth, tileHeight, counts);
+        for (int ty = 0; ty < tilesY; ty++) {
+            int h = Math.min(tileHeight, height - ty * tileHeight);
+            for (int tx = 0; tx < tilesX; tx++) {
+                int w = Math.min(tileWidth, width - tx * tileWidth);
+                densities[ty * tilesX + tx] = counts[ty * tilesX + tx] / (float) (w * h);
+            }
+        }
+    }
+
+    /**
+     * Split a row into the parts of each word that fall in one tile column,
+     * so counting a row is one masked bit count per part
+     */
+    private void buildSegments(int tileWidth) {
+        int tilesX = (width + tileWidth - 1) / tileWidth;
+        int[] words = new int[wordsPerRow + tilesX];
+        long[] masks = new long[words.length];
+        int[] tiles = new int[words.length];
+        int n = 0;
+        for (int tx = 0; tx < tilesX; tx++) {
+            int x0 = tx * tileWidth;
+            int x1 = Math.min(width, x0 + tileWidth) - 1;
+            for (int w = x0 >>> 6; w <= x1 >>> 6; w++) {
+                long head = w == x0 >>> 6 ? -1L << x0 : -1L;
+                long tail = w == x1 >>> 6 ? -1L >>> (63 - (x1 & 63)) : -1L;
+                words[n] = w;
+                masks[n] = head & tail;
+                tiles[n] = tx;
+                n++;
+            }
+        }
+        segmentWord = Arrays.copyOf(words, n);
+        segmentMask = Arrays.copyOf(masks, n);
+        segmentTile = Arrays.copyOf(tiles, n);
+        segmentTileWidth = tileWidth;
+    }
+
+    /**
+     * Each pixel ORed with its left and right neighbours. {@code outside}
+     * is the value of the pixels beyond both ends of the row.
+     */
+    private static void horizontalOr(long[] src, long[] dst, int row, int words, long outside) {
+        long prev = outside;
+        long cur = src[row];
+        for (int i = 0; i < words - 1; i++) {
+            long next = src[row + i + 1];
+            dst[row + i] = cur | (cur << 1) | (prev >>> 63) | (cur >>> 1) | (next << 63);
+            prev = cur;
+            cur = next;
+        }
+        dst[row + words - 1] = cur | (cur << 1) | (prev >>> 63) | (cur >>> 1) | (outside << 63);
+    }
+
+    /**
+     * Each pixel ANDed with its left and right neighbours; pixels beyond
+     * both ends of the row count as set
+     */
+    private static void horizontalAnd(long[] src, long[] dst, int row, int words) {
+        long prev = -1L;
+        long cur = src[row];
+        for (int i = 0; i < words - 1; i++) {
+            long next = src[row + i + 1];
+            dst[row + i] = cur & ((cur << 1) | (prev >>> 63)) & ((cur >>> 1) | (next << 63));
+            prev = cur;
+            cur = next;
+        }
+        dst[row + words - 1] = cur & ((cur << 1) | (prev >>> 63)) & ((cur >>> 1) | (-1L << 63));
+    }
+}
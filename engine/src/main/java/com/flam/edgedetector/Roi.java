@@ -0,0 +1,124 @@
+package com.flam.edgedetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Axis-aligned region of interest in frame pixel coordinates
+ */
+public final class Roi {
+    /**
+     * Context needed around a region by the widest pipeline: the BOX3 blur
+     * (3 px), then the 3x3 Sobel (1 px) and non-maximum suppression (1 px)
+     * inside Canny. Canny hysteresis is not local, so native region output
+     * can still differ from a full-frame run where an edge leaves the context.
+     */
+    public static final int EDGE_BORDER = 5;
+
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+
+    public Roi(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static Roi fullFrame(int width, int height) {
+        return new Roi(0, 0, width, height);
+    }
+
+    public int right() {
+        return x + width;
+    }
+
+    public int bottom() {
+        return y + height;
+    }
+
+    public long area() {
+        return (long) width * height;
+    }
+
+    public boolean isEmpty() {
+        return width <= 0 || height <= 0;
+    }
+
+    /**
+     * Intersect with the frame
+     *
+     * @return the clamped region, or null if nothing is left
+     */
+    public Roi clamp(int frameWidth, int frameHeight) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(frameWidth, right());
+        int y1 = Math.min(frameHeight, bottom());
+        if (x1 <= x0 || y1 <= y0) {
+            return null;
+        }
+        return new Roi(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Grow by a border on every side without clamping
+     */
+    public Roi grow(int border) {
+        return new Roi(x - border, y - border, width + 2 * border, height + 2 * border);
+    }
+
+    /**
+     * Grow by a border on every side, clamped to the frame
+     */
+    public Roi expand(int border, int frameWidth, int frameHeight) {
+        return grow(border).clamp(frameWidth, frameHeight);
+    }
+
+    /**
+     * Flatten to {x, y, width, height, ...} for the native bridge
+     */
+    public static int[] toArray(List<Roi> rois) {
+        int[] out = new int[rois.size() * 4];
+        for (int i = 0; i < rois.size(); i++) {
+            Roi roi = rois.get(i);
+            out[i * 4] = roi.x;
+            out[i * 4 + 1] = roi.y;
+            out[i * 4 + 2] = roi.width;
+            out[i * 4 + 3] = roi.height;
+        }
+        return out;
+    }
+
+    /**
+     * Parse "x,y,w,h;x,y,w,h"
+     *
+     * @throws IllegalArgumentException on malformed input
+     */
+    public static List<Roi> parseList(String spec) {
+        List<Roi> rois = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            return rois;
+        }
+        for (String part : spec.split(";")) {
+            String[] values = part.trim().split(",");
+            if (values.length != 4) {
+                throw new IllegalArgumentException("Invalid ROI: " + part);
+            }
+            try {
+                rois.add(new Roi(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()),
+                        Integer.parseInt(values[2].trim()), Integer.parseInt(values[3].trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid ROI: " + part, e);
+            }
+        }
+        return rois;
+    }
+
+    @Override
+    public String toString() {
+        return x + "," + y + "," + width + "," + height;
+    }
+}
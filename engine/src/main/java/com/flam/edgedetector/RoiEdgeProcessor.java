@@ -0,0 +1,105 @@
+package com.flam.edgedetector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Sobel edge detection limited to regions of interest. Grayscale
+ * conversion, blur and Sobel run only over each region plus the context the
+ * blur and Sobel need, so the cost follows the region area rather than the
+ * frame size. The interior matches the full-frame result pixel for pixel.
+ *
+ * Holds scratch buffers; an instance must not be shared between threads.
+ */
+public class RoiEdgeProcessor {
+    private static final int SOBEL_BORDER = 1;
+
+    private final int threshold;
+    private final BlurMode blurMode;
+    private final Blur blur = new Blur();
+    private byte[] gray = new byte[0];
+    private byte[] edges = new byte[0];
+    private final RoiFrameBuffer composite = new RoiFrameBuffer();
+    private final List<Roi> clamped = new ArrayList<>();
+
+    public RoiEdgeProcessor(int threshold, BlurMode blurMode) {
+        this.threshold = threshold;
+        this.blurMode = blurMode;
+    }
+
+    public RoiEdgeProcessor(int threshold) {
+        this(threshold, BlurMode.NONE);
+    }
+
+    /**
+     * Process the regions and composite them into a full-frame RGBA buffer.
+     * Pixels outside every region are zero. The buffer is reused, so it is
+     * only valid until the next call.
+     */
+    public byte[] processComposite(byte[] rgba, int width, int height, List<Roi> rois) {
+        clamped.clear();
+        for (Roi roi : rois) {
+            Roi region = roi.clamp(width, height);
+            if (region != null) {
+                clamped.add(region);
+            }
+        }
+        byte[] output = composite.regions(width, height, clamped);
+        for (Roi region : clamped) {
+            processRegion(rgba, width, height, region, output,
+                    (region.y * width + region.x) * 4, width * 4);
+        }
+        return output;
+    }
+
+    /**
+     * Process the regions into one RGBA crop per region, in region order.
+     * Regions entirely outside the frame produce an empty crop.
+     */
+    public List<byte[]> processCrops(byte[] rgba, int width, int height, List<Roi> rois) {
+        List<byte[]> crops = new ArrayList<>(rois.size());
+        for (Roi roi : rois) {
+            Roi region = roi.clamp(width, height);
+            if (region == null) {
+                crops.add(new byte[0]);
+                continue;
+            }
+            byte[] crop = new byte[region.width * region.height * 4];
+            processRegion(rgba, width, height, region, crop, 0, region.width * 4);
+            crops.add(crop);
+        }
+        return crops;
+    }
+
+    private void processRegion(byte[] rgba, int width, int height, Roi region,
+                               byte[] out, int outOffset, int outStride) {
+        Roi context = region.expand(SOBEL_BORDER + blurMode.reach, width, height);
+        int size = context.width * context.height;
+        if (gray.length < size) {
+            gray = new byte[size];
+            edges = new byte[size];
+        }
+
+        EdgeKernels.rgbaToGray(rgba, (context.y * width + context.x) * 4, width * 4,
+                context.width, context.height, gray, 0, context.width);
+        blur.apply(blurMode, gray, 0, context.width, context.width, context.height,
+                gray, 0, context.width);
+        // Frame border pixels are never written by Sobel
+        Arrays.fill(edges, 0, size, (byte) 0);
+        EdgeKernels.sobel(gray, 0, context.width, context.width, context.height,
+                threshold, edges, 0, context.width);
+
+        for (int y = 0; y < region.height; y++) {
+            int src = (region.y - context.y + y) * context.width + (region.x - context.x);
+            int dst = outOffset + y * outStride;
+            for (int x = 0; x < region.width; x++, src++, dst += 4) {
+                byte v = edges[src];
+                out[dst] = v;
+                out[dst + 1] = v;
+                out[dst + 2] = v;
+                out[dst + 3] = (byte) 255; // Alpha
+            }
+        }
+    }
+}
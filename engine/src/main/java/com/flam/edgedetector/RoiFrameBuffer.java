@@ -0,0 +1,88 @@
+package com.flam.edgedetector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Full-frame RGBA buffer reused across frames in which only regions of
+ * interest are written. Pixels outside the current regions read as zero, but
+ * instead of zeroing the whole frame each time only the rectangles written by
+ * the previous frame and not covered again are cleared.
+ *
+ * Not thread-safe; the returned array is overwritten by the next frame.
+ */
+public final class RoiFrameBuffer {
+    private byte[] rgba = new byte[0];
+    private int width;
+    private int height;
+    // Clamped regions written into the buffer, unless the whole frame was
+    private final List<Roi> written = new ArrayList<>();
+    private boolean fullWritten = false;
+
+    /**
+     * Buffer for a frame whose every pixel the caller overwrites
+     */
+    public byte[] full(int width, int height) {
+        resize(width, height);
+        written.clear();
+        fullWritten = true;
+        return rgba;
+    }
+
+    /**
+     * Buffer for a frame in which the caller writes only the given regions,
+     * with every pixel outside them zero
+     *
+     * @param regions Regions clamped to the frame, as from {@link Roi#clamp}
+     */
+    public byte[] regions(int width, int height, List<Roi> regions) {
+        if (!resize(width, height)) {
+            if (fullWritten) {
+                Arrays.fill(rgba, 0, width * height * 4, (byte) 0);
+            } else {
+                for (Roi old : written) {
+                    if (!contains(regions, old)) {
+                        clear(old);
+                    }
+                }
+            }
+        }
+        written.clear();
+        written.addAll(regions);
+        fullWritten = false;
+        return rgba;
+    }
+
+    /**
+     * @return true if a new, already zeroed buffer was allocated
+     */
+    private boolean resize(int width, int height) {
+        if (width == this.width && height == this.height && rgba.length == width * height * 4) {
+            return false;
+        }
+        rgba = new byte[width * height * 4];
+        this.width = width;
+        this.height = height;
+        written.clear();
+        fullWritten = false;
+        return true;
+    }
+
+    private void clear(Roi region) {
+        for (int y = region.y; y < region.bottom(); y++) {
+            int start = (y * width + region.x) * 4;
+            Arrays.fill(rgba, start, start + region.width * 4, (byte) 0);
+        }
+    }
+
+    private static boolean contains(List<Roi> regions, Roi region) {
+        for (Roi r : regions) {
+            if (r.x == region.x && r.y == region.y
+                    && r.width == region.width && r.height == region.height) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
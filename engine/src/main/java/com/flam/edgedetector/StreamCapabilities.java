@@ -0,0 +1,144 @@
+package com.flam.edgedetector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plain-Java snapshot of the YUV output capabilities of a camera: available
+ * output sizes with their minimum frame durations and the AE target FPS
+ * ranges. Built from CameraCharacteristics on device, or parsed from a
+ * recorded capability table so negotiation can be exercised off-device.
+ *
+ * Table format, one entry per line, '#' starts a comment:
+ * <pre>
+ * size 1920x1080 33333333
+ * fps 15 30
+ * </pre>
+ */
+public class StreamCapabilities {
+
+    /**
+     * Output size with its minimum frame duration in nanoseconds (0 if unknown)
+     */
+    public static final class OutputSize {
+        public final int width;
+        public final int height;
+        public final long minFrameDurationNs;
+
+        public OutputSize(int width, int height, long minFrameDurationNs) {
+            this.width = width;
+            this.height = height;
+            this.minFrameDurationNs = minFrameDurationNs;
+        }
+
+        public long pixels() {
+            return (long) width * height;
+        }
+
+        /**
+         * Highest frame rate the sensor can deliver at this size
+         */
+        public double maxFps() {
+            return minFrameDurationNs > 0 ? 1_000_000_000.0 / minFrameDurationNs : Double.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+
+    /**
+     * AE target FPS range, inclusive on both ends
+     */
+    public static final class FpsRange {
+        public final int lower;
+        public final int upper;
+
+        public FpsRange(int lower, int upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public boolean contains(int fps) {
+            return fps >= lower && fps <= upper;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + lower + ", " + upper + "]";
+        }
+    }
+
+    private final List<OutputSize> outputSizes;
+    private final List<FpsRange> fpsRanges;
+
+    public StreamCapabilities(List<OutputSize> outputSizes, List<FpsRange> fpsRanges) {
+        this.outputSizes = Collections.unmodifiableList(new ArrayList<>(outputSizes));
+        this.fpsRanges = Collections.unmodifiableList(new ArrayList<>(fpsRanges));
+    }
+
+    public List<OutputSize> getOutputSizes() {
+        return outputSizes;
+    }
+
+    public List<FpsRange> getFpsRanges() {
+        return fpsRanges;
+    }
+
+    /**
+     * Parse a recorded capability table
+     *
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static StreamCapabilities parse(String table) {
+        List<OutputSize> sizes = new ArrayList<>();
+        List<FpsRange> ranges = new ArrayList<>();
+        String[] lines = table.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            try {
+                if (parts[0].equals("size") && (parts.length == 2 || parts.length == 3)) {
+                    int x = parts[1].indexOf('x');
+                    int width = Integer.parseInt(parts[1].substring(0, x));
+                    int height = Integer.parseInt(parts[1].substring(x + 1));
+                    long duration = parts.length == 3 ? Long.parseLong(parts[2]) : 0;
+                    sizes.add(new OutputSize(width, height, duration));
+                } else if (parts[0].equals("fps") && parts.length == 3) {
+                    ranges.add(new FpsRange(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                } else {
+                    throw new IllegalArgumentException("Unknown entry");
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "Invalid capability table line " + (i + 1) + ": " + lines[i], e);
+            }
+        }
+        return new StreamCapabilities(sizes, ranges);
+    }
+
+    /**
+     * Format as a capability table that {@link #parse(String)} accepts
+     */
+    public String toTable() {
+        StringBuilder sb = new StringBuilder();
+        for (OutputSize size : outputSizes) {
+            sb.append("size ").append(size.width).append('x').append(size.height)
+                    .append(' ').append(size.minFrameDurationNs).append('\n');
+        }
+        for (FpsRange range : fpsRanges) {
+            sb.append("fps ").append(range.lower).append(' ').append(range.upper).append('\n');
+        }
+        return sb.toString();
+    }
+}
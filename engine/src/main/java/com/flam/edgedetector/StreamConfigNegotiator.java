@@ -0,0 +1,160 @@
+package com.flam.edgedetector;
+
+/**
+ * Chooses the camera output size, AE target FPS range and ImageReader depth
+ * for a given processing budget. Pure Java so it can be driven from recorded
+ * {@link StreamCapabilities} tables without a device.
+ */
+public class StreamConfigNegotiator {
+    private static final int MIN_MAX_IMAGES = 2; // acquireLatestImage needs at least 2
+    /** Used when the device reports no stream configuration map or no YUV sizes */
+    static final int FALLBACK_WIDTH = 640;
+    static final int FALLBACK_HEIGHT = 480;
+
+    /**
+     * What the processing pipeline can sustain
+     */
+    public static final class Budget {
+        /** Budget matching the previous fixed 640x480 at 30 fps configuration */
+        public static final Budget DEFAULT = new Budget(30, 640L * 480 * 30, 4);
+
+        public final int targetFps;
+        public final long pixelsPerSecond;
+        public final int maxImagesLimit;
+
+        /**
+         * @param targetFps Frame rate to aim for
+         * @param pixelsPerSecond Pixel throughput of the processing pipeline
+         * @param maxImagesLimit Upper bound on ImageReader buffers (memory cap)
+         */
+        public Budget(int targetFps, long pixelsPerSecond, int maxImagesLimit) {
+            if (targetFps <= 0 || pixelsPerSecond <= 0 || maxImagesLimit < MIN_MAX_IMAGES) {
+                throw new IllegalArgumentException("Invalid processing budget");
+            }
+            this.targetFps = targetFps;
+            this.pixelsPerSecond = pixelsPerSecond;
+            this.maxImagesLimit = maxImagesLimit;
+        }
+    }
+
+    /**
+     * Negotiated stream configuration
+     */
+    public static final class Result {
+        public final int width;
+        public final int height;
+        /** Expected delivered frame rate for this size and budget */
+        public final int fps;
+        /** AE target FPS range to request, null if the device reported none */
+        public final StreamCapabilities.FpsRange fpsRange;
+        public final int maxImages;
+
+        Result(int width, int height, int fps, StreamCapabilities.FpsRange fpsRange, int maxImages) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+            this.fpsRange = fpsRange;
+            this.maxImages = maxImages;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + " @" + fps + "fps range=" + fpsRange
+                    + " maxImages=" + maxImages;
+        }
+    }
+
+    /**
+     * Pick the largest output size that still reaches the best achievable
+     * frame rate (capped at the target), then the tightest FPS range around
+     * that rate and enough ImageReader buffers to cover processing latency.
+     *
+     * @param capabilities Device capabilities, null if the device reported no
+     *                     stream configuration map
+     * @return the chosen configuration; {@value #FALLBACK_WIDTH}x{@value #FALLBACK_HEIGHT}
+     *         without an FPS range if no output sizes are available
+     */
+    public static Result negotiate(StreamCapabilities capabilities, Budget budget) {
+        if (capabilities == null) {
+            return fallback(budget);
+        }
+        StreamCapabilities.OutputSize best = null;
+        int bestFps = -1;
+        for (StreamCapabilities.OutputSize size : capabilities.getOutputSizes()) {
+            if (size.width <= 0 || size.height <= 0) {
+                continue;
+            }
+            int fps = achievableFps(size, budget);
+            if (fps > bestFps || (fps == bestFps && size.pixels() > best.pixels())) {
+                best = size;
+                bestFps = fps;
+            }
+        }
+        if (best == null) {
+            return fallback(budget);
+        }
+
+        StreamCapabilities.FpsRange range = chooseFpsRange(capabilities, best, bestFps);
+        int fps = bestFps;
+        if (range != null && range.upper < fps) {
+            fps = range.upper;
+        }
+        int maxImages = chooseMaxImages(best, Math.max(fps, 1), budget);
+        return new Result(best.width, best.height, fps, range, maxImages);
+    }
+
+    private static Result fallback(Budget budget) {
+        StreamCapabilities.OutputSize size = new StreamCapabilities.OutputSize(FALLBACK_WIDTH, FALLBACK_HEIGHT, 0);
+        int fps = Math.max(achievableFps(size, budget), 1);
+        return new Result(FALLBACK_WIDTH, FALLBACK_HEIGHT, fps, null, chooseMaxImages(size, fps, budget));
+    }
+
+    private static int achievableFps(StreamCapabilities.OutputSize size, Budget budget) {
+        double fps = Math.min(budget.targetFps, size.maxFps());
+        fps = Math.min(fps, (double) budget.pixelsPerSecond / size.pixels());
+        return (int) Math.floor(fps);
+    }
+
+    /**
+     * Prefer a range that contains the frame rate with the lowest upper bound
+     * (least frame time variation above the target) and then the highest
+     * lower bound. Ranges the sensor cannot reach at this size are skipped.
+     * Falls back to the highest range below the frame rate.
+     */
+    private static StreamCapabilities.FpsRange chooseFpsRange(
+            StreamCapabilities capabilities, StreamCapabilities.OutputSize size, int fps) {
+        double sensorMax = size.maxFps();
+        StreamCapabilities.FpsRange containing = null;
+        StreamCapabilities.FpsRange below = null;
+        for (StreamCapabilities.FpsRange range : capabilities.getFpsRanges()) {
+            if (range.lower > sensorMax + 0.5) {
+                continue;
+            }
+            if (range.contains(fps)) {
+                if (containing == null
+                        || range.upper < containing.upper
+                        || (range.upper == containing.upper && range.lower > containing.lower)) {
+                    containing = range;
+                }
+            } else if (range.upper < fps) {
+                if (below == null
+                        || range.upper > below.upper
+                        || (range.upper == below.upper && range.lower > below.lower)) {
+                    below = range;
+                }
+            }
+        }
+        return containing != null ? containing : below;
+    }
+
+    /**
+     * One buffer being filled by the camera plus enough to cover the frames
+     * that arrive while one is being processed.
+     */
+    private static int chooseMaxImages(StreamCapabilities.OutputSize size, int fps, Budget budget) {
+        double processingSeconds = (double) size.pixels() / budget.pixelsPerSecond;
+        double frameSeconds = 1.0 / fps;
+        int inFlight = (int) Math.ceil(processingSeconds / frameSeconds - 1e-9) + 1;
+        return Math.max(MIN_MAX_IMAGES, Math.min(budget.maxImagesLimit, inFlight));
+    }
+}
@@ -0,0 +1,272 @@
+package com.flam.edgedetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Edge detection for full-resolution stills with bounded memory.
+ *
+ * The luma plane is processed in overlapping tiles on a worker pool. Each
+ * in-flight tile owns a small workspace and the number of workspaces is
+ * capped by a memory limit, so heap use does not grow with the still size.
+ * Results are written straight into a memory-mapped packed edge file:
+ * <pre>
+ * "EDG1" | int32 width | int32 height | rows of ceil(width / 8) bytes, MSB first
+ * </pre>
+ */
+public class TiledSnapshotProcessor {
+    public static final int HEADER_SIZE = 12;
+    private static final byte[] MAGIC = {'E', 'D', 'G', '1'};
+
+    // Sobel needs one pixel of context on each side
+    private static final int HALO = 1;
+
+    private final int tileSize;
+    private final int threadCount;
+    private final long memoryLimitBytes;
+    private final int threshold;
+    private final ExecutorService workers;
+
+    /**
+     * Snapshot processing result
+     */
+    public static final class Result {
+        public final File output;
+        public final int width;
+        public final int height;
+        public final int tiles;
+        public final long workspaceBytes;
+        public final long elapsedMs;
+
+        Result(File output, int width, int height, int tiles, long workspaceBytes, long elapsedMs) {
+            this.output = output;
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+            this.workspaceBytes = workspaceBytes;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    /**
+     * Cancellation token for a single {@link #process} call. Create one per
+     * submitted snapshot so a cancel issued before the call starts still
+     * applies to it.
+     */
+    public static final class Cancellation {
+        private volatile boolean cancelled = false;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static final class Workspace {
+        final byte[] input;
+        final byte[] edges;
+
+        Workspace(int tileSize) {
+            int span = tileSize + 2 * HALO;
+            input = new byte[span * span];
+            edges = new byte[span * span];
+        }
+
+        static long bytesFor(int tileSize) {
+            long span = tileSize + 2 * HALO;
+            return 2 * span * span;
+        }
+    }
+
+    /**
+     * @param tileSize Tile edge length, rounded up to a multiple of 8 so tiles
+     *                 never share an output byte
+     * @param threadCount Worker threads
+     * @param memoryLimitBytes Ceiling for all tile workspaces together
+     * @param threshold Sobel magnitude threshold
+     */
+    public TiledSnapshotProcessor(int tileSize, int threadCount, long memoryLimitBytes, int threshold) {
+        if (tileSize <= 0 || threadCount <= 0) {
+            throw new IllegalArgumentException("Tile size and thread count must be positive");
+        }
+        this.tileSize = (tileSize + 7) & ~7;
+        this.threadCount = threadCount;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.threshold = threshold;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threadCount,
+                r -> new Thread(r, "SnapshotTile-" + counter.incrementAndGet()));
+    }
+
+    /**
+     * Detect edges in a luma plane and write the packed result to a file.
+     * Blocks until every tile has been written.
+     *
+     * @param luma Luma plane; only absolute reads are used so the buffer
+     *             position is left untouched
+     * @param rowStride Luma row stride in bytes
+     * @param width Image width
+     * @param height Image height
+     * @param output Destination file, overwritten
+     */
+    public Result process(ByteBuffer luma, int rowStride, int width, int height, File output)
+            throws IOException, InterruptedException {
+        return process(luma, rowStride, width, height, output, new Cancellation());
+    }
+
+    /**
+     * As {@link #process(ByteBuffer, int, int, int, File)}, stopping early
+     * once the token is cancelled. Tiles already running are always waited
+     * for, even when the calling thread is interrupted, so the source buffer
+     * is no longer read once this method returns or throws.
+     *
+     * @throws InterruptedIOException if the token was cancelled
+     * @throws InterruptedException if the calling thread was interrupted
+     */
+    public Result process(ByteBuffer luma, int rowStride, int width, int height, File output,
+                          Cancellation cancellation) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        int workspaces = (int) Math.max(1, Math.min(threadCount,
+                memoryLimitBytes / Workspace.bytesFor(tileSize)));
+        BlockingQueue<Workspace> pool = new ArrayBlockingQueue<>(workspaces);
+        for (int i = 0; i < workspaces; i++) {
+            pool.add(new Workspace(tileSize));
+        }
+
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int rowBytes = (width + 7) / 8;
+
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw");
+             FileChannel channel = file.getChannel()) {
+            long size = HEADER_SIZE + (long) rowBytes * height;
+            file.setLength(size);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.put(MAGIC);
+            mapped.putInt(width);
+            mapped.putInt(height);
+
+            CountDownLatch done = new CountDownLatch(tilesX * tilesY);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            int submitted = 0;
+            boolean interrupted = false;
+            try {
+                for (int ty = 0; ty < tilesY && !cancellation.isCancelled(); ty++) {
+                    for (int tx = 0; tx < tilesX && !cancellation.isCancelled(); tx++) {
+                        final int x0 = tx * tileSize;
+                        final int y0 = ty * tileSize;
+                        final Workspace workspace = pool.take();
+                        workers.execute(() -> {
+                            try {
+                                if (failure.get() == null && !cancellation.isCancelled()) {
+                                    processTile(luma, rowStride, width, height, x0, y0,
+                                            workspace, mapped, rowBytes);
+                                }
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            } finally {
+                                pool.add(workspace);
+                                done.countDown();
+                            }
+                        });
+                        submitted++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancellation.cancel();
+            }
+            // Wait for in-flight tiles so the caller can release the source buffer
+            for (int i = submitted; i < tilesX * tilesY; i++) {
+                done.countDown();
+            }
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    cancellation.cancel();
+                }
+            }
+
+            if (interrupted) {
+                throw new InterruptedException("Snapshot processing interrupted");
+            }
+            if (cancellation.isCancelled()) {
+                throw new InterruptedIOException("Snapshot processing cancelled");
+            }
+
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new IOException("Snapshot tile processing failed", error);
+            }
+            mapped.force();
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return new Result(output, width, height, tilesX * tilesY,
+                workspaces * Workspace.bytesFor(tileSize), elapsedMs);
+    }
+
+    private void processTile(ByteBuffer luma, int rowStride, int width, int height,
+                             int x0, int y0, Workspace ws, ByteBuffer out, int rowBytes) {
+        int x1 = Math.min(x0 + tileSize, width);
+        int y1 = Math.min(y0 + tileSize, height);
+
+        // Tile region plus halo, clamped to the image
+        int rx0 = Math.max(0, x0 - HALO);
+        int ry0 = Math.max(0, y0 - HALO);
+        int rw = Math.min(width, x1 + HALO) - rx0;
+        int rh = Math.min(height, y1 + HALO) - ry0;
+
+        ByteBuffer src = luma.duplicate();
+        for (int row = 0; row < rh; row++) {
+            src.position((ry0 + row) * rowStride + rx0);
+            src.get(ws.input, row * rw, rw);
+        }
+
+        // The image border is never written by the Sobel kernel
+        Arrays.fill(ws.edges, 0, rw * rh, (byte) 0);
+        EdgeKernels.sobel(ws.input, 0, rw, rw, rh, threshold, ws.edges, 0, rw);
+
+        for (int y = y0; y < y1; y++) {
+            int edgeRow = (y - ry0) * rw - rx0;
+            int outRow = HEADER_SIZE + y * rowBytes;
+            for (int x = x0; x < x1; x += 8) {
+                int bits = 0;
+                int end = Math.min(x + 8, x1);
+                for (int i = x; i < end; i++) {
+                    if (ws.edges[edgeRow + i] != 0) {
+                        bits |= 0x80 >>> (i - x);
+                    }
+                }
+                out.put(outRow + (x >> 3), (byte) bits);
+            }
+        }
+    }
+
+    /**
+     * Stop the worker threads. The processor cannot be used afterwards.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
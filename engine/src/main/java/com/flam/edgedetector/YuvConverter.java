@@ -0,0 +1,178 @@
+package com.flam.edgedetector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV 4:2:0 to RGBA conversion straight from plane buffers with arbitrary row
+ * and pixel strides, so padded rows and planar or semi-planar chroma layouts
+ * need no intermediate copy. Conversion can be limited to a region, in which
+ * case only the plane rows and columns under the region are read.
+ *
+ * Holds per-row scratch buffers; an instance must not be shared between threads.
+ */
+public class YuvConverter {
+    private byte[] yRow = new byte[0];
+    private byte[] uRow = new byte[0];
+    private byte[] vRow = new byte[0];
+
+    /**
+     * Convert a region of a YUV_420_888 frame into an RGBA frame buffer.
+     * Pixels outside the region are not written.
+     *
+     * @param yPlane Luma plane
+     * @param yRowStride Luma row stride
+     * @param uPlane Cb plane
+     * @param vPlane Cr plane
+     * @param uvRowStride Chroma row stride
+     * @param uvPixelStride Chroma pixel stride (1 planar, 2 semi-planar)
+     * @param width Frame width
+     * @param height Frame height
+     * @param rgba Destination, width * height * 4 bytes
+     * @param region Region to convert, null for the whole frame
+     */
+    public void toRgba(ByteBuffer yPlane, int yRowStride,
+                       ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                       int width, int height, byte[] rgba, Roi region) {
+        convert(yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride,
+                width, height, rgba, false, region);
+    }
+
+    /**
+     * Convert a region of a YUV_420_888 frame into 8-bit grayscale, giving
+     * exactly what {@link #toRgba} followed by
+     * {@link EdgeKernels#rgbaToGray(byte[], byte[], int, int)} would, without
+     * the intermediate RGBA frame. Pixels outside the region are not written.
+     *
+     * @param gray Destination, width * height bytes
+     */
+    public void toGray(ByteBuffer yPlane, int yRowStride,
+                       ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                       int width, int height, byte[] gray, Roi region) {
+        convert(yPlane, yRowStride, uPlane, vPlane, uvRowStride, uvPixelStride,
+                width, height, gray, true, region);
+    }
+
+    private void convert(ByteBuffer yPlane, int yRowStride,
+                         ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                         int width, int height, byte[] out, boolean toGray, Roi region) {
+        Roi r = region != null ? region.clamp(width, height) : Roi.fullFrame(width, height);
+        if (r == null) {
+            return;
+        }
+        int x0 = r.x;
+        int x1 = r.right();
+        int cx0 = x0 >> 1;
+        int chromaCount = ((x1 - 1) >> 1) - cx0 + 1;
+        int chromaSpan = (chromaCount - 1) * uvPixelStride + 1;
+
+        if (yRow.length < r.width) {
+            yRow = new byte[r.width];
+        }
+        if (uRow.length < chromaSpan) {
+            uRow = new byte[chromaSpan];
+            vRow = new byte[chromaSpan];
+        }
+
+        ByteBuffer ySrc = yPlane.duplicate();
+        ByteBuffer uSrc = uPlane.duplicate();
+        ByteBuffer vSrc = vPlane.duplicate();
+        int loadedChromaRow = -1;
+
+        for (int j = r.y; j < r.bottom(); j++) {
+            ySrc.position(j * yRowStride + x0);
+            ySrc.get(yRow, 0, r.width);
+
+            int chromaRow = j >> 1;
+            if (chromaRow != loadedChromaRow) {
+                int chromaOffset = chromaRow * uvRowStride + cx0 * uvPixelStride;
+                uSrc.position(chromaOffset);
+                uSrc.get(uRow, 0, chromaSpan);
+                vSrc.position(chromaOffset);
+                vSrc.get(vRow, 0, chromaSpan);
+                loadedChromaRow = chromaRow;
+            }
+
+            if (toGray) {
+                int index = j * width + x0;
+                for (int i = x0; i < x1; i++, index++) {
+                    int c = ((i >> 1) - cx0) * uvPixelStride;
+                    out[index] = grayPixel(yRow[i - x0] & 0xff, uRow[c] & 0xff, vRow[c] & 0xff);
+                }
+            } else {
+                int index = (j * width + x0) * 4;
+                for (int i = x0; i < x1; i++, index += 4) {
+                    int c = ((i >> 1) - cx0) * uvPixelStride;
+                    writePixel(out, index, yRow[i - x0] & 0xff, uRow[c] & 0xff, vRow[c] & 0xff);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convert a tightly packed I420 (planar) or NV21 (interleaved VU) frame
+     *
+     * @param frame Frame bytes: luma followed by chroma
+     * @param nv21 true for NV21, false for I420
+     */
+    public void packedToGray(byte[] frame, boolean nv21, int width, int height, byte[] gray) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int lumaSize = width * height;
+        ByteBuffer y = ByteBuffer.wrap(frame, 0, lumaSize).slice();
+        if (nv21) {
+            int chromaSize = chromaWidth * chromaHeight * 2;
+            ByteBuffer v = ByteBuffer.wrap(frame, lumaSize, chromaSize).slice();
+            ByteBuffer u = ByteBuffer.wrap(frame, lumaSize + 1, chromaSize - 1).slice();
+            toGray(y, width, u, v, chromaWidth * 2, 2, width, height, gray, null);
+        } else {
+            int chromaSize = chromaWidth * chromaHeight;
+            ByteBuffer u = ByteBuffer.wrap(frame, lumaSize, chromaSize).slice();
+            ByteBuffer v = ByteBuffer.wrap(frame, lumaSize + chromaSize, chromaSize).slice();
+            toGray(y, width, u, v, chromaWidth, 1, width, height, gray, null);
+        }
+    }
+
+    /**
+     * Bytes in a tightly packed I420 or NV21 frame
+     */
+    public static int packedFrameSize(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * BT.601 video-range conversion of one pixel
+     */
+    static void writePixel(byte[] rgba, int index, int y, int u, int v) {
+        int rgb = toRgb(y, u, v);
+        rgba[index] = (byte) (rgb >> 16);
+        rgba[index + 1] = (byte) (rgb >> 8);
+        rgba[index + 2] = (byte) rgb;
+        rgba[index + 3] = (byte) 255; // Alpha
+    }
+
+    /**
+     * Same luma weighting as {@link EdgeKernels#rgbaToGray} applied to the
+     * converted pixel
+     */
+    static byte grayPixel(int y, int u, int v) {
+        int rgb = toRgb(y, u, v);
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return (byte) (int) (0.299 * r + 0.587 * g + 0.114 * b);
+    }
+
+    private static int toRgb(int y, int u, int v) {
+        y = y < 16 ? 16 : y;
+
+        int r = Math.round(1.164f * (y - 16) + 1.596f * (v - 128));
+        int g = Math.round(1.164f * (y - 16) - 0.813f * (v - 128) - 0.391f * (u - 128));
+        int b = Math.round(1.164f * (y - 16) + 2.018f * (u - 128));
+
+        r = r < 0 ? 0 : (r > 255 ? 255 : r);
+        g = g < 0 ? 0 : (g > 255 ? 255 : g);
+        b = b < 0 ? 0 : (b > 255 ? 255 : b);
+
+        return (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,139 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class AdaptiveThresholdTest {
+    static final int WIDTH = 320;
+    static final int HEIGHT = 240;
+
+    static byte[] flat(int value) {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        Arrays.fill(gray, (byte) value);
+        return gray;
+    }
+
+    static int countEdges(byte[] edges) {
+        int count = 0;
+        for (byte e : edges) {
+            if (e != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static AdaptiveThreshold primed(AdaptiveThreshold.Method method, byte[] gray) {
+        AdaptiveThreshold threshold = new AdaptiveThreshold(method);
+        threshold.sample(gray, 0, WIDTH, WIDTH, HEIGHT);
+        threshold.update();
+        return threshold;
+    }
+
+    @Test
+    public void defaultsMatchFixedThresholds() {
+        AdaptiveThreshold threshold = new AdaptiveThreshold(AdaptiveThreshold.Method.MEDIAN);
+        assertEquals(50, threshold.low());
+        assertEquals(150, threshold.high());
+        assertEquals(EdgeKernels.DEFAULT_SOBEL_THRESHOLD, threshold.sobelThreshold());
+    }
+
+    @Test
+    public void medianScalesThresholds() {
+        AdaptiveThreshold threshold = primed(AdaptiveThreshold.Method.MEDIAN, flat(120));
+        assertEquals(79, threshold.low());
+        assertEquals(160, threshold.high());
+    }
+
+    @Test
+    public void otsuSplitsBimodalFrame() {
+        byte[] gray = flat(40);
+        Arrays.fill(gray, gray.length / 2, gray.length, (byte) 200);
+        AdaptiveThreshold threshold = primed(AdaptiveThreshold.Method.OTSU, gray);
+        assertEquals(40, threshold.high());
+        assertEquals(20, threshold.low());
+    }
+
+    @Test
+    public void blackFrameKeepsFloor() {
+        for (AdaptiveThreshold.Method method : AdaptiveThreshold.Method.values()) {
+            AdaptiveThreshold threshold = primed(method, flat(0));
+            assertEquals(method.name(), 20, threshold.high());
+            assertEquals(method.name(), 10, threshold.low());
+        }
+    }
+
+    @Test
+    public void samplesEveryNthRowAndColumn() {
+        int step = 8;
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        for (int y = step / 2; y < HEIGHT; y += step) {
+            for (int x = step / 2; x < WIDTH; x += step) {
+                gray[y * WIDTH + x] = (byte) 200;
+            }
+        }
+        AdaptiveThreshold threshold = new AdaptiveThreshold(AdaptiveThreshold.Method.MEDIAN, step, 1);
+        threshold.sample(gray, 0, WIDTH, WIDTH, HEIGHT);
+        int[] histogram = threshold.histogram();
+        assertEquals((WIDTH / step) * (HEIGHT / step), histogram[200]);
+        assertEquals(0, histogram[0]);
+
+        threshold.update();
+        assertEquals(0, Arrays.stream(histogram).sum());
+    }
+
+    @Test
+    public void smoothingDampsFlicker() {
+        AdaptiveThreshold threshold = primed(AdaptiveThreshold.Method.MEDIAN, flat(100));
+        int previous = threshold.high();
+        int maxStep = 0;
+        for (int frame = 0; frame < 40; frame++) {
+            // Exposure alternating between two levels every frame
+            threshold.sample(flat(frame % 2 == 0 ? 140 : 100), 0, WIDTH, WIDTH, HEIGHT);
+            threshold.update();
+            maxStep = Math.max(maxStep, Math.abs(threshold.high() - previous));
+            previous = threshold.high();
+        }
+        // Unsmoothed the high threshold would jump by 1.33 * 40 = 53 each frame
+        assertTrue("step " + maxStep, maxStep <= 12);
+        assertTrue(threshold.high() > 133 && threshold.high() < 186);
+    }
+
+    @Test
+    public void emptyFrameLeavesThresholdsUnchanged() {
+        AdaptiveThreshold threshold = primed(AdaptiveThreshold.Method.MEDIAN, flat(120));
+        threshold.update();
+        assertEquals(160, threshold.high());
+    }
+
+    @Test
+    public void dimSceneStillHasEdges() {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.shapes(WIDTH, HEIGHT));
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) ((gray[i] & 0xFF) / 12);
+        }
+        byte[] fixed = new EdgeDetector(EdgeKernels.DEFAULT_SOBEL_THRESHOLD)
+                .fromGray(gray, 0, WIDTH, WIDTH, HEIGHT);
+        assertEquals(0, countEdges(fixed));
+
+        AdaptiveThreshold adaptive = new AdaptiveThreshold(AdaptiveThreshold.Method.MEDIAN);
+        byte[] edges = new EdgeDetector(0, BlurMode.NONE, adaptive).fromGray(gray, 0, WIDTH, WIDTH, HEIGHT);
+        assertTrue(countEdges(edges) > WIDTH);
+    }
+
+    @Test
+    public void texturedSceneDoesNotFlood() {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 13));
+        int fixed = countEdges(new EdgeDetector(EdgeKernels.DEFAULT_SOBEL_THRESHOLD)
+                .fromGray(gray, 0, WIDTH, WIDTH, HEIGHT));
+
+        AdaptiveThreshold adaptive = new AdaptiveThreshold(AdaptiveThreshold.Method.MEDIAN);
+        int adaptiveCount = countEdges(new EdgeDetector(0, BlurMode.NONE, adaptive)
+                .fromGray(gray, 0, WIDTH, WIDTH, HEIGHT));
+        assertTrue(adaptiveCount + " vs " + fixed, adaptiveCount < fixed * 3 / 4);
+    }
+}
@@ -0,0 +1,225 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.flam.edgedetector.SyntheticScenes.Scene;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BlurTest {
+    static final int WIDTH = YuvConverterTest.WIDTH;
+    static final int HEIGHT = YuvConverterTest.HEIGHT;
+
+    static byte[] blurred(BlurMode mode, byte[] gray, int width, int height) {
+        byte[] out = new byte[width * height];
+        new Blur().apply(mode, gray, 0, width, width, height, out, 0, width);
+        return out;
+    }
+
+    private static int at(byte[] gray, int width, int height, int x, int y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        return gray[y * width + x] & 0xFF;
+    }
+
+    /**
+     * The blurred goldens are the contract for the native kernels in
+     * blur.h, which must reproduce them exactly
+     */
+    @Test
+    public void blurMatchesGolden() throws Exception {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 7));
+        for (BlurMode mode : BlurMode.values()) {
+            if (mode != BlurMode.NONE) {
+                Golden.check("blur_" + mode.name().toLowerCase() + "_noise",
+                        blurred(mode, gray, WIDTH, HEIGHT), WIDTH, HEIGHT, 0, 0);
+            }
+        }
+    }
+
+    @Test
+    public void noneCopies() {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.shapes(WIDTH, HEIGHT));
+        assertArrayEquals(gray, blurred(BlurMode.NONE, gray, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void binomialIsExactlyRounded() {
+        int[] w = {1, 4, 6, 4, 1};
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 3));
+        byte[] actual = blurred(BlurMode.BINOMIAL, gray, WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int sum = 0;
+                for (int j = -2; j <= 2; j++) {
+                    for (int i = -2; i <= 2; i++) {
+                        sum += w[j + 2] * w[i + 2] * at(gray, WIDTH, HEIGHT, x + i, y + j);
+                    }
+                }
+                assertEquals("pixel " + x + "," + y, (sum + 128) >> 8, actual[y * WIDTH + x] & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    public void gaussianStaysWithinRoundingOfFloatReference() {
+        double[] w = new double[5];
+        double total = 0;
+        for (int i = -2; i <= 2; i++) {
+            w[i + 2] = Math.exp(-i * i / (2 * 1.5 * 1.5));
+            total += w[i + 2];
+        }
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 5));
+        byte[] actual = blurred(BlurMode.GAUSSIAN, gray, WIDTH, HEIGHT);
+        double errorSum = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double expected = 0;
+                for (int j = -2; j <= 2; j++) {
+                    for (int i = -2; i <= 2; i++) {
+                        expected += w[j + 2] * w[i + 2] * at(gray, WIDTH, HEIGHT, x + i, y + j);
+                    }
+                }
+                double error = Math.abs((actual[y * WIDTH + x] & 0xFF) - expected / (total * total));
+                assertTrue("pixel " + x + "," + y + " off by " + error, error < 0.6);
+                errorSum += error;
+            }
+        }
+        assertTrue(errorSum / (WIDTH * HEIGHT) < 0.3);
+    }
+
+    @Test
+    public void boxRunningSumsMatchDirectAverages() {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 11));
+        int[] plane = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = gray[i] & 0xFF;
+        }
+        // Three horizontal then three vertical 3-wide averages, each rounded
+        // with the same reciprocal as the kernel
+        int reciprocal = (65536 + 1) / 3;
+        for (int pass = 0; pass < 6; pass++) {
+            boolean horizontal = pass < 3;
+            int[] next = new int[plane.length];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int sum = 0;
+                    for (int k = -1; k <= 1; k++) {
+                        int sx = horizontal ? Math.max(0, Math.min(WIDTH - 1, x + k)) : x;
+                        int sy = horizontal ? y : Math.max(0, Math.min(HEIGHT - 1, y + k));
+                        sum += plane[sy * WIDTH + sx];
+                    }
+                    next[y * WIDTH + x] = (sum * reciprocal + 32768) >> 16;
+                }
+            }
+            plane = next;
+        }
+        byte[] actual = blurred(BlurMode.BOX3, gray, WIDTH, HEIGHT);
+        for (int i = 0; i < plane.length; i++) {
+            assertEquals("pixel " + i, plane[i], actual[i] & 0xFF);
+        }
+    }
+
+    @Test
+    public void stridedAndInPlaceMatchContiguous() {
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.shapes(WIDTH, HEIGHT));
+        Blur blur = new Blur();
+        for (BlurMode mode : BlurMode.values()) {
+            byte[] expected = blurred(mode, gray, WIDTH, HEIGHT);
+
+            int stride = WIDTH + 13;
+            int offset = 2 * stride + 7;
+            byte[] image = new byte[offset + stride * HEIGHT];
+            for (int y = 0; y < HEIGHT; y++) {
+                System.arraycopy(gray, y * WIDTH, image, offset + y * stride, WIDTH);
+            }
+            blur.apply(mode, image, offset, stride, WIDTH, HEIGHT, image, offset, stride);
+            for (int y = 0; y < HEIGHT; y++) {
+                assertArrayEquals(mode + " row " + y,
+                        Arrays.copyOfRange(expected, y * WIDTH, (y + 1) * WIDTH),
+                        Arrays.copyOfRange(image, offset + y * stride, offset + y * stride + WIDTH));
+            }
+        }
+    }
+
+    @Test
+    public void tinyImagesReplicateBorder() {
+        Blur blur = new Blur();
+        for (BlurMode mode : BlurMode.values()) {
+            byte[] flat = new byte[2 * 3];
+            Arrays.fill(flat, (byte) 200);
+            byte[] out = new byte[flat.length];
+            blur.apply(mode, flat, 0, 2, 2, 3, out, 0, 2);
+            assertArrayEquals(mode.name(), flat, out);
+        }
+    }
+
+    @Test
+    public void roiCompositeMatchesFullFrameForEveryMode() {
+        Scene scene = SyntheticScenes.shapes(WIDTH, HEIGHT);
+        byte[] rgba = EdgeKernelsTest.rgbaOf(scene);
+        List<Roi> regions = Collections.singletonList(new Roi(30, 0, 40, 50));
+        for (BlurMode mode : BlurMode.values()) {
+            byte[] edges = new EdgeDetector(EdgeKernelsTest.THRESHOLD, mode).fromRgba(rgba, WIDTH, HEIGHT);
+            byte[] expected = new byte[WIDTH * HEIGHT * 4];
+            EdgeKernels.edgesToRgba(edges, expected, WIDTH, HEIGHT);
+
+            Roi region = regions.get(0);
+            byte[] composite = new RoiEdgeProcessor(EdgeKernelsTest.THRESHOLD, mode)
+                    .processComposite(rgba, WIDTH, HEIGHT, regions);
+            for (int y = region.y; y < region.bottom(); y++) {
+                for (int x = region.x; x < region.right(); x++) {
+                    int i = (y * WIDTH + x) * 4;
+                    assertEquals(mode + " pixel " + x + "," + y, expected[i], composite[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The app converts only each region grown by {@link Roi#EDGE_BORDER} from
+     * YUV, so crops of adjacent regions must match the full frame right up to
+     * their shared seam with everything else left zero
+     */
+    @Test
+    public void roiCropsMatchFullFrameAcrossSeamWithOnlyEdgeBorderConverted() {
+        Scene scene = SyntheticScenes.shapes(WIDTH, HEIGHT);
+        byte[] rgba = EdgeKernelsTest.rgbaOf(scene);
+        List<Roi> regions = Arrays.asList(new Roi(10, 12, 38, 40), new Roi(48, 12, 38, 40));
+
+        byte[] converted = new byte[rgba.length];
+        for (Roi region : regions) {
+            Roi grown = region.expand(Roi.EDGE_BORDER, WIDTH, HEIGHT);
+            for (int y = grown.y; y < grown.bottom(); y++) {
+                int start = (y * WIDTH + grown.x) * 4;
+                System.arraycopy(rgba, start, converted, start, grown.width * 4);
+            }
+        }
+
+        for (BlurMode mode : BlurMode.values()) {
+            byte[] edges = new EdgeDetector(EdgeKernelsTest.THRESHOLD, mode).fromRgba(rgba, WIDTH, HEIGHT);
+            byte[] expected = new byte[WIDTH * HEIGHT * 4];
+            EdgeKernels.edgesToRgba(edges, expected, WIDTH, HEIGHT);
+
+            List<byte[]> crops = new RoiEdgeProcessor(EdgeKernelsTest.THRESHOLD, mode)
+                    .processCrops(converted, WIDTH, HEIGHT, regions);
+            for (int r = 0; r < regions.size(); r++) {
+                Roi region = regions.get(r);
+                byte[] crop = crops.get(r);
+                for (int y = 0; y < region.height; y++) {
+                    for (int x = 0; x < region.width; x++) {
+                        int i = ((region.y + y) * WIDTH + region.x + x) * 4;
+                        assertEquals(mode + " region " + r + " pixel " + x + "," + y,
+                                expected[i], crop[(y * region.width + x) * 4]);
+                    }
+                }
+            }
+        }
+    }
+}
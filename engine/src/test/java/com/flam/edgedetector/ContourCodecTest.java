@@ -0,0 +1,103 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class ContourCodecTest {
+
+    static ContourVectorizer.Polylines polylines(int[]... lines) {
+        ContourVectorizer.Polylines polylines = new ContourVectorizer.Polylines();
+        for (int[] line : lines) {
+            for (int i = 0; i < line.length; i += 2) {
+                polylines.addVertex(line[i], line[i + 1]);
+            }
+            polylines.endPolyline();
+        }
+        return polylines;
+    }
+
+    static void assertSamePolylines(ContourVectorizer.Polylines expected,
+                                    ContourVectorizer.Polylines actual) {
+        assertEquals(expected.getPolylineCount(), actual.getPolylineCount());
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        for (int p = 0; p <= expected.getPolylineCount(); p++) {
+            assertEquals(expected.start(p), actual.start(p));
+        }
+        for (int v = 0; v < expected.getVertexCount(); v++) {
+            assertEquals("x of " + v, expected.x(v), actual.x(v));
+            assertEquals("y of " + v, expected.y(v), actual.y(v));
+        }
+    }
+
+    static byte[] encode(ContourVectorizer.Polylines polylines, int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContourCodec.encode(polylines, width, height, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void encodesSmallDeltasInOneByte() {
+        // Deltas (3, 2), (-1, 0), (0, -2): zigzag 6, 4, 1, 0, 0, 3
+        byte[] data = encode(polylines(new int[]{3, 2, 2, 2, 2, 0}), 16, 8);
+        assertArrayEquals(new byte[]{'C', 'N', 'T', '1', 16, 8, 1, 3, 6, 4, 1, 0, 0, 3}, data);
+    }
+
+    @Test
+    public void roundTripsNegativeDeltasAndMultiByteVarints() {
+        ContourVectorizer.Polylines original = polylines(
+                new int[]{4000, 3000, 10, 5, 0, 0},
+                new int[]{200, 100},
+                new int[]{70000, 1, 69999, 130, 5, 2},
+                new int[]{});
+        byte[] data = encode(original, 70001, 3001);
+
+        ContourVectorizer.Polylines decoded = polylines(new int[]{1, 1, 2, 2});
+        int[] size = ContourCodec.decode(data, decoded);
+        assertArrayEquals(new int[]{70001, 3001}, size);
+        assertSamePolylines(original, decoded);
+    }
+
+    @Test
+    public void roundTripsVectorizerOutput() {
+        int width = 320;
+        int height = 240;
+        byte[] edges = EdgeKernelsTest.edgesOf(
+                EdgeKernelsTest.grayOf(SyntheticScenes.shapes(width, height)), width, height);
+        ContourVectorizer.Polylines original = new ContourVectorizer()
+                .vectorize(edges, 0, 1, width, width, height, 1.5f, 8);
+        assertTrue(original.getPolylineCount() > 0);
+        byte[] data = encode(original, width, height);
+
+        ContourVectorizer.Polylines decoded = new ContourVectorizer.Polylines();
+        assertArrayEquals(new int[]{width, height}, ContourCodec.decode(data, decoded));
+        assertSamePolylines(original, decoded);
+    }
+
+    @Test
+    public void rejectsTruncatedAndForeignData() {
+        byte[] data = encode(polylines(new int[]{4000, 3000, 0, 0}), 4096, 4096);
+        for (int length = 0; length < data.length; length++) {
+            try {
+                ContourCodec.decode(Arrays.copyOf(data, length), new ContourVectorizer.Polylines());
+                fail("Accepted " + length + " of " + data.length + " bytes");
+            } catch (IllegalArgumentException expected) {
+                // Truncated
+            }
+        }
+        byte[] foreign = data.clone();
+        foreign[3] = '2';
+        try {
+            ContourCodec.decode(foreign, new ContourVectorizer.Polylines());
+            fail("Accepted foreign magic");
+        } catch (IllegalArgumentException expected) {
+            // Not contour data
+        }
+    }
+}
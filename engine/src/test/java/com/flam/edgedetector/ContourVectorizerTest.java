@@ -0,0 +1,102 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ContourVectorizerTest {
+    static final int WIDTH = 64;
+    static final int HEIGHT = 64;
+    static final float TOLERANCE = 1.5f;
+    static final int MIN_VERTICES = 8;
+
+    static void horizontal(byte[] edges, int y, int x0, int x1) {
+        for (int x = x0; x <= x1; x++) {
+            edges[y * WIDTH + x] = (byte) 255;
+        }
+    }
+
+    static void vertical(byte[] edges, int x, int y0, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            edges[y * WIDTH + x] = (byte) 255;
+        }
+    }
+
+    static String describe(ContourVectorizer.Polylines polylines) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < polylines.getPolylineCount(); p++) {
+            if (p > 0) {
+                sb.append(' ');
+            }
+            for (int v = polylines.start(p); v < polylines.start(p + 1); v++) {
+                sb.append('(').append(polylines.x(v)).append(',').append(polylines.y(v)).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void cornerIsKeptAndStraightRunsCollapse() {
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        horizontal(edges, 20, 10, 40);
+        vertical(edges, 40, 20, 50);
+        ContourVectorizer.Polylines polylines = new ContourVectorizer()
+                .vectorize(edges, 0, 1, WIDTH, WIDTH, HEIGHT, TOLERANCE, MIN_VERTICES);
+        assertEquals("(40,50)(40,20)(10,20)", describe(polylines));
+        assertEquals(1, polylines.getPolylineCount());
+        assertEquals(3, polylines.getVertexCount());
+    }
+
+    @Test
+    public void rectangleKeepsItsCorners() {
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        horizontal(edges, 10, 10, 50);
+        horizontal(edges, 40, 10, 50);
+        vertical(edges, 10, 10, 40);
+        vertical(edges, 50, 10, 40);
+        ContourVectorizer.Polylines polylines = new ContourVectorizer()
+                .vectorize(edges, 0, 1, WIDTH, WIDTH, HEIGHT, TOLERANCE, MIN_VERTICES);
+        assertEquals("(10,11)(10,40)(50,40)(50,10)(10,10)", describe(polylines));
+    }
+
+    @Test
+    public void shortChainsAreDropped() {
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        horizontal(edges, 60, 5, 5 + MIN_VERTICES - 2);
+        horizontal(edges, 30, 5, 5 + MIN_VERTICES - 1);
+        ContourVectorizer.Polylines polylines = new ContourVectorizer()
+                .vectorize(edges, 0, 1, WIDTH, WIDTH, HEIGHT, TOLERANCE, MIN_VERTICES);
+        assertEquals("(12,30)(5,30)", describe(polylines));
+    }
+
+    @Test
+    public void rgbaLayoutMatchesGray() {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        horizontal(gray, 20, 10, 40);
+        vertical(gray, 40, 20, 50);
+        int offset = 8;
+        byte[] rgba = new byte[offset + WIDTH * HEIGHT * 4];
+        for (int i = 0; i < gray.length; i++) {
+            rgba[offset + i * 4] = gray[i];
+        }
+        ContourVectorizer vectorizer = new ContourVectorizer();
+        String expected = describe(vectorizer.vectorize(gray, 0, 1, WIDTH, WIDTH, HEIGHT,
+                TOLERANCE, MIN_VERTICES));
+        assertEquals(expected, describe(vectorizer.vectorize(rgba, offset, 4, WIDTH * 4,
+                WIDTH, HEIGHT, TOLERANCE, MIN_VERTICES)));
+    }
+
+    @Test
+    public void reuseStartsFromEmptyFrame() {
+        ContourVectorizer vectorizer = new ContourVectorizer();
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        horizontal(edges, 20, 10, 40);
+        assertEquals(1, vectorizer.vectorize(edges, 0, 1, WIDTH, WIDTH, HEIGHT,
+                TOLERANCE, MIN_VERTICES).getPolylineCount());
+
+        ContourVectorizer.Polylines empty = vectorizer.vectorize(new byte[WIDTH * HEIGHT], 0, 1,
+                WIDTH, WIDTH, HEIGHT, TOLERANCE, MIN_VERTICES);
+        assertEquals(0, empty.getPolylineCount());
+        assertEquals(0, empty.getVertexCount());
+    }
+}
@@ -0,0 +1,230 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.flam.edgedetector.SyntheticScenes.Scene;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class EdgeKernelsTest {
+    static final int WIDTH = YuvConverterTest.WIDTH;
+    static final int HEIGHT = YuvConverterTest.HEIGHT;
+    static final int THRESHOLD = EdgeKernels.DEFAULT_SOBEL_THRESHOLD;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    static byte[] rgbaOf(Scene scene) {
+        return YuvConverterTest.toRgba(scene.planar(0, 0), scene.width, scene.height, null);
+    }
+
+    static byte[] grayOf(Scene scene) {
+        byte[] gray = new byte[scene.width * scene.height];
+        EdgeKernels.rgbaToGray(rgbaOf(scene), gray, scene.width, scene.height);
+        return gray;
+    }
+
+    /** Full-frame edges the way the app's Java fallback computes them */
+    static byte[] edgesOf(byte[] gray, int width, int height) {
+        byte[] edges = new byte[width * height];
+        EdgeKernels.sobel(gray, 0, width, width, height, THRESHOLD, edges, 0, width);
+        return edges;
+    }
+
+    @Test
+    public void grayMatchesGolden() throws Exception {
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            Golden.check("gray_" + scene.name, grayOf(scene), WIDTH, HEIGHT, 1, 0);
+        }
+    }
+
+    @Test
+    public void sobelMatchesGolden() throws Exception {
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            byte[] edges = edgesOf(grayOf(scene), WIDTH, HEIGHT);
+            // Pixels sitting on the threshold may flip with rounding changes upstream
+            Golden.check("edges_" + scene.name, edges, WIDTH, HEIGHT, 0, 0.002);
+        }
+    }
+
+    @Test
+    public void sobelIgnoresStrideAndOffset() {
+        byte[] gray = grayOf(SyntheticScenes.noise(WIDTH, HEIGHT, 7));
+        byte[] expected = edgesOf(gray, WIDTH, HEIGHT);
+
+        int srcStride = WIDTH + 19;
+        int srcOffset = 3 * srcStride + 5;
+        byte[] src = new byte[srcOffset + srcStride * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(gray, y * WIDTH, src, srcOffset + y * srcStride, WIDTH);
+        }
+        int dstStride = WIDTH + 6;
+        int dstOffset = 11;
+        byte[] dst = new byte[dstOffset + dstStride * HEIGHT];
+        EdgeKernels.sobel(src, srcOffset, srcStride, WIDTH, HEIGHT, THRESHOLD, dst, dstOffset, dstStride);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            assertArrayEquals("row " + y,
+                    Arrays.copyOfRange(expected, y * WIDTH, (y + 1) * WIDTH),
+                    Arrays.copyOfRange(dst, dstOffset + y * dstStride, dstOffset + y * dstStride + WIDTH));
+        }
+    }
+
+    @Test
+    public void sobelLeavesBorderUntouched() {
+        byte[] gray = grayOf(SyntheticScenes.shapes(WIDTH, HEIGHT));
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        Arrays.fill(edges, (byte) 0x77);
+        EdgeKernels.sobel(gray, 0, WIDTH, WIDTH, HEIGHT, THRESHOLD, edges, 0, WIDTH);
+        for (int x = 0; x < WIDTH; x++) {
+            assertEquals(0x77, edges[x]);
+            assertEquals(0x77, edges[(HEIGHT - 1) * WIDTH + x]);
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            assertEquals(0x77, edges[y * WIDTH]);
+            assertEquals(0x77, edges[y * WIDTH + WIDTH - 1]);
+        }
+    }
+
+    @Test
+    public void packBitsIsMsbFirstPerRow() {
+        int width = 13;
+        int height = 3;
+        byte[] edges = new byte[width * height];
+        edges[0] = (byte) 255;
+        edges[7] = (byte) 255;
+        edges[8] = (byte) 255;
+        edges[12] = (byte) 255;
+        edges[width + 1] = (byte) 255;
+        edges[2 * width + 12] = (byte) 255;
+
+        byte[] packed = new byte[1 + EdgeKernels.packedRowBytes(width) * height];
+        EdgeKernels.packBits(edges, width, height, packed, 1);
+        assertArrayEquals(new byte[]{0, (byte) 0x81, (byte) 0x88, 0x40, 0x00, 0x00, 0x08}, packed);
+    }
+
+    @Test
+    public void edgeDetectorMatchesKernelsAcrossSizeChanges() {
+        EdgeDetector detector = new EdgeDetector(THRESHOLD);
+        YuvConverter converter = new YuvConverter();
+        // Large frame first so the smaller ones reuse a dirty buffer
+        int[][] sizes = {{WIDTH * 2, HEIGHT * 2}, {WIDTH, HEIGHT}, {WIDTH - 10, HEIGHT + 3}};
+        for (int[] size : sizes) {
+            Scene scene = SyntheticScenes.noise(size[0], size[1], 99);
+            for (boolean nv21 : new boolean[]{false, true}) {
+                byte[] gray = new byte[size[0] * size[1]];
+                converter.packedToGray(scene.packed(nv21), nv21, size[0], size[1], gray);
+                byte[] expected = edgesOf(gray, size[0], size[1]);
+                byte[] actual = detector.fromYuv(scene.packed(nv21), nv21, size[0], size[1]);
+                assertArrayEquals(size[0] + "x" + size[1] + (nv21 ? " NV21" : " I420"),
+                        expected, Arrays.copyOf(actual, expected.length));
+            }
+        }
+    }
+
+    @Test
+    public void roiCompositeMatchesFullFrameInsideRegion() {
+        Scene scene = SyntheticScenes.shapes(WIDTH, HEIGHT);
+        byte[] rgba = rgbaOf(scene);
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        EdgeKernels.edgesToRgba(edgesOf(grayOf(scene), WIDTH, HEIGHT), expected, WIDTH, HEIGHT);
+
+        Roi region = new Roi(0, 20, 50, 40);
+        byte[] composite = new RoiEdgeProcessor(THRESHOLD)
+                .processComposite(rgba, WIDTH, HEIGHT, Collections.singletonList(region));
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= region.x && x < region.right() && y >= region.y && y < region.bottom();
+                int i = (y * WIDTH + x) * 4;
+                assertEquals("pixel " + x + "," + y, inside ? expected[i] : 0, composite[i]);
+            }
+        }
+    }
+
+    @Test
+    public void roiCompositeReuseClearsPreviousRegions() {
+        Scene scene = SyntheticScenes.shapes(WIDTH, HEIGHT);
+        byte[] rgba = rgbaOf(scene);
+        byte[] expected = new byte[WIDTH * HEIGHT * 4];
+        EdgeKernels.edgesToRgba(edgesOf(grayOf(scene), WIDTH, HEIGHT), expected, WIDTH, HEIGHT);
+
+        RoiEdgeProcessor processor = new RoiEdgeProcessor(THRESHOLD);
+        byte[] full = processor.processComposite(rgba, WIDTH, HEIGHT,
+                Collections.singletonList(Roi.fullFrame(WIDTH, HEIGHT)));
+        processor.processComposite(rgba, WIDTH, HEIGHT,
+                Arrays.asList(new Roi(0, 20, 50, 40), new Roi(60, 5, 30, 30)));
+        Roi region = new Roi(10, 30, 60, 20);
+        byte[] composite = processor.processComposite(rgba, WIDTH, HEIGHT,
+                Arrays.asList(region, new Roi(-10, -10, 5, 5)));
+        assertSame(full, composite);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= region.x && x < region.right() && y >= region.y && y < region.bottom();
+                int i = (y * WIDTH + x) * 4;
+                assertEquals("pixel " + x + "," + y, inside ? expected[i] : 0, composite[i]);
+                assertEquals("alpha " + x + "," + y, inside ? (byte) 255 : 0, composite[i + 3]);
+            }
+        }
+    }
+
+    @Test
+    public void tiledSnapshotMatchesFullFrame() throws Exception {
+        int width = 301;
+        int height = 203;
+        int stride = 320;
+        byte[] gray = grayOf(SyntheticScenes.shapes(width, height));
+        byte[] expected = new byte[EdgeKernels.packedRowBytes(width) * height];
+        EdgeKernels.packBits(edgesOf(gray, width, height), width, height, expected, 0);
+
+        ByteBuffer luma = ByteBuffer.wrap(SyntheticScenes.padded(gray, width, height, stride));
+        File output = temp.newFile("snapshot.edg");
+        TiledSnapshotProcessor processor = new TiledSnapshotProcessor(64, 3, 1 << 20, THRESHOLD);
+        try {
+            processor.process(luma, stride, width, height, output);
+        } finally {
+            processor.shutdown();
+        }
+        byte[] file = Files.readAllBytes(output.toPath());
+        assertArrayEquals(expected,
+                Arrays.copyOfRange(file, TiledSnapshotProcessor.HEADER_SIZE, file.length));
+    }
+
+    @Test
+    public void tiledSnapshotCancelledBeforeStartIsNotUndone() throws Exception {
+        int width = 128;
+        int height = 96;
+        byte[] gray = grayOf(SyntheticScenes.shapes(width, height));
+        ByteBuffer luma = ByteBuffer.wrap(gray);
+        TiledSnapshotProcessor processor = new TiledSnapshotProcessor(32, 2, 1 << 20, THRESHOLD);
+        try {
+            // Cancelled between submission and the start of processing
+            TiledSnapshotProcessor.Cancellation cancellation = new TiledSnapshotProcessor.Cancellation();
+            cancellation.cancel();
+            try {
+                processor.process(luma, width, width, height, temp.newFile("cancelled.edg"), cancellation);
+                fail("Expected InterruptedIOException");
+            } catch (InterruptedIOException expected) {
+                // Not reset by the call itself
+            }
+
+            // A fresh token is unaffected by the earlier cancel
+            TiledSnapshotProcessor.Result result = processor.process(luma, width, width, height,
+                    temp.newFile("next.edg"), new TiledSnapshotProcessor.Cancellation());
+            assertEquals(12, result.tiles);
+        } finally {
+            processor.shutdown();
+        }
+    }
+}
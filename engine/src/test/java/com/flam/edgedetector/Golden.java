@@ -0,0 +1,94 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Stored reference outputs. Each golden is a binary PGM under
+ * {@code src/test/resources/golden}, one byte per sample, so RGBA outputs
+ * are stored four samples per pixel.
+ *
+ * Run the tests with {@code -Pgolden.update=true} to rewrite the goldens
+ * from the current code after an intended output change.
+ */
+final class Golden {
+    static final boolean UPDATE = Boolean.getBoolean("golden.update");
+    private static final File DIR = new File(System.getProperty("golden.dir", "src/test/resources/golden"));
+
+    private Golden() {
+    }
+
+    /**
+     * Compare against a golden with tolerances
+     *
+     * @param name Golden name without extension
+     * @param actual Samples, {@code rowSamples * rows}
+     * @param maxDelta Largest per-sample difference that still counts as a match
+     * @param maxMismatchFraction Fraction of samples allowed to exceed {@code maxDelta}
+     */
+    static void check(String name, byte[] actual, int rowSamples, int rows,
+                      int maxDelta, double maxMismatchFraction) throws IOException {
+        File file = new File(DIR, name + ".pgm");
+        if (UPDATE) {
+            write(file, actual, rowSamples, rows);
+            return;
+        }
+        if (!file.isFile()) {
+            fail("Missing golden " + file + "; run with -Pgolden.update=true to create it");
+        }
+        byte[] expected = read(file, rowSamples, rows);
+
+        int mismatches = 0;
+        int worst = 0;
+        int firstMismatch = -1;
+        for (int i = 0; i < expected.length; i++) {
+            int delta = Math.abs((actual[i] & 0xFF) - (expected[i] & 0xFF));
+            worst = Math.max(worst, delta);
+            if (delta > maxDelta) {
+                if (firstMismatch < 0) {
+                    firstMismatch = i;
+                }
+                mismatches++;
+            }
+        }
+        double fraction = (double) mismatches / expected.length;
+        if (fraction > maxMismatchFraction) {
+            fail(String.format("%s: %d of %d samples differ by more than %d (max delta %d, first at row %d"
+                            + " column %d); allowed fraction %.4f",
+                    name, mismatches, expected.length, maxDelta, worst,
+                    firstMismatch / rowSamples, firstMismatch % rowSamples, maxMismatchFraction));
+        }
+    }
+
+    private static byte[] read(File file, int rowSamples, int rows) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        byte[] header = header(rowSamples, rows);
+        assertEquals(file + " header", new String(header, StandardCharsets.US_ASCII),
+                new String(data, 0, Math.min(header.length, data.length), StandardCharsets.US_ASCII));
+        assertEquals(file + " size", header.length + rowSamples * rows, data.length);
+        return Arrays.copyOfRange(data, header.length, data.length);
+    }
+
+    private static void write(File file, byte[] samples, int rowSamples, int rows) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(header(rowSamples, rows));
+            out.write(samples, 0, rowSamples * rows);
+        }
+    }
+
+    private static byte[] header(int rowSamples, int rows) {
+        return ("P5\n" + rowSamples + " " + rows + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
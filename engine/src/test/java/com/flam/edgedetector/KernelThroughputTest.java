@@ -0,0 +1,245 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+import com.flam.edgedetector.SyntheticScenes.Planes;
+import com.flam.edgedetector.SyntheticScenes.Scene;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Throughput budget per kernel on a 640x480 frame.
+ *
+ * Raw frames/s depend on the machine, so each kernel is scored relative to
+ * a fixed reference loop timed in the same JVM, and the score is compared
+ * with {@code src/test/resources/throughput-baseline.properties}. A kernel
+ * fails when its score drops more than {@code throughput.tolerance}
+ * (default 0.25) below the baseline.
+ *
+ * {@code -Pthroughput.update=true} rewrites the baseline,
+ * {@code -Pthroughput.skip=true} skips the checks (e.g. on loaded CI hosts).
+ */
+public class KernelThroughputTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 250_000_000L;
+    private static final int ROUNDS = 3;
+    /** Packed edge-map kernels must beat their byte-per-pixel references by this factor */
+    private static final double MIN_PACKED_SPEEDUP = 10;
+    private static final int DENSITY_TILE = 32;
+
+    private static final File BASELINE = new File(
+            System.getProperty("throughput.baseline", "src/test/resources/throughput-baseline.properties"));
+    private static final boolean UPDATE = Boolean.getBoolean("throughput.update");
+    private static final double TOLERANCE = Double.parseDouble(
+            System.getProperty("throughput.tolerance", "0.25"));
+
+    private static final Scene SCENE = SyntheticScenes.shapes(WIDTH, HEIGHT);
+    private static final Planes PLANES = SCENE.semiPlanar(64, 64);
+    private static final byte[] RGBA = new byte[WIDTH * HEIGHT * 4];
+    private static final byte[] GRAY = new byte[WIDTH * HEIGHT];
+    private static final byte[] EDGES = new byte[WIDTH * HEIGHT];
+
+    private static Properties baseline;
+    private static final TreeMap<String, Double> measured = new TreeMap<>();
+    private static double referenceFps;
+    private static volatile int sink;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        assumeFalse("throughput checks skipped", Boolean.getBoolean("throughput.skip"));
+        baseline = new Properties();
+        if (BASELINE.isFile()) {
+            try (InputStream in = new FileInputStream(BASELINE)) {
+                baseline.load(in);
+            }
+        }
+        new YuvConverter().toRgba(PLANES.y, PLANES.yRowStride, PLANES.u, PLANES.v,
+                PLANES.uvRowStride, PLANES.uvPixelStride, WIDTH, HEIGHT, RGBA, null);
+        EdgeKernels.rgbaToGray(RGBA, GRAY, WIDTH, HEIGHT);
+        referenceFps = framesPerSecond(KernelThroughputTest::referenceLoop);
+    }
+
+    @AfterClass
+    public static void writeBaseline() throws IOException {
+        if (!UPDATE || measured.isEmpty()) {
+            return;
+        }
+        Properties updated = new Properties();
+        for (String kernel : measured.keySet()) {
+            updated.setProperty(kernel, String.format(Locale.US, "%.4f", measured.get(kernel)));
+        }
+        try (OutputStream out = new FileOutputStream(BASELINE)) {
+            updated.store(out, "Kernel frames/s divided by reference-loop frames/s, " + WIDTH + "x" + HEIGHT);
+        }
+    }
+
+    /**
+     * Integer pass over a frame-sized buffer: cheap, stable, and bound by
+     * the same memory and ALU throughput the kernels use
+     */
+    private static void referenceLoop() {
+        int acc = 0;
+        for (int i = 0; i < GRAY.length; i++) {
+            acc = acc * 31 + (GRAY[i] & 0xFF);
+        }
+        sink = acc;
+    }
+
+    private static double framesPerSecond(Runnable kernel) {
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < end) {
+            kernel.run();
+        }
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int frames = 0;
+            long now;
+            do {
+                kernel.run();
+                frames++;
+                now = System.nanoTime();
+            } while (now - start < MEASURE_NANOS);
+            best = Math.max(best, frames / ((now - start) / 1e9));
+        }
+        return best;
+    }
+
+    private static double checkBudget(String kernel, Runnable body) {
+        double fps = framesPerSecond(body);
+        double score = fps / referenceFps;
+        measured.put(kernel, score);
+        System.out.printf(Locale.US, "%-14s %8.1f frames/s  score %.4f%n", kernel, fps, score);
+        if (UPDATE) {
+            return fps;
+        }
+        String stored = baseline.getProperty(kernel);
+        if (stored == null) {
+            fail("No baseline for " + kernel + "; run with -Pthroughput.update=true");
+        }
+        double expected = Double.parseDouble(stored);
+        if (score < expected * (1 - TOLERANCE)) {
+            fail(String.format(Locale.US, "%s regressed: score %.4f vs baseline %.4f (%.0f%% slower, %.1f frames/s)",
+                    kernel, score, expected, 100 * (1 - score / expected), fps));
+        }
+        return fps;
+    }
+
+    /**
+     * Budget check for a packed kernel, which must also run at least
+     * {@link #MIN_PACKED_SPEEDUP} times as fast as its byte-per-pixel
+     * reference
+     */
+    private static void checkPackedSpeedup(String kernel, Runnable packed, Runnable bytes) {
+        double packedFps = checkBudget(kernel, packed);
+        double bytesFps = framesPerSecond(bytes);
+        double speedup = packedFps / bytesFps;
+        System.out.printf(Locale.US, "%-14s %8.1f frames/s  bytes, packed %.1fx%n", kernel, bytesFps, speedup);
+        if (!UPDATE && speedup < MIN_PACKED_SPEEDUP) {
+            fail(String.format(Locale.US, "%s only %.1fx faster than bytes (%.1f vs %.1f frames/s)",
+                    kernel, speedup, packedFps, bytesFps));
+        }
+    }
+
+    @Test
+    public void yuvToRgba() {
+        YuvConverter converter = new YuvConverter();
+        checkBudget("yuvToRgba", () -> converter.toRgba(PLANES.y, PLANES.yRowStride, PLANES.u, PLANES.v,
+                PLANES.uvRowStride, PLANES.uvPixelStride, WIDTH, HEIGHT, RGBA, null));
+    }
+
+    @Test
+    public void yuvToGray() {
+        YuvConverter converter = new YuvConverter();
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        checkBudget("yuvToGray", () -> converter.toGray(PLANES.y, PLANES.yRowStride, PLANES.u, PLANES.v,
+                PLANES.uvRowStride, PLANES.uvPixelStride, WIDTH, HEIGHT, gray, null));
+    }
+
+    @Test
+    public void rgbaToGray() {
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        checkBudget("rgbaToGray", () -> EdgeKernels.rgbaToGray(RGBA, gray, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void sobel() {
+        checkBudget("sobel", () -> EdgeKernels.sobel(GRAY, 0, WIDTH, WIDTH, HEIGHT,
+                EdgeKernels.DEFAULT_SOBEL_THRESHOLD, EDGES, 0, WIDTH));
+    }
+
+    @Test
+    public void blurGaussian() {
+        Blur blur = new Blur();
+        checkBudget("blurGaussian", () -> blur.apply(BlurMode.GAUSSIAN, GRAY, 0, WIDTH, WIDTH, HEIGHT,
+                EDGES, 0, WIDTH));
+    }
+
+    @Test
+    public void blurBinomial() {
+        Blur blur = new Blur();
+        checkBudget("blurBinomial", () -> blur.apply(BlurMode.BINOMIAL, GRAY, 0, WIDTH, WIDTH, HEIGHT,
+                EDGES, 0, WIDTH));
+    }
+
+    @Test
+    public void blurBox3() {
+        Blur blur = new Blur();
+        checkBudget("blurBox3", () -> blur.apply(BlurMode.BOX3, GRAY, 0, WIDTH, WIDTH, HEIGHT,
+                EDGES, 0, WIDTH));
+    }
+
+    @Test
+    public void edgeDetectorFromYuv() {
+        EdgeDetector detector = new EdgeDetector();
+        byte[] frame = SCENE.packed(true);
+        checkBudget("detectFromNv21", () -> sink = detector.fromYuv(frame, true, WIDTH, HEIGHT)[WIDTH + 1]);
+    }
+
+    @Test
+    public void packedEdgeMap() {
+        byte[] edges = new byte[WIDTH * HEIGHT];
+        EdgeKernels.sobel(GRAY, 0, WIDTH, WIDTH, HEIGHT, EdgeKernels.DEFAULT_SOBEL_THRESHOLD, edges, 0, WIDTH);
+        byte[] tmp = new byte[edges.length];
+        byte[] out = new byte[edges.length];
+        PackedEdgeMap map = new PackedEdgeMap(WIDTH, HEIGHT);
+        map.pack(edges, 0, WIDTH);
+        long[] source = map.words().clone();
+
+        // Word-parallel morphology costs the same whatever the content, so
+        // only thinning restarts from the Sobel edges each frame
+        checkPackedSpeedup("packedDilate", map::dilate,
+                () -> PackedEdgeMapTest.dilateBytes(edges, tmp, out, WIDTH, HEIGHT));
+        checkPackedSpeedup("packedErode", map::erode,
+                () -> PackedEdgeMapTest.erodeBytes(edges, tmp, out, WIDTH, HEIGHT));
+        checkPackedSpeedup("packedIsolated", map::removeIsolated,
+                () -> PackedEdgeMapTest.removeIsolatedBytes(edges, out, WIDTH, HEIGHT));
+        checkPackedSpeedup("packedThin", () -> {
+            System.arraycopy(source, 0, map.words(), 0, source.length);
+            sink = map.thin(0);
+        }, () -> {
+            System.arraycopy(edges, 0, out, 0, edges.length);
+            sink = PackedEdgeMapTest.thinBytes(out, tmp, WIDTH, HEIGHT);
+        });
+
+        int[] counts = new int[((WIDTH + DENSITY_TILE - 1) / DENSITY_TILE) * ((HEIGHT + DENSITY_TILE - 1) / DENSITY_TILE)];
+        System.arraycopy(source, 0, map.words(), 0, source.length);
+        checkPackedSpeedup("packedDensity", () -> map.tileCounts(DENSITY_TILE, DENSITY_TILE, counts),
+                () -> PackedEdgeMapTest.tileCountsBytes(edges, WIDTH, HEIGHT, DENSITY_TILE, DENSITY_TILE, counts));
+    }
+}
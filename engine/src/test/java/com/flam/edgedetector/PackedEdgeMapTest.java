@@ -0,0 +1,426 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PackedEdgeMapTest {
+    /** Widths around word boundaries, including a single partial word */
+    private static final int[] WIDTHS = {1, 37, 63, 64, 65, 128, 130, 200};
+    private static final int HEIGHT = 45;
+
+    // Byte-per-pixel references, also timed against the packed versions in
+    // KernelThroughputTest. Edges are non-zero, outside pixels as documented
+    // on PackedEdgeMap.
+
+    /** Separable 3x3 dilation, one horizontal and one vertical pass */
+    static void dilateBytes(byte[] src, byte[] tmp, byte[] dst, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int v = src[row + x];
+                if (x > 0) {
+                    v |= src[row + x - 1];
+                }
+                if (x < width - 1) {
+                    v |= src[row + x + 1];
+                }
+                tmp[row + x] = v != 0 ? (byte) 255 : 0;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int above = y > 0 ? row - width : row;
+            int below = y < height - 1 ? row + width : row;
+            for (int x = 0; x < width; x++) {
+                dst[row + x] = (byte) (tmp[above + x] | tmp[row + x] | tmp[below + x]);
+            }
+        }
+    }
+
+    static void erodeBytes(byte[] src, byte[] tmp, byte[] dst, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                boolean v = src[row + x] != 0
+                        && (x == 0 || src[row + x - 1] != 0)
+                        && (x == width - 1 || src[row + x + 1] != 0);
+                tmp[row + x] = v ? (byte) 255 : 0;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int above = y > 0 ? row - width : row;
+            int below = y < height - 1 ? row + width : row;
+            for (int x = 0; x < width; x++) {
+                dst[row + x] = (byte) (tmp[above + x] & tmp[row + x] & tmp[below + x]);
+            }
+        }
+    }
+
+    static void removeIsolatedBytes(byte[] src, byte[] dst, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                boolean keep = false;
+                if (src[i] != 0) {
+                    for (int dy = -1; dy <= 1 && !keep; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int nx = x + dx;
+                            int ny = y + dy;
+                            if ((dx != 0 || dy != 0) && nx >= 0 && nx < width && ny >= 0 && ny < height
+                                    && src[ny * width + nx] != 0) {
+                                keep = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+                dst[i] = keep ? (byte) 255 : 0;
+            }
+        }
+    }
+
+    /** Zhang-Suen on a working copy in {@code map}; returns passes run */
+    static int thinBytes(byte[] map, byte[] marks, int width, int height) {
+        int passes = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = thinStepBytes(map, marks, width, height, true);
+            changed |= thinStepBytes(map, marks, width, height, false);
+            passes++;
+        }
+        return passes;
+    }
+
+    private static int at(byte[] map, int width, int height, int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height && map[y * width + x] != 0 ? 1 : 0;
+    }
+
+    private static boolean thinStepBytes(byte[] map, byte[] marks, int width, int height, boolean first) {
+        boolean changed = false;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                marks[i] = 0;
+                if (map[i] == 0) {
+                    continue;
+                }
+                int p2 = at(map, width, height, x, y - 1);
+                int p3 = at(map, width, height, x + 1, y - 1);
+                int p4 = at(map, width, height, x + 1, y);
+                int p5 = at(map, width, height, x + 1, y + 1);
+                int p6 = at(map, width, height, x, y + 1);
+                int p7 = at(map, width, height, x - 1, y + 1);
+                int p8 = at(map, width, height, x - 1, y);
+                int p9 = at(map, width, height, x - 1, y - 1);
+                int b = p2 + p3 + p4 + p5 + p6 + p7 + p8 + p9;
+                int a = (p2 == 0 && p3 == 1 ? 1 : 0) + (p3 == 0 && p4 == 1 ? 1 : 0)
+                        + (p4 == 0 && p5 == 1 ? 1 : 0) + (p5 == 0 && p6 == 1 ? 1 : 0)
+                        + (p6 == 0 && p7 == 1 ? 1 : 0) + (p7 == 0 && p8 == 1 ? 1 : 0)
+                        + (p8 == 0 && p9 == 1 ? 1 : 0) + (p9 == 0 && p2 == 1 ? 1 : 0);
+                boolean rule = first
+                        ? p2 * p4 * p6 == 0 && p4 * p6 * p8 == 0
+                        : p2 * p4 * p8 == 0 && p2 * p6 * p8 == 0;
+                if (b >= 2 && b <= 6 && a == 1 && rule) {
+                    marks[i] = 1;
+                    changed = true;
+                }
+            }
+        }
+        for (int i = 0; i < width * height; i++) {
+            if (marks[i] != 0) {
+                map[i] = 0;
+            }
+        }
+        return changed;
+    }
+
+    /** Non-zero pixels per tile, laid out as {@link PackedEdgeMap#tileCounts} */
+    static void tileCountsBytes(byte[] edges, int width, int height, int tileWidth, int tileHeight, int[] counts) {
+        int tilesX = (width + tileWidth - 1) / tileWidth;
+        Arrays.fill(counts, 0, tilesX * ((height + tileHeight - 1) / tileHeight), 0);
+        for (int y = 0; y < height; y++) {
+            int tile = (y / tileHeight) * tilesX;
+            for (int x = 0; x < width; x++) {
+                if (edges[y * width + x] != 0) {
+                    counts[tile + x / tileWidth]++;
+                }
+            }
+        }
+    }
+
+    /** Random blobs: dense enough for erosion to keep pixels, sparse enough for isolated ones */
+    static byte[] randomEdges(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] edges = new byte[width * height];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = random.nextInt(100) < 15 ? (byte) 255 : 0;
+        }
+        PackedEdgeMap map = new PackedEdgeMap(width, height);
+        map.pack(edges, 0, width);
+        map.dilate();
+        byte[] blobs = new byte[edges.length];
+        map.unpack(blobs, 0, width);
+        for (int i = 0; i < edges.length; i++) {
+            // Keep the blobs in about half the frame, plus sparse specks
+            if (((i % width) * 7 + (i / width) * 3) % 23 < 11 || random.nextInt(100) < 4) {
+                blobs[i] = edges[i];
+            }
+        }
+        return blobs;
+    }
+
+    private static PackedEdgeMap packed(byte[] edges, int width, int height) {
+        PackedEdgeMap map = new PackedEdgeMap(width, height);
+        map.pack(edges, 0, width);
+        return map;
+    }
+
+    private static byte[] unpacked(PackedEdgeMap map) {
+        byte[] edges = new byte[map.getWidth() * map.getHeight()];
+        map.unpack(edges, 0, map.getWidth());
+        return edges;
+    }
+
+    private static void assertPaddingClear(PackedEdgeMap map) {
+        int used = map.getWidth() & 63;
+        if (used == 0) {
+            return;
+        }
+        long[] words = map.words();
+        for (int y = 0; y < map.getHeight(); y++) {
+            long last = words[y * map.wordsPerRow() + map.wordsPerRow() - 1];
+            assertEquals("padding of row " + y, 0, last >>> used);
+        }
+    }
+
+    private static int countBytes(byte[] edges) {
+        int count = 0;
+        for (byte e : edges) {
+            if (e != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void packRoundTripsWithStride() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width);
+            int stride = width + 5;
+            byte[] padded = new byte[3 + stride * HEIGHT];
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < width; x++) {
+                    // Any non-zero value is an edge
+                    padded[3 + y * stride + x] = edges[y * width + x] != 0 ? (byte) (1 + x % 200) : 0;
+                }
+            }
+            PackedEdgeMap map = new PackedEdgeMap(width, HEIGHT);
+            map.pack(padded, 3, stride);
+            assertArrayEquals("width " + width, edges, unpacked(map));
+            assertPaddingClear(map);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(edges[y * width + x] != 0, map.get(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void setAndGet() {
+        PackedEdgeMap map = new PackedEdgeMap(130, 3);
+        map.set(129, 2, true);
+        map.set(64, 1, true);
+        map.set(63, 1, true);
+        map.set(64, 1, false);
+        assertTrue(map.get(129, 2));
+        assertTrue(map.get(63, 1));
+        assertFalse(map.get(64, 1));
+        assertEquals(2, map.count());
+        map.clear();
+        assertEquals(0, map.count());
+    }
+
+    @Test
+    public void toRgbaMatchesByteExpansion() {
+        int width = 130;
+        byte[] edges = randomEdges(width, HEIGHT, 1);
+        byte[] rgba = new byte[width * HEIGHT * 4];
+        packed(edges, width, HEIGHT).toRgba(rgba);
+        for (int i = 0; i < edges.length; i++) {
+            assertEquals(edges[i], rgba[i * 4]);
+            assertEquals(edges[i], rgba[i * 4 + 1]);
+            assertEquals(edges[i], rgba[i * 4 + 2]);
+            assertEquals((byte) 255, rgba[i * 4 + 3]);
+        }
+    }
+
+    @Test
+    public void dilateMatchesBytes() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width);
+            byte[] expected = new byte[edges.length];
+            dilateBytes(edges, new byte[edges.length], expected, width, HEIGHT);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            map.dilate();
+            assertArrayEquals("width " + width, expected, unpacked(map));
+            assertPaddingClear(map);
+        }
+    }
+
+    @Test
+    public void erodeMatchesBytes() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width + 1);
+            byte[] expected = new byte[edges.length];
+            erodeBytes(edges, new byte[edges.length], expected, width, HEIGHT);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            map.erode();
+            assertArrayEquals("width " + width, expected, unpacked(map));
+            assertPaddingClear(map);
+        }
+    }
+
+    @Test
+    public void erodeKeepsFullFrame() {
+        for (int width : WIDTHS) {
+            byte[] full = new byte[width * 3];
+            Arrays.fill(full, (byte) 255);
+            PackedEdgeMap map = packed(full, width, 3);
+            map.erode();
+            assertEquals("width " + width, full.length, map.count());
+            assertPaddingClear(map);
+        }
+    }
+
+    @Test
+    public void removeIsolatedMatchesBytes() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width + 2);
+            byte[] expected = new byte[edges.length];
+            removeIsolatedBytes(edges, expected, width, HEIGHT);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            map.removeIsolated();
+            assertArrayEquals("width " + width, expected, unpacked(map));
+        }
+    }
+
+    @Test
+    public void thinMatchesBytes() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width + 3);
+            byte[] expected = edges.clone();
+            int expectedPasses = thinBytes(expected, new byte[edges.length], width, HEIGHT);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            assertEquals("width " + width, expectedPasses, map.thin(0));
+            assertArrayEquals("width " + width, expected, unpacked(map));
+            assertPaddingClear(map);
+        }
+    }
+
+    @Test
+    public void thinMatchesBytesOnThickShapes() {
+        for (int width : WIDTHS) {
+            PackedEdgeMap map = packed(randomEdges(width, HEIGHT, width + 6), width, HEIGHT);
+            map.dilate();
+            map.dilate();
+            byte[] expected = unpacked(map);
+            int expectedPasses = thinBytes(expected, new byte[expected.length], width, HEIGHT);
+            assertEquals("width " + width, expectedPasses, map.thin(0));
+            assertArrayEquals("width " + width, expected, unpacked(map));
+        }
+    }
+
+    @Test
+    public void thinReducesBarToLine() {
+        int width = 100;
+        int height = 20;
+        PackedEdgeMap map = new PackedEdgeMap(width, height);
+        for (int y = 7; y < 12; y++) {
+            for (int x = 10; x < 90; x++) {
+                map.set(x, y, true);
+            }
+        }
+        map.thin(0);
+        for (int x = 15; x < 85; x++) {
+            int column = 0;
+            for (int y = 0; y < height; y++) {
+                column += map.get(x, y) ? 1 : 0;
+            }
+            assertEquals("column " + x, 1, column);
+        }
+        assertEquals(1, map.thin(0));
+    }
+
+    @Test
+    public void thinStopsAtPassLimit() {
+        byte[] edges = randomEdges(128, HEIGHT, 9);
+        PackedEdgeMap map = packed(edges, 128, HEIGHT);
+        assertEquals(1, map.thin(1));
+    }
+
+    @Test
+    public void densityCountsEdges() {
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width + 4);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            assertEquals(countBytes(edges), map.count());
+            assertEquals(countBytes(edges) / (float) edges.length, map.density(), 1e-6f);
+        }
+    }
+
+    @Test
+    public void tileCountsMatchBytes() {
+        int[][] tiles = {{16, 16}, {64, 8}, {30, 7}, {100, 45}, {1, 1}};
+        for (int width : WIDTHS) {
+            byte[] edges = randomEdges(width, HEIGHT, width + 5);
+            PackedEdgeMap map = packed(edges, width, HEIGHT);
+            for (int[] tile : tiles) {
+                int tilesX = (width + tile[0] - 1) / tile[0];
+                int tilesY = (HEIGHT + tile[1] - 1) / tile[1];
+                int[] expected = new int[tilesX * tilesY];
+                tileCountsBytes(edges, width, HEIGHT, tile[0], tile[1], expected);
+                int[] counts = new int[expected.length + 1];
+                counts[expected.length] = -1;
+                map.tileCounts(tile[0], tile[1], counts);
+                String label = width + " / " + tile[0] + "x" + tile[1];
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(label + " tile " + i, expected[i], counts[i]);
+                }
+                assertEquals(label, -1, counts[expected.length]);
+
+                float[] densities = new float[expected.length];
+                map.tileDensities(tile[0], tile[1], densities);
+                int last = expected.length - 1;
+                int lastArea = (width - (tilesX - 1) * tile[0]) * (HEIGHT - (tilesY - 1) * tile[1]);
+                assertEquals(label, expected[last] / (float) lastArea, densities[last], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void sobelEdgesCleanUp() {
+        int width = YuvConverterTest.WIDTH;
+        int height = YuvConverterTest.HEIGHT;
+        byte[] gray = EdgeKernelsTest.grayOf(SyntheticScenes.noise(width, height, 17));
+        byte[] edges = new byte[width * height];
+        EdgeKernels.sobel(gray, 0, width, width, height, EdgeKernels.DEFAULT_SOBEL_THRESHOLD, edges, 0, width);
+
+        PackedEdgeMap map = packed(edges, width, height);
+        int before = map.count();
+        map.removeIsolated();
+        map.dilate();
+        map.erode();
+        map.thin(0);
+        assertTrue(map.count() > 0 && map.count() < before);
+    }
+}
@@ -0,0 +1,154 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.flam.edgedetector.StreamConfigNegotiator.Budget;
+import com.flam.edgedetector.StreamConfigNegotiator.Result;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Negotiation against capability tables in src/test/resources/capabilities,
+ * in the format CameraHandler logs on device
+ */
+public class StreamConfigNegotiatorTest {
+    /** Pipeline that sustains 1080p at 30 fps */
+    private static final Budget FAST = new Budget(30, 1920L * 1080 * 30, 4);
+
+    static StreamCapabilities table(String name) throws IOException {
+        try (InputStream in = StreamConfigNegotiatorTest.class.getResourceAsStream("/capabilities/" + name + ".txt")) {
+            if (in == null) {
+                throw new IOException("Missing capability table " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return StreamCapabilities.parse(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void assertResult(Result result, int width, int height, int fps,
+                                     int lower, int upper, int maxImages) {
+        String label = result.toString();
+        assertEquals(label, width, result.width);
+        assertEquals(label, height, result.height);
+        assertEquals(label, fps, result.fps);
+        assertEquals(label, lower, result.fpsRange.lower);
+        assertEquals(label, upper, result.fpsRange.upper);
+        assertEquals(label, maxImages, result.maxImages);
+    }
+
+    @Test
+    public void flagshipDefaultBudgetKeepsVgaAtFixed30() throws IOException {
+        Result result = StreamConfigNegotiator.negotiate(table("flagship"), Budget.DEFAULT);
+        assertResult(result, 640, 480, 30, 30, 30, 2);
+    }
+
+    @Test
+    public void flagshipFastBudgetMovesUpTo1080p() throws IOException {
+        Result result = StreamConfigNegotiator.negotiate(table("flagship"), FAST);
+        assertResult(result, 1920, 1080, 30, 30, 30, 2);
+    }
+
+    @Test
+    public void flagshipSlowBudgetDropsToSmallerSize() throws IOException {
+        Budget slow = new Budget(30, 640L * 480 * 15, 4);
+        Result result = StreamConfigNegotiator.negotiate(table("flagship"), slow);
+        assertResult(result, 320, 240, 30, 30, 30, 2);
+    }
+
+    @Test
+    public void budgetPhoneFallsBackToHighestRangeBelowTarget() throws IOException {
+        Result result = StreamConfigNegotiator.negotiate(table("budget_phone"), Budget.DEFAULT);
+        // 640x480 is sensor-limited to 20 fps, so 320x240 wins; no range
+        // contains 30 and the frame rate follows the fixed 24 fps range
+        assertResult(result, 320, 240, 24, 24, 24, 2);
+    }
+
+    @Test
+    public void budgetPhoneLowTargetKeepsSensorLimitedVga() throws IOException {
+        Budget budget = new Budget(20, 640L * 480 * 20, 3);
+        Result result = StreamConfigNegotiator.negotiate(table("budget_phone"), budget);
+        assertResult(result, 640, 480, 20, 10, 20, 2);
+    }
+
+    @Test
+    public void noVgaPicksLargestSizeAtTargetRate() throws IOException {
+        Result result = StreamConfigNegotiator.negotiate(table("legacy_no_vga"), Budget.DEFAULT);
+        assertResult(result, 352, 288, 30, 7, 30, 2);
+
+        Result fast = StreamConfigNegotiator.negotiate(table("legacy_no_vga"), FAST);
+        assertResult(fast, 1280, 720, 30, 7, 30, 2);
+    }
+
+    @Test
+    public void noFpsRangesLeavesAeRangeUnset() throws IOException {
+        Result result = StreamConfigNegotiator.negotiate(table("no_fps_ranges"), Budget.DEFAULT);
+        assertEquals(640, result.width);
+        assertEquals(480, result.height);
+        assertEquals(30, result.fps);
+        assertNull(result.fpsRange);
+        assertEquals(2, result.maxImages);
+    }
+
+    @Test
+    public void noStreamMapUsesFallback() {
+        Result result = StreamConfigNegotiator.negotiate(null, Budget.DEFAULT);
+        assertEquals(640, result.width);
+        assertEquals(480, result.height);
+        assertEquals(30, result.fps);
+        assertNull(result.fpsRange);
+        assertEquals(2, result.maxImages);
+    }
+
+    @Test
+    public void noYuvSizesUsesFallback() {
+        StreamCapabilities empty = new StreamCapabilities(Collections.<StreamCapabilities.OutputSize>emptyList(),
+                Collections.singletonList(new StreamCapabilities.FpsRange(15, 30)));
+        Result result = StreamConfigNegotiator.negotiate(empty, Budget.DEFAULT);
+        assertEquals(640, result.width);
+        assertEquals(480, result.height);
+        assertNull(result.fpsRange);
+    }
+
+    @Test
+    public void maxImagesStaysWithinBudgetLimit() throws IOException {
+        for (String name : new String[]{"flagship", "budget_phone", "legacy_no_vga", "no_fps_ranges"}) {
+            for (Budget budget : new Budget[]{Budget.DEFAULT, FAST, new Budget(60, 1280L * 720 * 60, 2)}) {
+                Result result = StreamConfigNegotiator.negotiate(table(name), budget);
+                assertTrue(name + " " + result, result.maxImages >= 2 && result.maxImages <= budget.maxImagesLimit);
+            }
+        }
+    }
+
+    @Test
+    public void tableRoundTrips() throws IOException {
+        StreamCapabilities capabilities = table("flagship");
+        StreamCapabilities reparsed = StreamCapabilities.parse(capabilities.toTable());
+        assertEquals(capabilities.toTable(), reparsed.toTable());
+        assertEquals(6, reparsed.getOutputSizes().size());
+        assertEquals(5, reparsed.getFpsRanges().size());
+    }
+
+    @Test
+    public void malformedTableIsRejected() {
+        try {
+            StreamCapabilities.parse("size 640x480 33333333\nsize 640by480\n");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.flam.edgedetector;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Deterministic YUV 4:2:0 test scenes. Everything is derived from pixel
+ * coordinates or a fixed-seed xorshift generator, so the same scene is
+ * produced on every run and every JVM.
+ */
+final class SyntheticScenes {
+
+    /**
+     * A scene as separate tightly packed Y, U and V planes
+     */
+    static final class Scene {
+        final String name;
+        final int width;
+        final int height;
+        final byte[] y;
+        final byte[] u;
+        final byte[] v;
+
+        Scene(String name, int width, int height) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.y = new byte[width * height];
+            this.u = new byte[chromaWidth() * chromaHeight()];
+            this.v = new byte[chromaWidth() * chromaHeight()];
+        }
+
+        int chromaWidth() {
+            return (width + 1) / 2;
+        }
+
+        int chromaHeight() {
+            return (height + 1) / 2;
+        }
+
+        /** Planar layout with every row padded by extra bytes, like camera buffers */
+        Planes planar(int yPadding, int uvPadding) {
+            int yStride = width + yPadding;
+            int uvStride = chromaWidth() + uvPadding;
+            byte[] yData = padded(y, width, height, yStride);
+            byte[] uData = padded(u, chromaWidth(), chromaHeight(), uvStride);
+            byte[] vData = padded(v, chromaWidth(), chromaHeight(), uvStride);
+            return new Planes(ByteBuffer.wrap(yData), yStride,
+                    ByteBuffer.wrap(uData), ByteBuffer.wrap(vData), uvStride, 1);
+        }
+
+        /**
+         * Semi-planar VU layout (NV21) sharing one chroma buffer, as Android
+         * exposes it: pixel stride 2, V at offset 0 and U at offset 1
+         */
+        Planes semiPlanar(int yPadding, int uvPadding) {
+            int yStride = width + yPadding;
+            int uvStride = chromaWidth() * 2 + uvPadding;
+            byte[] yData = padded(y, width, height, yStride);
+            byte[] vu = new byte[uvStride * chromaHeight()];
+            Arrays.fill(vu, (byte) 0x5A);
+            for (int j = 0; j < chromaHeight(); j++) {
+                for (int i = 0; i < chromaWidth(); i++) {
+                    vu[j * uvStride + 2 * i] = v[j * chromaWidth() + i];
+                    vu[j * uvStride + 2 * i + 1] = u[j * chromaWidth() + i];
+                }
+            }
+            ByteBuffer vPlane = ByteBuffer.wrap(vu);
+            ByteBuffer uPlane = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+            return new Planes(ByteBuffer.wrap(yData), yStride, uPlane, vPlane, uvStride, 2);
+        }
+
+        /** Tightly packed I420 or NV21 frame */
+        byte[] packed(boolean nv21) {
+            byte[] frame = new byte[YuvConverter.packedFrameSize(width, height)];
+            System.arraycopy(y, 0, frame, 0, y.length);
+            int offset = y.length;
+            if (nv21) {
+                for (int i = 0; i < u.length; i++) {
+                    frame[offset + 2 * i] = v[i];
+                    frame[offset + 2 * i + 1] = u[i];
+                }
+            } else {
+                System.arraycopy(u, 0, frame, offset, u.length);
+                System.arraycopy(v, 0, frame, offset + u.length, v.length);
+            }
+            return frame;
+        }
+    }
+
+    /**
+     * Plane buffers and strides in the shape {@link YuvConverter} takes
+     */
+    static final class Planes {
+        final ByteBuffer y;
+        final int yRowStride;
+        final ByteBuffer u;
+        final ByteBuffer v;
+        final int uvRowStride;
+        final int uvPixelStride;
+
+        Planes(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride) {
+            this.y = y;
+            this.yRowStride = yRowStride;
+            this.u = u;
+            this.v = v;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+        }
+    }
+
+    private SyntheticScenes() {
+    }
+
+    /** Horizontal luma ramp with a vertical ripple, chroma ramps in both axes */
+    static Scene gradient(int width, int height) {
+        Scene s = new Scene("gradient", width, height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int ripple = ((j / 6) % 2) * 24;
+                s.y[j * width + i] = (byte) clamp(16 + i * 219 / Math.max(1, width - 1) - ripple);
+            }
+        }
+        for (int j = 0; j < s.chromaHeight(); j++) {
+            for (int i = 0; i < s.chromaWidth(); i++) {
+                s.u[j * s.chromaWidth() + i] = (byte) (16 + i * 224 / Math.max(1, s.chromaWidth() - 1));
+                s.v[j * s.chromaWidth() + i] = (byte) (240 - j * 224 / Math.max(1, s.chromaHeight() - 1));
+            }
+        }
+        return s;
+    }
+
+    /** Flat background with hard-edged rectangles, a disc and a diagonal bar */
+    static Scene shapes(int width, int height) {
+        Scene s = new Scene("shapes", width, height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int value = 60;
+                if (i >= width / 8 && i < width * 3 / 8 && j >= height / 6 && j < height / 2) {
+                    value = 200;
+                }
+                int dx = i - width * 2 / 3;
+                int dy = j - height / 2;
+                int radius = Math.min(width, height) / 4;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    value = 150;
+                }
+                if (Math.abs((i - j) - width / 4) < 3) {
+                    value = 235;
+                }
+                s.y[j * width + i] = (byte) value;
+            }
+        }
+        for (int j = 0; j < s.chromaHeight(); j++) {
+            for (int i = 0; i < s.chromaWidth(); i++) {
+                boolean left = i < s.chromaWidth() / 2;
+                s.u[j * s.chromaWidth() + i] = (byte) (left ? 90 : 170);
+                s.v[j * s.chromaWidth() + i] = (byte) (left ? 180 : 100);
+            }
+        }
+        return s;
+    }
+
+    /** Uniform pseudo-random noise over a mid-gray base, fixed seed */
+    static Scene noise(int width, int height, long seed) {
+        Scene s = new Scene("noise", width, height);
+        long state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        for (int i = 0; i < s.y.length; i++) {
+            state = xorshift(state);
+            s.y[i] = (byte) (128 + (int) ((state >>> 33) % 97) - 48);
+        }
+        for (int i = 0; i < s.u.length; i++) {
+            state = xorshift(state);
+            s.u[i] = (byte) (state >>> 56);
+            state = xorshift(state);
+            s.v[i] = (byte) (state >>> 56);
+        }
+        return s;
+    }
+
+    static Scene[] all(int width, int height) {
+        return new Scene[]{gradient(width, height), shapes(width, height), noise(width, height, 42)};
+    }
+
+    /** Copy of {@code src} with a row stride of {@code stride}, padding filled with a marker */
+    static byte[] padded(byte[] src, int width, int height, int stride) {
+        byte[] out = new byte[stride * height];
+        Arrays.fill(out, (byte) 0xA5);
+        for (int j = 0; j < height; j++) {
+            System.arraycopy(src, j * width, out, j * stride, width);
+        }
+        return out;
+    }
+
+    private static long xorshift(long x) {
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        return x;
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+}
@@ -0,0 +1,99 @@
+package com.flam.edgedetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.flam.edgedetector.SyntheticScenes.Planes;
+import com.flam.edgedetector.SyntheticScenes.Scene;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class YuvConverterTest {
+    // Odd sizes exercise the rounded-up chroma planes
+    static final int WIDTH = 97;
+    static final int HEIGHT = 71;
+
+    static byte[] toRgba(Planes p, int width, int height, Roi region) {
+        byte[] rgba = new byte[width * height * 4];
+        new YuvConverter().toRgba(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride,
+                width, height, rgba, region);
+        return rgba;
+    }
+
+    static byte[] toGray(Planes p, int width, int height) {
+        byte[] gray = new byte[width * height];
+        new YuvConverter().toGray(p.y, p.yRowStride, p.u, p.v, p.uvRowStride, p.uvPixelStride,
+                width, height, gray, null);
+        return gray;
+    }
+
+    @Test
+    public void rgbaMatchesGolden() throws Exception {
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            byte[] rgba = toRgba(scene.planar(0, 0), WIDTH, HEIGHT, null);
+            Golden.check("rgba_" + scene.name, rgba, WIDTH * 4, HEIGHT, 1, 0);
+        }
+    }
+
+    @Test
+    public void paddedAndSemiPlanarLayoutsMatchTightPlanar() {
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            byte[] expected = toRgba(scene.planar(0, 0), WIDTH, HEIGHT, null);
+            assertArrayEquals(scene.name + " padded planar",
+                    expected, toRgba(scene.planar(13, 7), WIDTH, HEIGHT, null));
+            assertArrayEquals(scene.name + " semi-planar",
+                    expected, toRgba(scene.semiPlanar(0, 0), WIDTH, HEIGHT, null));
+            assertArrayEquals(scene.name + " padded semi-planar",
+                    expected, toRgba(scene.semiPlanar(16, 10), WIDTH, HEIGHT, null));
+        }
+    }
+
+    @Test
+    public void regionConversionMatchesFullFrameAndLeavesOutsideUntouched() {
+        Scene scene = SyntheticScenes.shapes(WIDTH, HEIGHT);
+        Planes planes = scene.semiPlanar(8, 4);
+        byte[] full = toRgba(planes, WIDTH, HEIGHT, null);
+
+        // Odd origin and size so the region starts and ends mid chroma pair
+        Roi region = new Roi(13, 9, 41, 27);
+        byte[] partial = new byte[WIDTH * HEIGHT * 4];
+        Arrays.fill(partial, (byte) 0x33);
+        new YuvConverter().toRgba(planes.y, planes.yRowStride, planes.u, planes.v,
+                planes.uvRowStride, planes.uvPixelStride, WIDTH, HEIGHT, partial, region);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inside = x >= region.x && x < region.right() && y >= region.y && y < region.bottom();
+                for (int c = 0; c < 4; c++) {
+                    int i = (y * WIDTH + x) * 4 + c;
+                    assertEquals("pixel " + x + "," + y, inside ? full[i] : (byte) 0x33, partial[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void grayMatchesRgbaThenGray() {
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            Planes planes = scene.planar(5, 3);
+            byte[] expected = new byte[WIDTH * HEIGHT];
+            EdgeKernels.rgbaToGray(toRgba(planes, WIDTH, HEIGHT, null), expected, WIDTH, HEIGHT);
+            assertArrayEquals(scene.name, expected, toGray(planes, WIDTH, HEIGHT));
+        }
+    }
+
+    @Test
+    public void packedFramesMatchPlaneConversion() {
+        YuvConverter converter = new YuvConverter();
+        for (Scene scene : SyntheticScenes.all(WIDTH, HEIGHT)) {
+            byte[] expected = toGray(scene.planar(0, 0), WIDTH, HEIGHT);
+            byte[] gray = new byte[WIDTH * HEIGHT];
+            converter.packedToGray(scene.packed(false), false, WIDTH, HEIGHT, gray);
+            assertArrayEquals(scene.name + " I420", expected, gray);
+            converter.packedToGray(scene.packed(true), true, WIDTH, HEIGHT, gray);
+            assertArrayEquals(scene.name + " NV21", expected, gray);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.flam.edgedetector.server;
+
+import com.flam.edgedetector.BlurMode;
+import com.flam.edgedetector.EdgeDetector;
+import com.flam.edgedetector.EdgeKernels;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless edge detection server. Clients stream frames over TCP using
+ * {@link FrameProtocol}; a fixed pool of workers, each with its own
+ * {@link EdgeDetector}, serves all streams.
+ *
+ * Fairness: a stream with pending frames sits on a FIFO ready queue at most
+ * once, and a worker processes one frame per turn before requeueing it, so
+ * N busy streams are served round-robin regardless of how fast each sends.
+ */
+public class EdgeServer {
+    private static final Logger LOG = Logger.getLogger("EdgeServer");
+
+    public static final int DEFAULT_PORT = 9210;
+    public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+    private final int port;
+    private final int workerCount;
+    private final int queueCapacity;
+    private final int threshold;
+    private final BlurMode blurMode;
+
+    private final LinkedBlockingQueue<StreamSession> readyQueue = new LinkedBlockingQueue<>();
+    private final Set<StreamSession> sessions = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running = false;
+    private int nextSessionId = 0;
+
+    private final StreamSession.Scheduler scheduler = new StreamSession.Scheduler() {
+        @Override
+        public void schedule(StreamSession session) {
+            readyQueue.offer(session);
+        }
+
+        @Override
+        public void closed(StreamSession session) {
+            if (sessions.remove(session)) {
+                LOG.fine("Stream " + session.getId() + " closed: received " + session.framesReceived.get()
+                        + ", processed " + session.framesProcessed.get()
+                        + ", dropped " + session.framesDropped.get());
+            }
+        }
+    };
+
+    /**
+     * @param port          TCP port, 0 for an ephemeral port
+     * @param workerCount   Processing threads shared by all streams
+     * @param queueCapacity Frames buffered per stream before the oldest is dropped
+     * @param threshold     Sobel threshold
+     * @param blurMode      Smoothing applied before Sobel
+     */
+    public EdgeServer(int port, int workerCount, int queueCapacity, int threshold, BlurMode blurMode) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workerCount and queueCapacity must be positive");
+        }
+        this.port = port;
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.threshold = threshold;
+        this.blurMode = blurMode;
+    }
+
+    public EdgeServer(int port, int workerCount, int queueCapacity, int threshold) {
+        this(port, workerCount, queueCapacity, threshold, BlurMode.NONE);
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workerLoop, "edge-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        acceptThread = new Thread(this::acceptLoop, "edge-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOG.info("Listening on port " + getPort() + " with " + workerCount
+                + " workers, queue " + queueCapacity + " per stream");
+    }
+
+    /**
+     * Actual bound port, useful when started on port 0
+     */
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public int getStreamCount() {
+        return sessions.size();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (StreamSession session : new ArrayList<>(sessions)) {
+            session.close();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        workers.clear();
+        LOG.info("Stopped");
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                StreamSession session = new StreamSession(nextSessionId++, socket, queueCapacity, scheduler);
+                sessions.add(session);
+                session.start();
+                LOG.fine("Stream " + session.getId() + " connected from " + socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running) {
+                    LOG.log(Level.WARNING, "Accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void workerLoop() {
+        EdgeDetector detector = new EdgeDetector(threshold, blurMode);
+        while (running) {
+            StreamSession session;
+            try {
+                session = readyQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            FrameProtocol.Request request = null;
+            try {
+                request = session.poll();
+                if (request != null) {
+                    session.respond(process(detector, request));
+                    session.recycle(request);
+                }
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Stream " + session.getId() + " processing failed", e);
+                if (request != null) {
+                    // Still answer the frame so its queue permit is released
+                    session.respond(FrameProtocol.Response.status(request, FrameProtocol.STATUS_ERROR));
+                    session.recycle(request);
+                }
+            } finally {
+                session.finishTurn();
+            }
+        }
+    }
+
+    /**
+     * Detect edges in one frame. Package-private so tests can inject failures.
+     */
+    FrameProtocol.Response process(EdgeDetector detector, FrameProtocol.Request request) {
+        int width = request.width;
+        int height = request.height;
+        byte[] edges;
+        switch (request.format) {
+            case FrameProtocol.FORMAT_GRAY8:
+                edges = detector.fromGray(request.payload, 0, width, width, height);
+                break;
+            case FrameProtocol.FORMAT_I420:
+                edges = detector.fromYuv(request.payload, false, width, height);
+                break;
+            default:
+                edges = detector.fromYuv(request.payload, true, width, height);
+                break;
+        }
+
+        // The detector reuses its buffer, so the response gets its own copy
+        byte[] payload = new byte[FrameProtocol.outputLength(request.output, width, height)];
+        if (request.output == FrameProtocol.OUTPUT_PACKED) {
+            EdgeKernels.packBits(edges, width, height, payload, 0);
+        } else {
+            System.arraycopy(edges, 0, payload, 0, payload.length);
+        }
+        return new FrameProtocol.Response(request.sequence, FrameProtocol.STATUS_OK, request.output,
+                width, height, payload);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int queue = DEFAULT_QUEUE_CAPACITY;
+        int threshold = EdgeKernels.DEFAULT_SOBEL_THRESHOLD;
+        BlurMode blurMode = BlurMode.NONE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(args[++i]);
+                    break;
+                case "--threshold":
+                    threshold = Integer.parseInt(args[++i]);
+                    break;
+                case "--blur":
+                    blurMode = BlurMode.fromName(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: EdgeServer [--port N] [--workers N] [--queue N] [--threshold N]"
+                            + " [--blur none|gaussian|binomial|box3]");
+                    System.exit(2);
+            }
+        }
+
+        EdgeServer server = new EdgeServer(port, workers, queue, threshold, blurMode);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        Thread.currentThread().join();
+    }
+}
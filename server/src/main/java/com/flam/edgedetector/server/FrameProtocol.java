@@ -0,0 +1,241 @@
+package com.flam.edgedetector.server;
+
+import com.flam.edgedetector.EdgeKernels;
+import com.flam.edgedetector.YuvConverter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Wire format between edge server and clients. All integers big-endian.
+ * <pre>
+ * Request:  int32 magic "EDGQ" | u8 format | u8 output | u16 reserved
+ *           | int32 sequence | int32 width | int32 height | int32 length | payload
+ * Response: int32 magic "EDGR" | u8 status | u8 output | u16 reserved
+ *           | int32 sequence | int32 width | int32 height | int32 length | payload
+ * </pre>
+ * Request payloads are GRAY8 (width * height), or tightly packed I420 / NV21.
+ * Response payloads are a GRAY8 edge map (0 or 255) or a packed 1-bit map,
+ * rows of ceil(width / 8) bytes, most significant bit first. Every request
+ * gets exactly one response, matched by sequence number: DROPPED and ERROR
+ * replies for later frames may overtake the OK reply of a frame still being
+ * processed.
+ */
+public final class FrameProtocol {
+    public static final int REQUEST_MAGIC = 0x45444751;  // "EDGQ"
+    public static final int RESPONSE_MAGIC = 0x45444752; // "EDGR"
+
+    public static final int FORMAT_GRAY8 = 1;
+    public static final int FORMAT_I420 = 2;
+    public static final int FORMAT_NV21 = 3;
+
+    public static final int OUTPUT_GRAY8 = 0;
+    public static final int OUTPUT_PACKED = 1;
+
+    public static final int STATUS_OK = 0;
+    /** The frame was discarded because the stream's queue was full */
+    public static final int STATUS_DROPPED = 1;
+    /** The frame was malformed (bad format, size or payload length) or failed to process */
+    public static final int STATUS_ERROR = 2;
+
+    public static final int MAX_DIMENSION = 8192;
+
+    private FrameProtocol() {
+    }
+
+    /**
+     * Decoded request
+     */
+    public static final class Request {
+        public final int sequence;
+        public final int format;
+        public final int output;
+        public final int width;
+        public final int height;
+        public final byte[] payload;
+        /** Set if the header was well-formed but the frame cannot be processed */
+        public final String error;
+        /** When the request was fully read, for queueing statistics */
+        public final long receivedNanos;
+
+        Request(int sequence, int format, int output, int width, int height,
+                byte[] payload, String error) {
+            this.sequence = sequence;
+            this.format = format;
+            this.output = output;
+            this.width = width;
+            this.height = height;
+            this.payload = payload;
+            this.error = error;
+            this.receivedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Decoded response
+     */
+    public static final class Response {
+        public final int sequence;
+        public final int status;
+        public final int output;
+        public final int width;
+        public final int height;
+        public final byte[] payload;
+
+        public Response(int sequence, int status, int output, int width, int height, byte[] payload) {
+            this.sequence = sequence;
+            this.status = status;
+            this.output = output;
+            this.width = width;
+            this.height = height;
+            this.payload = payload;
+        }
+
+        static Response status(Request request, int status) {
+            return new Response(request.sequence, status, request.output,
+                    request.width, request.height, new byte[0]);
+        }
+    }
+
+    /**
+     * Expected payload length of a request, or -1 for an unknown format
+     */
+    public static int payloadLength(int format, int width, int height) {
+        switch (format) {
+            case FORMAT_GRAY8:
+                return width * height;
+            case FORMAT_I420:
+            case FORMAT_NV21:
+                return YuvConverter.packedFrameSize(width, height);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Response payload length for an output mode
+     */
+    public static int outputLength(int output, int width, int height) {
+        return output == OUTPUT_PACKED ? EdgeKernels.packedRowBytes(width) * height : width * height;
+    }
+
+    /**
+     * Read one request. The header is validated before any payload memory is
+     * touched: a request with a bad size, format, output or payload length
+     * has its payload skipped and comes back with {@link Request#error} set
+     * and an empty payload.
+     *
+     * @param reuse Payload buffer to fill if it has the right length, may be null
+     * @return the request, or null on a clean end of stream between requests
+     * @throws IOException on I/O errors or a malformed header that makes the
+     *                     stream unrecoverable
+     */
+    public static Request readRequest(DataInputStream in, byte[] reuse) throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (magic != REQUEST_MAGIC) {
+            throw new IOException("Bad request magic 0x" + Integer.toHexString(magic));
+        }
+        int format = in.readUnsignedByte();
+        int output = in.readUnsignedByte();
+        in.readUnsignedShort();
+        int sequence = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        int length = in.readInt();
+
+        int maxLength = payloadLength(FORMAT_I420, MAX_DIMENSION, MAX_DIMENSION);
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Bad payload length " + length);
+        }
+
+        String error = null;
+        if (width <= 0 || height <= 0 || width > MAX_DIMENSION || height > MAX_DIMENSION) {
+            error = "Bad frame size " + width + "x" + height;
+        } else if (payloadLength(format, width, height) < 0) {
+            error = "Unknown format " + format;
+        } else if (payloadLength(format, width, height) != length) {
+            error = "Payload length " + length + " does not match " + width + "x" + height;
+        } else if (output != OUTPUT_GRAY8 && output != OUTPUT_PACKED) {
+            error = "Unknown output " + output;
+        }
+        if (error != null) {
+            skipFully(in, length);
+            return new Request(sequence, format, output, width, height, new byte[0], error);
+        }
+
+        byte[] payload = reuse != null && reuse.length == length ? reuse : new byte[length];
+        in.readFully(payload);
+        return new Request(sequence, format, output, width, height, payload, null);
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                // skipBytes returns 0 both at end of stream and when nothing is buffered
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated request payload");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    public static void writeRequest(DataOutputStream out, int sequence, int format, int output,
+                                    int width, int height, byte[] payload) throws IOException {
+        out.writeInt(REQUEST_MAGIC);
+        out.writeByte(format);
+        out.writeByte(output);
+        out.writeShort(0);
+        out.writeInt(sequence);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    public static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeInt(RESPONSE_MAGIC);
+        out.writeByte(response.status);
+        out.writeByte(response.output);
+        out.writeShort(0);
+        out.writeInt(response.sequence);
+        out.writeInt(response.width);
+        out.writeInt(response.height);
+        out.writeInt(response.payload.length);
+        out.write(response.payload);
+    }
+
+    /**
+     * Read one response
+     *
+     * @param reuse Payload buffer to fill if large enough, may be null
+     */
+    public static Response readResponse(DataInputStream in, byte[] reuse) throws IOException {
+        int magic = in.readInt();
+        if (magic != RESPONSE_MAGIC) {
+            throw new IOException("Bad response magic 0x" + Integer.toHexString(magic));
+        }
+        int status = in.readUnsignedByte();
+        int output = in.readUnsignedByte();
+        in.readUnsignedShort();
+        int sequence = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > outputLength(OUTPUT_GRAY8, MAX_DIMENSION, MAX_DIMENSION)) {
+            throw new IOException("Bad payload length " + length);
+        }
+        byte[] payload = reuse != null && reuse.length == length ? reuse : new byte[length];
+        in.readFully(payload);
+        return new Response(sequence, status, output, width, height, payload);
+    }
+}
@@ -0,0 +1,304 @@
+package com.flam.edgedetector.server;
+
+import com.flam.edgedetector.EdgeKernels;
+import com.flam.edgedetector.YuvConverter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Localhost load generator for {@link EdgeServer}. For each stream count it
+ * opens that many connections, each keeping a fixed number of synthetic
+ * I420 frames in flight (closed loop), and reports aggregate throughput and
+ * end-to-end latency percentiles measured after a warm-up period.
+ *
+ * Usage: LoadTest [--host H --port N] [--streams 1,2,4,8] [--seconds N]
+ *                 [--warmup N] [--size WxH] [--depth N] [--packed]
+ *                 [--workers N] [--queue N]
+ * Without --port an in-process server is started on an ephemeral port.
+ */
+public class LoadTest {
+    private static final int FRAME_VARIANTS = 8;
+
+    private final String host;
+    private final int port;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int output;
+    private final byte[][] frames;
+
+    LoadTest(String host, int port, int width, int height, int depth, int output) {
+        this.host = host;
+        this.port = port;
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.output = output;
+        this.frames = new byte[FRAME_VARIANTS][];
+        for (int i = 0; i < FRAME_VARIANTS; i++) {
+            frames[i] = syntheticFrame(width, height, i * 7);
+        }
+    }
+
+    /**
+     * I420 frame with a shifted grid of gradients and hard-edged blocks
+     */
+    static byte[] syntheticFrame(int width, int height, int shift) {
+        byte[] frame = new byte[YuvConverter.packedFrameSize(width, height)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int xs = x + shift;
+                int v = ((xs >> 5) + (y >> 5)) % 2 == 0 ? 40 : 200;
+                v += (xs * 3 + y) & 0x1F;
+                frame[y * width + x] = (byte) v;
+            }
+        }
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    /**
+     * Measurements for one stream count
+     */
+    static final class Result {
+        int streams;
+        long frames;
+        long dropped;
+        double seconds;
+        long[] latencies;
+
+        double percentileMs(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1e6;
+        }
+    }
+
+    private final class Client {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final Semaphore inFlight = new Semaphore(depth);
+        final long[] sendTimes = new long[1024];
+        volatile boolean stopping = false;
+        volatile boolean measuring = false;
+        long[] latencies = new long[4096];
+        int latencyCount = 0;
+        long frames = 0;
+        long dropped = 0;
+        IOException failure;
+
+        Client() throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        }
+
+        void send() {
+            int sequence = 0;
+            try {
+                while (!stopping) {
+                    inFlight.acquire();
+                    if (stopping) {
+                        break;
+                    }
+                    sendTimes[sequence & (sendTimes.length - 1)] = System.nanoTime();
+                    FrameProtocol.writeRequest(out, sequence, FrameProtocol.FORMAT_I420, output,
+                            width, height, LoadTest.this.frames[sequence % FRAME_VARIANTS]);
+                    out.flush();
+                    sequence++;
+                }
+                socket.shutdownOutput();
+            } catch (IOException e) {
+                if (!stopping) {
+                    failure = e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void receive() {
+            byte[] buffer = null;
+            try {
+                while (true) {
+                    FrameProtocol.Response response = FrameProtocol.readResponse(in, buffer);
+                    long latency = System.nanoTime() - sendTimes[response.sequence & (sendTimes.length - 1)];
+                    buffer = response.payload;
+                    inFlight.release();
+                    if (!measuring) {
+                        continue;
+                    }
+                    if (response.status == FrameProtocol.STATUS_OK) {
+                        frames++;
+                        if (latencyCount == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                        }
+                        latencies[latencyCount++] = latency;
+                    } else if (response.status == FrameProtocol.STATUS_DROPPED) {
+                        dropped++;
+                    } else {
+                        throw new IOException("Server rejected frame " + response.sequence);
+                    }
+                }
+            } catch (IOException e) {
+                // End of stream once the server has answered everything
+                if (!stopping) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    Result run(int streams, double warmupSeconds, double seconds) throws Exception {
+        List<Client> clients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            Client client = new Client();
+            clients.add(client);
+            threads.add(new Thread(client::send, "load-send-" + i));
+            threads.add(new Thread(client::receive, "load-recv-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        Thread.sleep((long) (warmupSeconds * 1000));
+        for (Client client : clients) {
+            client.measuring = true;
+        }
+        long start = System.nanoTime();
+        Thread.sleep((long) (seconds * 1000));
+        for (Client client : clients) {
+            client.measuring = false;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (Client client : clients) {
+            client.stopping = true;
+            client.inFlight.release(depth);
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        Result result = new Result();
+        result.streams = streams;
+        result.seconds = elapsed / 1e9;
+        int total = 0;
+        for (Client client : clients) {
+            client.socket.close();
+            if (client.failure != null) {
+                throw client.failure;
+            }
+            result.frames += client.frames;
+            result.dropped += client.dropped;
+            total += client.latencyCount;
+        }
+        result.latencies = new long[total];
+        int offset = 0;
+        for (Client client : clients) {
+            System.arraycopy(client.latencies, 0, result.latencies, offset, client.latencyCount);
+            offset += client.latencyCount;
+        }
+        Arrays.sort(result.latencies);
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = -1;
+        int[] streamCounts = {1, 2, 4, 8, 16, 32};
+        double seconds = 5;
+        double warmup = 1;
+        int width = 640;
+        int height = 480;
+        int depth = 2;
+        int output = FrameProtocol.OUTPUT_GRAY8;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int queue = EdgeServer.DEFAULT_QUEUE_CAPACITY;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--streams":
+                    String[] parts = args[++i].split(",");
+                    streamCounts = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) {
+                        streamCounts[p] = Integer.parseInt(parts[p].trim());
+                    }
+                    break;
+                case "--seconds":
+                    seconds = Double.parseDouble(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Double.parseDouble(args[++i]);
+                    break;
+                case "--size":
+                    String[] size = args[++i].split("x");
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--packed":
+                    output = FrameProtocol.OUTPUT_PACKED;
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        EdgeServer server = null;
+        if (port < 0) {
+            server = new EdgeServer(0, workers, queue, EdgeKernels.DEFAULT_SOBEL_THRESHOLD);
+            server.start();
+            port = server.getPort();
+        }
+
+        System.out.printf(Locale.US, "%dx%d I420, %d in flight per stream, %s output%s%n",
+                width, height, depth, output == FrameProtocol.OUTPUT_PACKED ? "packed" : "gray",
+                server != null ? ", in-process server with " + workers + " workers, queue " + queue : "");
+        System.out.println("streams  frames/s  per-stream  p50 ms  p95 ms  p99 ms  max ms  dropped");
+        LoadTest test = new LoadTest(host, port, width, height, depth, output);
+        try {
+            for (int streams : streamCounts) {
+                Result r = test.run(streams, warmup, seconds);
+                System.out.printf(Locale.US, "%7d  %8.1f  %10.1f  %6.2f  %6.2f  %6.2f  %6.2f  %7d%n",
+                        r.streams, r.frames / r.seconds, r.frames / r.seconds / r.streams,
+                        r.percentileMs(50), r.percentileMs(95), r.percentileMs(99),
+                        r.percentileMs(100), r.dropped);
+            }
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.flam.edgedetector.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One client connection. A reader thread parses requests into a bounded
+ * per-stream queue; when the queue is full the oldest frame is answered as
+ * {@link FrameProtocol#STATUS_DROPPED} so a slow stream sheds stale frames
+ * instead of growing memory. A writer thread sends responses in the order
+ * they are queued.
+ *
+ * The reader also stops pulling from the socket while too many responses
+ * are outstanding, so a client that sends faster than it reads gets TCP
+ * backpressure rather than an unbounded response backlog.
+ *
+ * Request payload buffers are recycled per session: the outstanding
+ * response limit also bounds how many payloads are live, so a steady stream
+ * stops allocating once its first few frames have been read.
+ *
+ * Workers never hold a session for more than one frame: the session is put
+ * on the server's ready queue when it has work and is not already queued or
+ * being processed, which gives round-robin fairness between streams.
+ */
+final class StreamSession {
+    private static final Logger LOG = Logger.getLogger("EdgeServer");
+
+    /** Response queue entry that marks the writer's end of stream */
+    private static final FrameProtocol.Response CLOSE = new FrameProtocol.Response(0, 0, 0, 0, 0, null);
+
+    interface Scheduler {
+        void schedule(StreamSession session);
+
+        void closed(StreamSession session);
+    }
+
+    private final int id;
+    private final Socket socket;
+    private final int queueCapacity;
+    private final Scheduler scheduler;
+
+    // Guarded by this
+    private final ArrayDeque<FrameProtocol.Request> pending = new ArrayDeque<>();
+    private boolean scheduled = false;
+    private boolean closed = false;
+    private final ArrayDeque<byte[]> freePayloads = new ArrayDeque<>();
+
+    private final Semaphore outstanding;
+    private final LinkedBlockingQueue<FrameProtocol.Response> responses = new LinkedBlockingQueue<>();
+
+    final AtomicLong framesReceived = new AtomicLong();
+    final AtomicLong framesProcessed = new AtomicLong();
+    final AtomicLong framesDropped = new AtomicLong();
+
+    StreamSession(int id, Socket socket, int queueCapacity, Scheduler scheduler) {
+        this.id = id;
+        this.socket = socket;
+        this.queueCapacity = queueCapacity;
+        this.scheduler = scheduler;
+        // Queued frames plus one being processed plus one being written
+        this.outstanding = new Semaphore(queueCapacity + 2);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    void start() {
+        Thread reader = new Thread(this::readLoop, "stream-" + id + "-reader");
+        Thread writer = new Thread(this::writeLoop, "stream-" + id + "-writer");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Take the next frame for a worker that picked this session off the
+     * ready queue. Must be followed by {@link #finishTurn()}.
+     */
+    synchronized FrameProtocol.Request poll() {
+        return pending.pollFirst();
+    }
+
+    /**
+     * End a worker's turn, requeueing the session if more frames are waiting
+     */
+    void finishTurn() {
+        boolean requeue;
+        synchronized (this) {
+            requeue = !closed && !pending.isEmpty();
+            scheduled = requeue;
+        }
+        if (requeue) {
+            scheduler.schedule(this);
+        }
+    }
+
+    /**
+     * Return a request's payload once it is no longer read, for reuse by a
+     * later request of the same size
+     */
+    void recycle(FrameProtocol.Request request) {
+        if (request.payload.length == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (freePayloads.size() < queueCapacity + 2) {
+                freePayloads.addLast(request.payload);
+            }
+        }
+    }
+
+    private synchronized byte[] takePayload() {
+        return freePayloads.pollFirst();
+    }
+
+    void respond(FrameProtocol.Response response) {
+        if (response.status == FrameProtocol.STATUS_OK) {
+            framesProcessed.incrementAndGet();
+        }
+        responses.offer(response);
+    }
+
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            freePayloads.clear();
+        }
+        // The writer flushes what is already queued, then closes the socket
+        responses.offer(CLOSE);
+        scheduler.closed(this);
+    }
+
+    private void readLoop() {
+        // Not closed here: closing a socket stream closes the socket, which
+        // is left to the writer once it has sent everything
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            while (true) {
+                outstanding.acquire();
+                // A buffer of the wrong size after a resolution change is
+                // simply dropped and replaced
+                FrameProtocol.Request request = FrameProtocol.readRequest(in, takePayload());
+                if (request == null) {
+                    break;
+                }
+                framesReceived.incrementAndGet();
+                if (request.error != null) {
+                    LOG.warning("Stream " + id + " frame " + request.sequence + ": " + request.error);
+                    respond(FrameProtocol.Response.status(request, FrameProtocol.STATUS_ERROR));
+                    continue;
+                }
+                enqueue(request);
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                LOG.log(Level.FINE, "Stream " + id + " read failed", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Let the writer drain what workers still produce before closing
+        awaitDrain();
+        close();
+    }
+
+    private void enqueue(FrameProtocol.Request request) {
+        FrameProtocol.Request dropped = null;
+        boolean schedule = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (pending.size() >= queueCapacity) {
+                dropped = pending.pollFirst();
+            }
+            pending.addLast(request);
+            if (!scheduled) {
+                scheduled = true;
+                schedule = true;
+            }
+        }
+        if (dropped != null) {
+            framesDropped.incrementAndGet();
+            respond(FrameProtocol.Response.status(dropped, FrameProtocol.STATUS_DROPPED));
+            recycle(dropped);
+        }
+        if (schedule) {
+            scheduler.schedule(this);
+        }
+    }
+
+    private void awaitDrain() {
+        while (true) {
+            synchronized (this) {
+                if (closed || (pending.isEmpty() && !scheduled)) {
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+            while (true) {
+                FrameProtocol.Response response = responses.take();
+                if (response == CLOSE) {
+                    break;
+                }
+                FrameProtocol.writeResponse(out, response);
+                // Batch writes while more responses are ready
+                if (responses.isEmpty()) {
+                    out.flush();
+                }
+                outstanding.release();
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                LOG.log(Level.FINE, "Stream " + id + " write failed", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            // Unblock a reader waiting for response credit
+            outstanding.release(queueCapacity + 2);
+            close();
+        }
+    }
+}
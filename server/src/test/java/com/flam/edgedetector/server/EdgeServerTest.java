@@ -0,0 +1,301 @@
+package com.flam.edgedetector.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.flam.edgedetector.BlurMode;
+import com.flam.edgedetector.EdgeDetector;
+import com.flam.edgedetector.EdgeKernels;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback round trips through {@link EdgeServer} and {@link StreamSession}
+ */
+public class EdgeServerTest {
+    static final int WIDTH = 64;
+    static final int HEIGHT = 48;
+    static final int THRESHOLD = EdgeKernels.DEFAULT_SOBEL_THRESHOLD;
+    static final int TIMEOUT_MS = 10_000;
+
+    private EdgeServer server;
+    private Socket client;
+
+    @After
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    static byte[] grayFrame(int shift) {
+        return Arrays.copyOf(LoadTest.syntheticFrame(WIDTH, HEIGHT, shift), WIDTH * HEIGHT);
+    }
+
+    private DataOutputStream connect(int port) throws IOException {
+        client = new Socket(InetAddress.getLoopbackAddress(), port);
+        client.setSoTimeout(TIMEOUT_MS);
+        return new DataOutputStream(client.getOutputStream());
+    }
+
+    private DataInputStream responses() throws IOException {
+        return new DataInputStream(client.getInputStream());
+    }
+
+    private DataOutputStream startServer(int queueCapacity) throws IOException {
+        server = new EdgeServer(0, 1, queueCapacity, THRESHOLD);
+        server.start();
+        return connect(server.getPort());
+    }
+
+    @Test
+    public void grayFrameRoundTrip() throws IOException {
+        DataOutputStream out = startServer(EdgeServer.DEFAULT_QUEUE_CAPACITY);
+        byte[] frame = grayFrame(3);
+        FrameProtocol.writeRequest(out, 7, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, frame);
+        FrameProtocol.writeRequest(out, 8, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_PACKED,
+                WIDTH, HEIGHT, frame);
+        out.flush();
+
+        byte[] edges = new EdgeDetector(THRESHOLD, BlurMode.NONE).fromGray(frame, 0, WIDTH, WIDTH, HEIGHT);
+        byte[] packed = new byte[EdgeKernels.packedRowBytes(WIDTH) * HEIGHT];
+        EdgeKernels.packBits(edges, WIDTH, HEIGHT, packed, 0);
+
+        DataInputStream in = responses();
+        FrameProtocol.Response gray = FrameProtocol.readResponse(in, null);
+        assertEquals(7, gray.sequence);
+        assertEquals(FrameProtocol.STATUS_OK, gray.status);
+        assertArrayEquals(Arrays.copyOf(edges, WIDTH * HEIGHT), gray.payload);
+
+        FrameProtocol.Response bits = FrameProtocol.readResponse(in, null);
+        assertEquals(8, bits.sequence);
+        assertEquals(FrameProtocol.OUTPUT_PACKED, bits.output);
+        assertArrayEquals(packed, bits.payload);
+    }
+
+    @Test
+    public void malformedHeadersAreAnsweredAndSkipped() throws IOException {
+        DataOutputStream out = startServer(EdgeServer.DEFAULT_QUEUE_CAPACITY);
+        // Bad size, payload length that matches nothing, unknown format and
+        // unknown output; each payload must be skipped to reach the next header
+        FrameProtocol.writeRequest(out, 1, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                0, HEIGHT, new byte[100]);
+        FrameProtocol.writeRequest(out, 2, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, new byte[WIDTH * HEIGHT - 1]);
+        FrameProtocol.writeRequest(out, 3, 9, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, new byte[WIDTH * HEIGHT]);
+        FrameProtocol.writeRequest(out, 4, FrameProtocol.FORMAT_GRAY8, 5,
+                WIDTH, HEIGHT, new byte[WIDTH * HEIGHT]);
+        FrameProtocol.writeRequest(out, 5, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, grayFrame(0));
+        out.flush();
+
+        DataInputStream in = responses();
+        for (int sequence = 1; sequence <= 4; sequence++) {
+            FrameProtocol.Response response = FrameProtocol.readResponse(in, null);
+            assertEquals(sequence, response.sequence);
+            assertEquals(FrameProtocol.STATUS_ERROR, response.status);
+            assertEquals(0, response.payload.length);
+        }
+        FrameProtocol.Response valid = FrameProtocol.readResponse(in, null);
+        assertEquals(5, valid.sequence);
+        assertEquals(FrameProtocol.STATUS_OK, valid.status);
+        assertEquals(WIDTH * HEIGHT, valid.payload.length);
+    }
+
+    @Test
+    public void failingFrameIsAnsweredWithError() throws IOException {
+        server = new EdgeServer(0, 1, 1, THRESHOLD) {
+            @Override
+            FrameProtocol.Response process(EdgeDetector detector, FrameProtocol.Request request) {
+                if (request.sequence < 5) {
+                    throw new IllegalStateException("Injected failure");
+                }
+                return super.process(detector, request);
+            }
+        };
+        server.start();
+        DataOutputStream out = connect(server.getPort());
+        DataInputStream in = responses();
+
+        // More failures than the stream has response permits, so a failure
+        // that went unanswered would stall the valid frame after them
+        for (int sequence = 0; sequence <= 5; sequence++) {
+            FrameProtocol.writeRequest(out, sequence, FrameProtocol.FORMAT_GRAY8,
+                    FrameProtocol.OUTPUT_GRAY8, WIDTH, HEIGHT, grayFrame(sequence));
+            out.flush();
+            FrameProtocol.Response response = FrameProtocol.readResponse(in, null);
+            assertEquals(sequence, response.sequence);
+            assertEquals(sequence < 5 ? FrameProtocol.STATUS_ERROR : FrameProtocol.STATUS_OK,
+                    response.status);
+        }
+    }
+
+    @Test
+    public void errorReplyOvertakesFrameInProcessing() throws Exception {
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        server = new EdgeServer(0, 1, EdgeServer.DEFAULT_QUEUE_CAPACITY, THRESHOLD) {
+            @Override
+            FrameProtocol.Response process(EdgeDetector detector, FrameProtocol.Request request) {
+                processing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.process(detector, request);
+            }
+        };
+        server.start();
+        DataOutputStream out = connect(server.getPort());
+        FrameProtocol.writeRequest(out, 1, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, grayFrame(0));
+        out.flush();
+        assertTrue(processing.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        FrameProtocol.writeRequest(out, 2, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                0, HEIGHT, new byte[0]);
+        out.flush();
+
+        // Replies are matched by sequence number, not sent in request order
+        DataInputStream in = responses();
+        FrameProtocol.Response error = FrameProtocol.readResponse(in, null);
+        assertEquals(2, error.sequence);
+        assertEquals(FrameProtocol.STATUS_ERROR, error.status);
+        release.countDown();
+        FrameProtocol.Response ok = FrameProtocol.readResponse(in, null);
+        assertEquals(1, ok.sequence);
+        assertEquals(FrameProtocol.STATUS_OK, ok.status);
+    }
+
+    @Test
+    public void badMagicClosesStream() throws IOException {
+        DataOutputStream out = startServer(EdgeServer.DEFAULT_QUEUE_CAPACITY);
+        out.writeInt(0x12345678);
+        out.write(new byte[20]);
+        out.flush();
+        try {
+            FrameProtocol.readResponse(responses(), null);
+            fail("Expected the server to close the stream");
+        } catch (EOFException expected) {
+            // Unrecoverable framing error
+        }
+    }
+
+    @Test
+    public void fullQueueDropsOldestFrames() throws Exception {
+        LinkedBlockingQueue<StreamSession> ready = new LinkedBlockingQueue<>();
+        StreamSession.Scheduler scheduler = new StreamSession.Scheduler() {
+            @Override
+            public void schedule(StreamSession session) {
+                ready.add(session);
+            }
+
+            @Override
+            public void closed(StreamSession session) {
+            }
+        };
+        StreamSession session;
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            DataOutputStream out = connect(listener.getLocalPort());
+            session = new StreamSession(1, listener.accept(), 2, scheduler);
+            session.start();
+
+            // Nothing is processed until the test takes its turn, so with a
+            // queue of two every frame past the second evicts the oldest
+            for (int sequence = 0; sequence < 5; sequence++) {
+                FrameProtocol.writeRequest(out, sequence, FrameProtocol.FORMAT_GRAY8,
+                        FrameProtocol.OUTPUT_PACKED, WIDTH, HEIGHT, grayFrame(sequence));
+            }
+            out.flush();
+        }
+
+        DataInputStream in = responses();
+        for (int sequence = 0; sequence < 3; sequence++) {
+            FrameProtocol.Response response = FrameProtocol.readResponse(in, null);
+            assertEquals(sequence, response.sequence);
+            assertEquals(FrameProtocol.STATUS_DROPPED, response.status);
+        }
+        assertEquals(3, session.framesDropped.get());
+
+        assertSame(session, ready.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int sequence = 3; sequence < 5; sequence++) {
+            FrameProtocol.Request request = session.poll();
+            assertEquals(sequence, request.sequence);
+            assertArrayEquals(grayFrame(sequence), request.payload);
+            session.respond(new FrameProtocol.Response(request.sequence, FrameProtocol.STATUS_OK,
+                    request.output, request.width, request.height, new byte[0]));
+            session.recycle(request);
+        }
+        session.finishTurn();
+
+        for (int sequence = 3; sequence < 5; sequence++) {
+            FrameProtocol.Response response = FrameProtocol.readResponse(in, null);
+            assertEquals(sequence, response.sequence);
+            assertEquals(FrameProtocol.STATUS_OK, response.status);
+        }
+    }
+
+    @Test
+    public void readRequestReusesMatchingBuffer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] frame = grayFrame(1);
+        FrameProtocol.writeRequest(out, 1, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, frame);
+        FrameProtocol.writeRequest(out, 2, FrameProtocol.FORMAT_GRAY8, FrameProtocol.OUTPUT_GRAY8,
+                WIDTH, HEIGHT, frame);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        byte[] reuse = new byte[WIDTH * HEIGHT];
+        assertSame(reuse, FrameProtocol.readRequest(in, reuse).payload);
+        FrameProtocol.Request resized = FrameProtocol.readRequest(in, new byte[16]);
+        assertArrayEquals(frame, resized.payload);
+    }
+
+    @Test
+    public void oversizedPayloadOfBadHeaderIsNotAllocated() throws IOException {
+        // Header claims a near-maximum payload for an invalid size; only the
+        // header is present, so reading must fail while skipping rather than
+        // allocate the claimed length up front
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FrameProtocol.REQUEST_MAGIC);
+        out.writeByte(FrameProtocol.FORMAT_I420);
+        out.writeByte(FrameProtocol.OUTPUT_GRAY8);
+        out.writeShort(0);
+        out.writeInt(1);
+        out.writeInt(-1);
+        out.writeInt(FrameProtocol.MAX_DIMENSION);
+        out.writeInt(FrameProtocol.payloadLength(FrameProtocol.FORMAT_I420,
+                FrameProtocol.MAX_DIMENSION, FrameProtocol.MAX_DIMENSION));
+        try {
+            FrameProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+            fail("Expected EOFException");
+        } catch (EOFException expected) {
+            // Truncated while skipping
+        }
+    }
+}
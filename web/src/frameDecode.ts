@@ -0,0 +1,51 @@
+/**
+ * Binary edge map decoding shared by the decode worker and the viewer's
+ * main-thread fallback
+ */
+
+import { BinaryFrameFormat } from './types.js';
+
+export const OPAQUE_BLACK = 0xff000000;
+export const OPAQUE_WHITE = 0xffffffff;
+
+/**
+ * Expand an edge map to RGBA, writing whole pixels through a 32-bit view
+ * (little-endian: 0xAABBGGRR)
+ */
+export function decodeToRgba(format: BinaryFrameFormat, width: number, height: number,
+                             data: ArrayBuffer, rgba: ArrayBuffer): void {
+    const src = new Uint8Array(data);
+    const dst = new Uint32Array(rgba);
+
+    if (format === 'gray8') {
+        if (src.length < width * height) {
+            throw new Error(`GRAY8 frame has ${src.length} bytes, expected ${width * height}`);
+        }
+        for (let i = 0; i < width * height; i++) {
+            const g = src[i];
+            dst[i] = OPAQUE_BLACK | (g << 16) | (g << 8) | g;
+        }
+        return;
+    }
+
+    const rowBytes = (width + 7) >> 3;
+    if (src.length < rowBytes * height) {
+        throw new Error(`Packed frame has ${src.length} bytes, expected ${rowBytes * height}`);
+    }
+    for (let y = 0; y < height; y++) {
+        let out = y * width;
+        const rowStart = y * rowBytes;
+        for (let b = 0; b < rowBytes; b++) {
+            const bits = src[rowStart + b];
+            const count = Math.min(8, width - (b << 3));
+            if (bits === 0) {
+                dst.fill(OPAQUE_BLACK, out, out + count);
+                out += count;
+                continue;
+            }
+            for (let i = 0; i < count; i++) {
+                dst[out++] = (bits & (0x80 >> i)) !== 0 ? OPAQUE_WHITE : OPAQUE_BLACK;
+            }
+        }
+    }
+}
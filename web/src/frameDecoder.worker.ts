@@ -0,0 +1,81 @@
+/**
+ * Frame decode worker - turns binary edge maps into displayable pixels
+ * off the main thread
+ */
+
+import { decodeToRgba } from './frameDecode.js';
+import { DecodeRequest, DecodeResult } from './types.js';
+
+// The project compiles against the DOM lib, so describe the worker scope
+// this file relies on instead of pulling in the WebWorker lib
+interface DecoderScope {
+    onmessage: ((event: MessageEvent<DecodeRequest>) => void) | null;
+    postMessage(message: DecodeResult, transfer?: Transferable[]): void;
+}
+
+const scope = self as unknown as DecoderScope;
+
+// Painting into an OffscreenCanvas and transferring the ImageBitmap avoids
+// copying pixels back to the main thread; older browsers get raw RGBA
+const canUseOffscreen = typeof OffscreenCanvas !== 'undefined';
+let offscreen: OffscreenCanvas | null = null;
+let offscreenContext: OffscreenCanvasRenderingContext2D | null = null;
+
+function paintToBitmap(imageData: ImageData): ImageBitmap | null {
+    if (!offscreen) {
+        offscreen = new OffscreenCanvas(imageData.width, imageData.height);
+        offscreenContext = offscreen.getContext('2d');
+    } else if (offscreen.width !== imageData.width || offscreen.height !== imageData.height) {
+        offscreen.width = imageData.width;
+        offscreen.height = imageData.height;
+    }
+    if (!offscreenContext) {
+        return null;
+    }
+    offscreenContext.putImageData(imageData, 0, 0);
+    return offscreen.transferToImageBitmap();
+}
+
+// RGBA buffers handed back by the main thread after drawing
+const recycled: ArrayBuffer[] = [];
+
+function takeBuffer(byteLength: number): ArrayBuffer {
+    const index = recycled.findIndex((buffer) => buffer.byteLength === byteLength);
+    if (index >= 0) {
+        return recycled.splice(index, 1)[0];
+    }
+    return new ArrayBuffer(byteLength);
+}
+
+scope.onmessage = (event: MessageEvent<DecodeRequest>) => {
+    const request = event.data;
+    if (request.type === 'recycle') {
+        // A few spare buffers cover the frames in flight
+        if (recycled.length < 4) {
+            recycled.push(request.buffer);
+        }
+        return;
+    }
+
+    const { id, format, width, height, data } = request;
+    const start = performance.now();
+    try {
+        const rgba = takeBuffer(width * height * 4);
+        decodeToRgba(format, width, height, data, rgba);
+        const imageData = new ImageData(new Uint8ClampedArray(rgba), width, height);
+
+        const bitmap = canUseOffscreen ? paintToBitmap(imageData) : null;
+        if (bitmap) {
+            // Pixels now live in the bitmap, so the buffer is free again
+            recycled.push(rgba);
+            scope.postMessage({ type: 'bitmap', id, bitmap, decodeTimeMs: performance.now() - start }, [bitmap]);
+        } else {
+            scope.postMessage(
+                { type: 'pixels', id, width, height, rgba, decodeTimeMs: performance.now() - start },
+                [rgba]
+            );
+        }
+    } catch (error) {
+        scope.postMessage({ type: 'error', id, message: error instanceof Error ? error.message : String(error) });
+    }
+};
@@ -1,40 +1,95 @@
 /**
  * Frame Viewer - Displays processed frames from Edge Detector app
+ *
+ * Binary edge maps are decoded in a Web Worker and drawn to a canvas at
+ * most once per animation frame. Frames that arrive faster than the
+ * display can show them are dropped, newest wins.
  */
 
-import { FrameStats, ProcessedFrame, ViewerConfig } from './types.js';
+import { decodeToRgba } from './frameDecode.js';
+import {
+    BinaryFrame,
+    DecodeRequest,
+    DecodeResult,
+    DisplayStats,
+    FrameStats,
+    ProcessedFrame,
+    ViewerConfig
+} from './types.js';
+
+// A decoded frame waiting for the next animation frame
+interface ReadyFrame {
+    source: ImageBitmap | ImageData;
+    stats?: FrameStats;
+}
+
+const STATS_INTERVAL_MS = 500;
 
 export class FrameViewer {
     private container: HTMLElement;
-    private imageElement: HTMLImageElement;
+    private canvas: HTMLCanvasElement;
+    private context: CanvasRenderingContext2D;
     private statsElement: HTMLDivElement;
+    private statsFields = new Map<string, HTMLElement>();
     private config: ViewerConfig;
     private currentFrame: ProcessedFrame | null = null;
 
+    private worker: Worker | null = null;
+    private workerBusy = false;
+    private pendingFrame: BinaryFrame | null = null;
+    private readyFrame: ReadyFrame | null = null;
+    private inFlightStats: FrameStats | undefined;
+    private nextId = 0;
+    private animationHandle = 0;
+    private lastStats: FrameStats | null = null;
+
+    private received = 0;
+    private displayed = 0;
+    private dropped = 0;
+    private decodeTimeMs = 0;
+    private windowStart = performance.now();
+    private windowReceived = 0;
+    private windowDisplayed = 0;
+    private displayStats: DisplayStats = {
+        receivedFps: 0,
+        displayedFps: 0,
+        received: 0,
+        displayed: 0,
+        dropped: 0,
+        decodeTimeMs: 0
+    };
+
     constructor(config: ViewerConfig) {
         this.config = config;
-        
+
         const containerElement = document.getElementById(config.containerId);
         if (!containerElement) {
             throw new Error(`Container with id "${config.containerId}" not found`);
         }
         this.container = containerElement;
-        
-        this.imageElement = this.createImageElement();
+
+        this.canvas = this.createCanvasElement();
+        const context = this.canvas.getContext('2d');
+        if (!context) {
+            throw new Error('2D canvas context not available');
+        }
+        this.context = context;
         this.statsElement = this.createStatsElement();
-        
+        this.worker = this.createWorker();
+
         this.setupDOM();
+        this.animationHandle = requestAnimationFrame(this.onAnimationFrame);
     }
 
-    private createImageElement(): HTMLImageElement {
-        const img = document.createElement('img');
-        img.className = 'frame-image';
-        img.alt = 'Processed frame';
-        img.style.maxWidth = '100%';
-        img.style.height = 'auto';
-        img.style.border = '2px solid #333';
-        img.style.borderRadius = '8px';
-        return img;
+    private createCanvasElement(): HTMLCanvasElement {
+        const canvas = document.createElement('canvas');
+        canvas.className = 'frame-canvas';
+        canvas.style.maxWidth = '100%';
+        canvas.style.height = 'auto';
+        canvas.style.border = '2px solid #333';
+        canvas.style.borderRadius = '8px';
+        canvas.style.backgroundColor = '#000';
+        return canvas;
     }
 
     private createStatsElement(): HTMLDivElement {
@@ -45,49 +100,253 @@ export class FrameViewer {
         div.style.backgroundColor = '#f5f5f5';
         div.style.borderRadius = '8px';
         div.style.fontFamily = 'monospace';
+
+        const title = document.createElement('h3');
+        title.style.marginTop = '0';
+        title.style.color = '#333';
+        title.textContent = 'Frame Statistics';
+        div.appendChild(title);
+
+        const grid = document.createElement('div');
+        grid.style.display = 'grid';
+        grid.style.gridTemplateColumns = '1fr 1fr';
+        grid.style.gap = '10px';
+        div.appendChild(grid);
+
+        // Built once; updates only touch the value nodes' text
+        const fields: Array<[string, string]> = [
+            ['fps', 'Source FPS'],
+            ['resolution', 'Resolution'],
+            ['received', 'Received FPS'],
+            ['displayed', 'Displayed FPS'],
+            ['dropped', 'Dropped'],
+            ['decode', 'Decode Time'],
+            ['processing', 'Processing Time']
+        ];
+        for (const [key, label] of fields) {
+            const cell = document.createElement('div');
+            const name = document.createElement('strong');
+            name.textContent = `${label}: `;
+            const value = document.createElement('span');
+            value.textContent = '-';
+            cell.appendChild(name);
+            cell.appendChild(value);
+            grid.appendChild(cell);
+            this.statsFields.set(key, value);
+        }
         return div;
     }
 
+    /**
+     * Module worker next to this file; null where workers are unavailable
+     * (e.g. pages opened from file://), in which case frames are decoded
+     * on the main thread
+     */
+    private createWorker(): Worker | null {
+        try {
+            const worker = new Worker(new URL('./frameDecoder.worker.js', import.meta.url), { type: 'module' });
+            worker.onmessage = (event: MessageEvent<DecodeResult>) => this.onDecoded(event.data);
+            worker.onerror = (event: ErrorEvent) => {
+                console.warn('Decode worker failed, decoding on the main thread:', event.message);
+                this.worker = null;
+                this.workerBusy = false;
+                this.dispatchPending();
+            };
+            return worker;
+        } catch (error) {
+            console.warn('Decode worker unavailable, decoding on the main thread:', error);
+            return null;
+        }
+    }
+
     private setupDOM(): void {
-        this.container.appendChild(this.imageElement);
+        this.container.appendChild(this.canvas);
         if (this.config.showStats) {
             this.container.appendChild(this.statsElement);
         }
     }
 
     /**
-     * Update the viewer with a new processed frame
+     * Queue a binary edge map for display. The frame's buffer is
+     * transferred to the decode worker and must not be reused by the caller.
      */
-    public updateFrame(frame: ProcessedFrame): void {
-        this.currentFrame = frame;
-        this.imageElement.src = frame.imageData;
-        
+    public pushFrame(frame: BinaryFrame): void {
+        this.received++;
+        this.windowReceived++;
+        if (this.pendingFrame) {
+            // Not decoded yet and already superseded
+            this.dropped++;
+        }
+        this.pendingFrame = frame;
+        this.dispatchPending();
+    }
+
+    private dispatchPending(): void {
+        if (this.workerBusy || !this.pendingFrame) {
+            return;
+        }
+        if (!this.worker) {
+            // Decoded in the next animation frame, so only the newest is paid for
+            return;
+        }
+        const frame = this.pendingFrame;
+        this.pendingFrame = null;
+        this.workerBusy = true;
+        this.inFlightStats = frame.stats;
+        const request: DecodeRequest = {
+            type: 'decode',
+            id: this.nextId++,
+            format: frame.format,
+            width: frame.width,
+            height: frame.height,
+            data: frame.data
+        };
+        this.worker.postMessage(request, [frame.data]);
+    }
+
+    private decodeOnMainThread(frame: BinaryFrame): void {
+        const start = performance.now();
+        try {
+            const rgba = new ArrayBuffer(frame.width * frame.height * 4);
+            decodeToRgba(frame.format, frame.width, frame.height, frame.data, rgba);
+            this.decodeTimeMs = performance.now() - start;
+            this.setReady({
+                source: new ImageData(new Uint8ClampedArray(rgba), frame.width, frame.height),
+                stats: frame.stats
+            });
+        } catch (error) {
+            console.error('Failed to decode frame:', error);
+        }
+    }
+
+    private onDecoded(result: DecodeResult): void {
+        this.workerBusy = false;
+        const stats = this.inFlightStats;
+        if (result.type === 'error') {
+            console.error('Failed to decode frame:', result.message);
+        } else {
+            this.decodeTimeMs = result.decodeTimeMs;
+            const source = result.type === 'bitmap'
+                ? result.bitmap
+                : new ImageData(new Uint8ClampedArray(result.rgba), result.width, result.height);
+            this.setReady({ source, stats });
+        }
+        this.dispatchPending();
+    }
+
+    private setReady(frame: ReadyFrame): void {
+        if (this.readyFrame) {
+            // Decoded but never shown
+            this.dropped++;
+            this.release(this.readyFrame);
+        }
+        this.readyFrame = frame;
+    }
+
+    private release(frame: ReadyFrame): void {
+        if (frame.source instanceof ImageData) {
+            if (this.worker) {
+                const buffer = frame.source.data.buffer as ArrayBuffer;
+                const request: DecodeRequest = { type: 'recycle', buffer };
+                this.worker.postMessage(request, [buffer]);
+            }
+        } else {
+            frame.source.close();
+        }
+    }
+
+    private onAnimationFrame = (now: number): void => {
+        if (!this.worker && this.pendingFrame) {
+            const pending = this.pendingFrame;
+            this.pendingFrame = null;
+            this.decodeOnMainThread(pending);
+        }
+        const frame = this.readyFrame;
+        if (frame) {
+            this.readyFrame = null;
+            this.present(frame);
+        }
+        if (now - this.windowStart >= STATS_INTERVAL_MS) {
+            this.refreshDisplayStats(now);
+        }
+        this.animationHandle = requestAnimationFrame(this.onAnimationFrame);
+    };
+
+    private present(frame: ReadyFrame): void {
+        const { width, height } = frame.source;
+        if (this.canvas.width !== width || this.canvas.height !== height) {
+            this.canvas.width = width;
+            this.canvas.height = height;
+        }
+        if (frame.source instanceof ImageData) {
+            this.context.putImageData(frame.source, 0, 0);
+        } else {
+            this.context.drawImage(frame.source, 0, 0);
+        }
+        this.release(frame);
+
+        this.displayed++;
+        this.windowDisplayed++;
+        if (frame.stats) {
+            this.lastStats = frame.stats;
+        }
+    }
+
+    private refreshDisplayStats(now: number): void {
+        const seconds = (now - this.windowStart) / 1000;
+        this.displayStats = {
+            receivedFps: this.windowReceived / seconds,
+            displayedFps: this.windowDisplayed / seconds,
+            received: this.received,
+            displayed: this.displayed,
+            dropped: this.dropped,
+            decodeTimeMs: this.decodeTimeMs
+        };
+        this.windowStart = now;
+        this.windowReceived = 0;
+        this.windowDisplayed = 0;
         if (this.config.showStats) {
-            this.updateStats(frame.stats);
+            this.updateStats(this.lastStats);
         }
     }
 
     /**
-     * Update the stats display
+     * Update the stats display. Writes text only, and only where it changed,
+     * so no HTML is reparsed and unchanged nodes cause no layout work.
      */
-    private updateStats(stats: FrameStats): void {
-        const statsHTML = `
-            <h3 style="margin-top: 0; color: #333;">Frame Statistics</h3>
-            <div style="display: grid; grid-template-columns: 1fr 1fr; gap: 10px;">
-                <div>
-                    <strong>FPS:</strong> ${stats.fps.toFixed(2)}
-                </div>
-                <div>
-                    <strong>Resolution:</strong> ${stats.width}x${stats.height}
-                </div>
-                ${stats.processingTime ? `
-                <div>
-                    <strong>Processing Time:</strong> ${stats.processingTime.toFixed(2)}ms
-                </div>
-                ` : ''}
-            </div>
-        `;
-        this.statsElement.innerHTML = statsHTML;
+    private updateStats(stats: FrameStats | null): void {
+        const display = this.displayStats;
+        this.setField('fps', stats ? stats.fps.toFixed(2) : '-');
+        this.setField('resolution', stats ? `${stats.width}x${stats.height}` : `${this.canvas.width}x${this.canvas.height}`);
+        this.setField('received', display.receivedFps.toFixed(1));
+        this.setField('displayed', display.displayedFps.toFixed(1));
+        this.setField('dropped', `${display.dropped} of ${display.received}`);
+        this.setField('decode', `${display.decodeTimeMs.toFixed(2)}ms`);
+        this.setField('processing', stats?.processingTime ? `${stats.processingTime.toFixed(2)}ms` : '-');
+    }
+
+    private setField(key: string, text: string): void {
+        const element = this.statsFields.get(key);
+        if (element && element.textContent !== text) {
+            element.textContent = text;
+        }
+    }
+
+    /**
+     * Update the viewer with an encoded image (data URL or any image URL).
+     * The browser decodes it off the main thread via createImageBitmap.
+     */
+    public updateFrame(frame: ProcessedFrame): void {
+        this.currentFrame = frame;
+        this.received++;
+        this.windowReceived++;
+        fetch(frame.imageData)
+            .then((response) => response.blob())
+            .then((blob) => createImageBitmap(blob))
+            .then((bitmap) => {
+                this.setReady({ source: bitmap, stats: frame.stats });
+            })
+            .catch((error: unknown) => console.error('Failed to decode image:', error));
     }
 
     /**
@@ -102,13 +361,40 @@ export class FrameViewer {
         this.updateFrame(frame);
     }
 
+    /**
+     * Displayed vs received rates over the last stats interval
+     */
+    public getDisplayStats(): DisplayStats {
+        return { ...this.displayStats };
+    }
+
     /**
      * Clear the viewer
      */
     public clear(): void {
-        this.imageElement.src = '';
-        this.statsElement.innerHTML = '';
+        if (this.readyFrame) {
+            this.release(this.readyFrame);
+            this.readyFrame = null;
+        }
+        this.pendingFrame = null;
+        this.context.clearRect(0, 0, this.canvas.width, this.canvas.height);
+        for (const element of this.statsFields.values()) {
+            element.textContent = '-';
+        }
         this.currentFrame = null;
+        this.lastStats = null;
+    }
+
+    /**
+     * Stop rendering and terminate the decode worker
+     */
+    public destroy(): void {
+        cancelAnimationFrame(this.animationHandle);
+        this.clear();
+        if (this.worker) {
+            this.worker.terminate();
+            this.worker = null;
+        }
     }
 
     /**
@@ -3,7 +3,7 @@
  */
 
 import { FrameViewer } from './frameViewer.js';
-import { FrameStats } from './types.js';
+import { BinaryFrame, FrameStats } from './types.js';
 
 // Sample edge-detected image - realistic edge detection visualization
 // In production, this would be loaded from the Android app or an API endpoint
@@ -17,6 +17,35 @@ const sampleStats: FrameStats = {
     processingTime: 42.3
 };
 
+/**
+ * Synthetic packed edge map: the outline of a square sliding across the
+ * frame, for exercising the binary path without the app
+ */
+function makeDemoFrame(width: number, height: number, tick: number): BinaryFrame {
+    const rowBytes = (width + 7) >> 3;
+    const bits = new Uint8Array(rowBytes * height);
+    const size = Math.floor(height / 3);
+    const left = tick % (width - size);
+    const top = Math.floor((height - size) / 2);
+    const set = (x: number, y: number) => {
+        bits[y * rowBytes + (x >> 3)] |= 0x80 >> (x & 7);
+    };
+    for (let i = 0; i < size; i++) {
+        set(left + i, top);
+        set(left + i, top + size - 1);
+        set(left, top + i);
+        set(left + size - 1, top + i);
+    }
+    return {
+        format: 'packed',
+        width,
+        height,
+        data: bits.buffer,
+        stats: { ...sampleStats, width, height },
+        timestamp: Date.now()
+    };
+}
+
 // Initialize the viewer when DOM is ready
 document.addEventListener('DOMContentLoaded', () => {
     console.log('Edge Detector Web Viewer initializing...');
@@ -47,6 +76,25 @@ document.addEventListener('DOMContentLoaded', () => {
             });
         }
 
+        // Optional binary stream demo, sent faster than most displays refresh
+        // so the viewer's frame dropping shows up in the stats
+        const streamButton = document.getElementById('stream-btn');
+        if (streamButton) {
+            let streamTimer: number | null = null;
+            let tick = 0;
+            streamButton.addEventListener('click', () => {
+                if (streamTimer !== null) {
+                    window.clearInterval(streamTimer);
+                    streamTimer = null;
+                    return;
+                }
+                streamTimer = window.setInterval(() => {
+                    viewer.pushFrame(makeDemoFrame(640, 480, tick));
+                    tick += 4;
+                }, 1000 / 120);
+            });
+        }
+
         // Demonstrate the API by logging current frame info
         setTimeout(() => {
             const currentFrame = viewer.getCurrentFrame();
@@ -20,3 +20,65 @@ export interface ViewerConfig {
     showStats: boolean;
     autoUpdate: boolean;
 }
+
+/**
+ * Binary edge map layouts, matching the engine's outputs:
+ * - 'gray8':  one byte per pixel (0 = background, 255 = edge)
+ * - 'packed': 1 bit per pixel, rows of ceil(width / 8) bytes, MSB first
+ */
+export type BinaryFrameFormat = 'gray8' | 'packed';
+
+export interface BinaryFrame {
+    format: BinaryFrameFormat;
+    width: number;
+    height: number;
+    data: ArrayBuffer; // Transferred to the decode worker, unusable afterwards
+    stats?: FrameStats;
+    timestamp: number;
+}
+
+export interface DisplayStats {
+    receivedFps: number;
+    displayedFps: number;
+    received: number;
+    displayed: number;
+    dropped: number;
+    decodeTimeMs: number;
+}
+
+/** Main thread -> decode worker */
+export type DecodeRequest =
+    | {
+          type: 'decode';
+          id: number;
+          format: BinaryFrameFormat;
+          width: number;
+          height: number;
+          data: ArrayBuffer;
+      }
+    | {
+          type: 'recycle';
+          buffer: ArrayBuffer;
+      };
+
+/** Decode worker -> main thread */
+export type DecodeResult =
+    | {
+          type: 'bitmap';
+          id: number;
+          bitmap: ImageBitmap;
+          decodeTimeMs: number;
+      }
+    | {
+          type: 'pixels';
+          id: number;
+          width: number;
+          height: number;
+          rgba: ArrayBuffer;
+          decodeTimeMs: number;
+      }
+    | {
+          type: 'error';
+          id: number;
+          message: string;
+      };